@@ -0,0 +1,76 @@
+package books;
+
+/**
+ * Sample records shared by the benchmarks, taken from the bundled yearly input files. They mix plain and
+ * quoted titles, ISBN-10 and ISBN-13 values, and records with syntax and semantic errors, roughly in the
+ * proportions found in the real feeds.
+ */
+final class BenchmarkData {
+
+    static final String[] RECORDS = {
+            "Hitchcock's London: A Reference Guide to Locations,Gary Giblin,19.95,188766467X,MTV,2005",
+            "\"Horror Film Directors, 1931 - 1990\",Dennis Fischer,85.5,9780899506098,MTV,1999",
+            "\"Mingus, Charles - Mingus / Mingus: Two Memoirs\",Janet Coleman & Al Young,7.95,0879101490,MRB,1994",
+            "Comics Buyer's Guide Standard Catalog of Comic Books,John Jackson Miller & Maggie Thompson & Peter Bickford & Brent Frankenhoff,24.95,087349993X,CCB,2005",
+            "\"Baseball - Lean Years of The Yankees, 1965-1975\",Robert W. Cohen,26.95,078641846X,SSM,2005",
+            "Madonna - Goddess: Inside Madonna,Barbara Victor,4.95,006019930X,MRB,2001",
+            "Mustang,David Newhardt,4.95,076031389X,TPA,2005",
+            "\"Zimbalist, Efrem - A Life\",Roy Malan,19.95,1574670913,MRB,1905",
+            "Back In The Saddle - Essays On Western Film And Television Actors,,35.95,9780786405664,MTV,1998",
+            "Radio Adventures of Sam Spade,Martin Grams Jr.,17.95,097033107X,OTR,2007",
+            "Pees On Earth,Erica Jong & Annie Sprinkle,24.95,157687317X,NEB,2007",
+            "\"Morrison, Jim - Jim Morrison: Life, Death, Legend\",Stephen Davis,4.95,159240099X,MRB,2007,reprint"
+    };
+
+    /** Number of entries in {@link #RECORDS}, as a constant for {@code @OperationsPerInvocation}. */
+    static final int RECORD_COUNT = 12;
+
+    /** Number of entries in {@link #RECORDS} that pass the syntax check. */
+    static final int VALID_RECORD_COUNT = 10;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns the records that pass the syntax check, tokenized, one tokenizer per record.
+     *
+     * @return the tokenized records
+     */
+    static CsvTokenizer[] tokenizedValidRecords() {
+        String[][] genreToFileMapping = Main.initializeGenreMappings();
+        CsvTokenizer[] tokenized = new CsvTokenizer[RECORDS.length];
+        int count = 0;
+        for (String record : RECORDS) {
+            CsvTokenizer tokenizer = new CsvTokenizer();
+            tokenizer.tokenize(record);
+            if (Main.checkSyntax(tokenizer) == RecordError.NONE && Main.findGenre(tokenizer, genreToFileMapping[0]) >= 0) {
+                tokenized[count++] = tokenizer;
+            }
+        }
+        if (RECORDS.length != RECORD_COUNT || count != VALID_RECORD_COUNT) {
+            throw new IllegalStateException("Record counts are out of date: " + RECORDS.length + " records, "
+                    + count + " valid");
+        }
+        CsvTokenizer[] result = new CsvTokenizer[count];
+        System.arraycopy(tokenized, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Returns the books described by the records that pass the syntax check.
+     *
+     * @return the books
+     */
+    static Book[] books() {
+        CsvTokenizer[] tokenized = tokenizedValidRecords();
+        Book[] books = new Book[tokenized.length];
+        for (int i = 0; i < tokenized.length; i++) {
+            CsvTokenizer fields = tokenized[i];
+            String line = fields.line();
+            books[i] = new Book(fields.unquotedField(0), fields.field(1),
+                    BookValidator.parsePrice(line, fields.start(2), fields.end(2)), fields.field(3),
+                    Genre.fromField(fields, 4), BookValidator.parseYear(line, fields.start(5), fields.end(5)));
+        }
+        return books;
+    }
+}
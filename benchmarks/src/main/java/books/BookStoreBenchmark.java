@@ -0,0 +1,109 @@
+package books;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks writing books to a genre store in Part 2 and reading them back in Part 3. Scores are in
+ * records per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookStoreBenchmark {
+
+    private static final int STORE_SIZE = 10_000;
+
+    private Book[] books;
+    private DataOutputStream discard;
+    private ByteBuffer encoded;
+    private Path storeFile;
+    private MappedBookStore mappedStore;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        books = BenchmarkData.books();
+        discard = new DataOutputStream(OutputStream.nullOutputStream());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < STORE_SIZE; i++) {
+            BookStoreFormat.writeRecord(out, books[i % books.length]);
+        }
+        encoded = ByteBuffer.wrap(bytes.toByteArray());
+
+        storeFile = Files.createTempFile("books", ".ser");
+        try (BookStoreWriter writer = new BookStoreWriter(storeFile.toString())) {
+            for (int i = 0; i < STORE_SIZE; i++) {
+                writer.write(books[i % books.length]);
+            }
+        }
+        mappedStore = new MappedBookStore(storeFile.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(storeFile);
+    }
+
+    /**
+     * Encodes books as store records, as do_part2 does for every valid book.
+     */
+    @Benchmark
+    @OperationsPerInvocation(STORE_SIZE)
+    public void serialize() throws IOException {
+        for (int i = 0; i < STORE_SIZE; i++) {
+            BookStoreFormat.writeRecord(discard, books[i % books.length]);
+        }
+    }
+
+    /**
+     * Decodes every record of an in-memory store, as reading a whole store does.
+     */
+    @Benchmark
+    @OperationsPerInvocation(STORE_SIZE)
+    public void deserialize(Blackhole blackhole) {
+        ByteBuffer buffer = encoded.duplicate();
+        for (int i = 0; i < STORE_SIZE; i++) {
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            blackhole.consume(BookStoreFormat.decode(buffer));
+            buffer.position(end);
+        }
+    }
+
+    /**
+     * Reads every record of a memory-mapped store through the viewer's book source.
+     */
+    @Benchmark
+    @OperationsPerInvocation(STORE_SIZE)
+    public void readMapped(Blackhole blackhole) {
+        for (int i = 0; i < STORE_SIZE; i++) {
+            blackhole.consume(mappedStore.get(i));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package books;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures the heap retained by the books of a genre store in each way Part 3 can hold them: as
+ * {@code Book} objects read from the store, and as a {@link ColumnarBookSource} with its text arena on or
+ * off the heap.
+ * <p>
+ * A store of {@value #STORE_SIZE} books is written from the sample records, each with its own title and
+ * ISBN as in the real feeds. Each catalog is then loaded on its own, and the heap in use after a full
+ * collection is compared with the heap in use before it was loaded. The program exits with status 1 if the
+ * heap catalog retains more than half the heap of the {@code Book} objects; it retains about 40% of it, the
+ * rest of its heap being the text of the titles.
+ * <p>
+ * Run it from the project directory with {@code ./gradlew :benchmarks:catalogHeap}.
+ */
+public class CatalogHeapBenchmark {
+
+    private static final int STORE_SIZE = 300_000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args command-line arguments (not used)
+     * @throws Exception if the store could not be written or read
+     */
+    public static void main(String[] args) throws Exception {
+        Path store = Files.createTempFile("books", ".ser");
+        try {
+            writeStore(store);
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+            long baseline = usedHeap(memory);
+            Book[] books;
+            try (BookStoreReader reader = new BookStoreReader(store.toString())) {
+                books = reader.readAll();
+            }
+            long bookBytes = usedHeap(memory) - baseline;
+            int count = books.length;
+            books = null;
+
+            baseline = usedHeap(memory);
+            BookSource heap = ColumnarBookSource.load(store.toString(), false);
+            long heapBytes = usedHeap(memory) - baseline;
+            count = Math.min(count, heap.size());
+            heap = null;
+
+            baseline = usedHeap(memory);
+            BookSource offHeap = ColumnarBookSource.load(store.toString(), true);
+            long offHeapBytes = usedHeap(memory) - baseline;
+            count = Math.min(count, offHeap.size());
+
+            System.out.printf("books:                %d%n", count);
+            System.out.printf("Book objects:         %d bytes (%.1f bytes/book)%n", bookBytes, (double) bookBytes / count);
+            System.out.printf("heap catalog:         %d bytes (%.1f bytes/book)%n", heapBytes, (double) heapBytes / count);
+            System.out.printf("off-heap catalog:     %d bytes (%.1f bytes/book)%n", offHeapBytes,
+                    (double) offHeapBytes / count);
+            System.out.printf("reduction:            %.1fx heap, %.1fx off-heap%n", (double) bookBytes / heapBytes,
+                    (double) bookBytes / offHeapBytes);
+            // Keeps the off-heap catalog reachable until its heap has been measured
+            System.out.printf("checksum:             %d%n", offHeap.get(count - 1).getYear());
+
+            if (heapBytes * 2 > bookBytes) {
+                System.out.println("FAILED: the heap catalog retains more than half the heap of Book objects");
+                System.exit(1);
+            }
+        } finally {
+            Files.deleteIfExists(store);
+        }
+    }
+
+    private static void writeStore(Path store) throws IOException {
+        Book[] samples = BenchmarkData.books();
+        try (BookStoreWriter writer = new BookStoreWriter(store.toString())) {
+            for (int i = 0; i < STORE_SIZE; i++) {
+                Book sample = samples[i % samples.length];
+                String number = Integer.toString(1_000_000_000 + i);
+                writer.write(new Book(sample.getTitle() + " " + i, sample.getAuthors(), sample.getPrice(),
+                        number.substring(0, 9) + sample.getIsbn().charAt(9), sample.getGenre(), sample.getYear()));
+            }
+        }
+    }
+
+    /**
+     * Returns the heap in use once garbage has been collected, repeating the collection until it settles.
+     */
+    private static long usedHeap(MemoryMXBean memory) {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,101 @@
+package books;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-record work of Parts 1 and 2: splitting a line into fields, routing it to a genre,
+ * and parsing and validating its fields. Scores are in records per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordParsingBenchmark {
+
+    private static final int RECORD_COUNT = BenchmarkData.RECORD_COUNT;
+    private static final int VALID_RECORD_COUNT = BenchmarkData.VALID_RECORD_COUNT;
+
+    private final CsvTokenizer tokenizer = new CsvTokenizer();
+    private CsvTokenizer[] validRecords;
+    private String[] genres;
+
+    @Setup
+    public void setUp() {
+        validRecords = BenchmarkData.tokenizedValidRecords();
+        genres = Main.initializeGenreMappings()[0];
+    }
+
+    /**
+     * Splits each record with the single-pass tokenizer used by Parts 1 and 2.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORD_COUNT)
+    public void split(Blackhole blackhole) {
+        for (String record : BenchmarkData.RECORDS) {
+            blackhole.consume(tokenizer.tokenize(record));
+        }
+    }
+
+    /**
+     * Splits each record with the lookahead regular expression that the tokenizer replaced, for comparison.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORD_COUNT)
+    public void splitWithRegex(Blackhole blackhole) {
+        for (String record : BenchmarkData.RECORDS) {
+            blackhole.consume(record.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)"));
+        }
+    }
+
+    /**
+     * Splits each record and checks it for syntax errors.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORD_COUNT)
+    public void syntaxCheck(Blackhole blackhole) {
+        for (String record : BenchmarkData.RECORDS) {
+            tokenizer.tokenize(record);
+            blackhole.consume(Main.checkSyntax(tokenizer));
+        }
+    }
+
+    /**
+     * Finds the genre of each tokenized record against the genre mappings.
+     */
+    @Benchmark
+    @OperationsPerInvocation(VALID_RECORD_COUNT)
+    public void route(Blackhole blackhole) {
+        for (CsvTokenizer record : validRecords) {
+            blackhole.consume(Main.findGenre(record, genres));
+        }
+    }
+
+    /**
+     * Parses the price and year of each tokenized record and validates it.
+     */
+    @Benchmark
+    @OperationsPerInvocation(VALID_RECORD_COUNT)
+    public void validate(Blackhole blackhole) {
+        for (CsvTokenizer record : validRecords) {
+            String line = record.line();
+            double price = BookValidator.parsePrice(line, record.start(2), record.end(2));
+            int year = BookValidator.parseYear(line, record.start(5), record.end(5));
+            blackhole.consume(Main.validate(record, price, year));
+        }
+    }
+}
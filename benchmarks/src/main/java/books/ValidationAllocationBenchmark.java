@@ -0,0 +1,70 @@
+package books;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the time and heap allocation of tokenizing, parsing and validating a book record.
+ * <p>
+ * After a warm-up, the records are validated repeatedly and the bytes allocated by the current thread are
+ * read from the JVM. The program exits with status 1 if validating a record allocates anything.
+ * <p>
+ * Run it from the project directory with {@code ./gradlew :benchmarks:validationAllocation}.
+ */
+public class ValidationAllocationBenchmark {
+
+    private static final String[] RECORDS = {
+            "Hitchcock's London: A Reference Guide to Locations,Gary Giblin,19.95,188766467X,MTV,2005",
+            "\"Horror Film Directors, 1931 - 1990\",Dennis Fischer,85.5,9780899506098,MTV,1999",
+            "\"Mingus, Charles - Mingus / Mingus: Two Memoirs\",Janet Coleman & Al Young,7.95,0879101490,MRB,1994",
+            "Comics Buyer's Guide Standard Catalog of Comic Books,John Jackson Miller,24.95,087349993X,CCB,2005",
+            "Bad Price,Someone,-4.95,0879101490,MRB,2001",
+            "Bad Isbn 13,Someone,4.95,9780899506099,MTV,2001"
+    };
+
+    private static final int WARMUP_ROUNDS = 200_000;
+    private static final int MEASURED_ROUNDS = 2_000_000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args command-line arguments (not used)
+     */
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        CsvTokenizer tokenizer = new CsvTokenizer();
+
+        long checksum = run(tokenizer, WARMUP_ROUNDS);
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        checksum += run(tokenizer, MEASURED_ROUNDS);
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        long records = (long) MEASURED_ROUNDS * RECORDS.length;
+        System.out.printf("records validated:    %d%n", records);
+        System.out.printf("throughput:           %.0f records/sec%n", records / (elapsed / 1e9));
+        System.out.printf("allocated:            %d bytes (%.4f bytes/record)%n", allocated, (double) allocated / records);
+        System.out.printf("checksum:             %d%n", checksum);
+
+        // The JVM's own bookkeeping can account for a few bytes over millions of records
+        if (allocated > 1024) {
+            System.out.println("FAILED: validation allocates on the heap");
+            System.exit(1);
+        }
+    }
+
+    private static long run(CsvTokenizer tokenizer, int rounds) {
+        long checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (String record : RECORDS) {
+                tokenizer.tokenize(record);
+                double price = BookValidator.parsePrice(record, tokenizer.start(2), tokenizer.end(2));
+                int year = BookValidator.parseYear(record, tokenizer.start(5), tokenizer.end(5));
+                checksum += Main.validate(tokenizer, price, year).ordinal();
+            }
+        }
+        return checksum;
+    }
+}
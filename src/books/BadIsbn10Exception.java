@@ -0,0 +1,18 @@
+package books;
+
+/**
+ * Exception thrown when the ISBN-10 of a book is invalid.
+ */
+class BadIsbn10Exception extends RecordException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new BadIsbn10Exception with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public BadIsbn10Exception(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package books;
+
+/**
+ * Exception thrown when the ISBN-13 of a book is invalid.
+ */
+class BadIsbn13Exception extends RecordException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new BadIsbn13Exception with the specified detail message.
+     *
+     * @param message the detail message
+    */
+    public BadIsbn13Exception(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package books;
+
+/**
+ * Exception thrown when the price of a book is negative.
+ */
+class BadPriceException extends RecordException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new BadPriceException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public BadPriceException(String message) {
+        super(message);
+    }
+}
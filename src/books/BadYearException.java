@@ -0,0 +1,18 @@
+package books;
+
+/**
+ * Exception thrown when the year of a book does not fall within the closed range [1995, 2024].
+ */
+class BadYearException extends RecordException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new BadYearException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public BadYearException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,251 @@
+package books;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Represents a book with attributes such as title, authors, price, ISBN, genre, and publication year.
+ */
+class Book implements Serializable {
+
+    /** The serialVersionUID the class had before it moved to this package, computed from its fields and methods. */
+    private static final long serialVersionUID = -2117033216419621997L;
+
+    /**
+     * The serialized fields, which keep the genre as its code so that .ser files written when the genre was
+     * a string can still be read, and files written now can be read by those versions.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("title", String.class),
+            new ObjectStreamField("authors", String.class),
+            new ObjectStreamField("price", double.class),
+            new ObjectStreamField("isbn", String.class),
+            new ObjectStreamField("genre", String.class),
+            new ObjectStreamField("year", int.class)
+    };
+
+    private String title;
+    private String authors;
+    private double price;
+    private String isbn;
+    private Genre genre;
+    private int year;
+
+    /**
+     * Constructs a new Book object with the specified attributes.
+     *
+     * @param title   the title of the book
+     * @param authors the authors of the book
+     * @param price   the price of the book
+     * @param isbn    the ISBN of the book
+     * @param genre   the genre of the book
+     * @param year    the publication year of the book
+     */
+
+    public Book(String title, String authors, double price, String isbn, Genre genre, int year) {
+        this.title = title;
+        this.authors = authors;
+        this.price = price;
+        this.isbn = isbn;
+        this.genre = genre;
+        this.year = year;
+    }
+
+    // Getter and Setter methods
+
+    /**
+     * Returns the title of the book.
+     *
+     * @return the title of the book
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Sets the title of the book.
+     *
+     * @param title the title of the book
+     */
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Returns the authors of the book.
+     *
+     * @return the authors of the book
+     */
+    public String getAuthors() {
+        return authors;
+    }
+
+    /**
+     * Sets the authors of the book.
+     *
+     * @param authors the authors of the book
+     */
+    public void setAuthors(String authors) {
+        this.authors = authors;
+    }
+
+    /**
+     * Returns the price of the book.
+     *
+     * @return the price of the book
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Sets the price of the book.
+     *
+     * @param price the price of the book
+     */
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    /**
+     * Returns the ISBN of the book.
+     *
+     * @return the ISBN of the book
+     */
+    public String getIsbn() {
+        return isbn;
+    }
+
+    /**
+     * Sets the ISBN of the book.
+     *
+     * @param isbn the ISBN of the book
+     */
+    public void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    /**
+     * Returns the genre of the book.
+     *
+     * @return the genre of the book
+     */
+    public Genre getGenre() {
+        return genre;
+    }
+
+    /**
+     * Sets the genre of the book.
+     *
+     * @param genre the genre of the book
+     */
+    public void setGenre(Genre genre) {
+        this.genre = genre;
+    }
+
+    /**
+     * Returns the publication year of the book.
+     *
+     * @return the publication year of the book
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Sets the publication year of the book.
+     *
+     * @param year the publication year of the book
+     */
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    /**
+     * Compares this book to the specified object for equality.
+     *
+     * @param o the object to compare to
+     * @return true if the specified object is equal to this book, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Book book = (Book) o;
+        return Double.compare(book.price, price) == 0 &&
+                year == book.year &&
+                Objects.equals(title, book.title) &&
+                Objects.equals(authors, book.authors) &&
+                Objects.equals(isbn, book.isbn) &&
+                Objects.equals(genre, book.genre);
+    }
+
+    /**
+     * Returns a hash code for the book, consistent with {@link #equals}.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(title, authors, price, isbn, genre, year);
+    }
+
+    /**
+     * Returns a string representation of the book.
+     *
+     * @return a string representation of the book
+     */
+    @Override
+    public String toString() {
+        return "Title: " + title + "\n" +
+                "Authors: " + authors + "\n" +
+                "Price: $" + price + "\n" +
+                "ISBN: " + isbn + "\n" +
+                "Genre: " + (genre == null ? null : genre.getCode()) + "\n" +
+                "Year: " + year + "\n";
+    }
+
+    /**
+     * Writes the book in its serialized form, with the genre as its code.
+     *
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("title", title);
+        fields.put("authors", authors);
+        fields.put("price", price);
+        fields.put("isbn", isbn);
+        fields.put("genre", genre == null ? null : genre.getCode());
+        fields.put("year", year);
+        out.writeFields();
+    }
+
+    /**
+     * Reads the book from its serialized form, with the genre as its code.
+     *
+     * @param in the stream to read from
+     * @throws IOException            if an I/O error occurs, or the genre code is unknown
+     * @throws ClassNotFoundException if a class of the stream cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        title = (String) fields.get("title", null);
+        authors = (String) fields.get("authors", null);
+        price = fields.get("price", 0.0);
+        isbn = (String) fields.get("isbn", null);
+        String code = (String) fields.get("genre", null);
+        genre = code == null ? null : Genre.fromCode(code);
+        if (code != null && genre == null) {
+            throw new InvalidObjectException("Unknown genre: " + code);
+        }
+        year = fields.get("year", 0);
+    }
+
+}
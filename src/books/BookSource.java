@@ -0,0 +1,90 @@
+package books;
+
+import java.io.IOException;
+
+/**
+ * Gives indexed access to the books of one genre store.
+ */
+interface BookSource {
+
+    /**
+     * Returns the number of books in the store.
+     *
+     * @return the number of books
+     */
+    int size();
+
+    /**
+     * Returns the book at the given position in the store.
+     *
+     * @param index the position of the book, starting at 0
+     * @return the book
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}
+     */
+    Book get(int index);
+
+    /**
+     * Opens a genre store for viewing. Stores in the binary book store format are memory-mapped and read
+     * lazily, and compressed stores are decompressed a block at a time as their books are asked for; legacy
+     * files written with ObjectOutputStream are read into memory in full.
+     *
+     * @param fileName the name of the store file
+     * @return the opened store
+     * @throws IOException            if the file could not be read
+     * @throws ClassNotFoundException if a legacy file holds an object of an unknown class
+     */
+    static BookSource open(String fileName) throws IOException, ClassNotFoundException {
+        if (CompressedBookStore.isCompressed(fileName)) {
+            return new CompressedBookStore(fileName);
+        }
+        if (MappedBookStore.isBookStore(fileName)) {
+            return new MappedBookStore(fileName);
+        }
+        try (BookStoreReader reader = new BookStoreReader(fileName)) {
+            return new ArrayBookSource(reader.readAll());
+        }
+    }
+
+    /**
+     * Opens a genre store for viewing, holding its books as the given catalog mode asks.
+     *
+     * @param fileName the name of the store file
+     * @param mode     how the books are held in memory
+     * @return the opened store
+     * @throws IOException            if the file could not be read
+     * @throws ClassNotFoundException if a legacy file holds an object of an unknown class
+     */
+    static BookSource open(String fileName, CatalogMode mode) throws IOException, ClassNotFoundException {
+        if (mode == CatalogMode.MAPPED) {
+            return open(fileName);
+        }
+        return ColumnarBookSource.load(fileName, mode == CatalogMode.OFF_HEAP);
+    }
+}
+
+/**
+ * A book source backed by an array of books held in memory.
+ */
+class ArrayBookSource implements BookSource {
+
+    private final Book[] books;
+
+    /**
+     * Constructs a new ArrayBookSource.
+     *
+     * @param books the books of the store
+     */
+    public ArrayBookSource(Book[] books) {
+        this.books = books;
+    }
+
+    @Override
+    public int size() {
+        return books.length;
+    }
+
+    @Override
+    public Book get(int index) {
+        return books[index];
+    }
+}
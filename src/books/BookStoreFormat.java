@@ -0,0 +1,360 @@
+package books;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Describes the binary format of the genre book stores and converts books to and from their records.
+ * <p>
+ * A store starts with a fixed-size header: the magic number, the format version, a reserved short and the
+ * number of records as a long. Each record that follows is prefixed with its length in bytes and holds the
+ * price as a double, the year as an int, and the title, authors, ISBN and genre as length-prefixed UTF-8
+ * strings. All numbers are big-endian.
+ * <p>
+ * Version 2 stores are dictionary-encoded. Their header is followed by the offset of the authors
+ * dictionary as a long. A record holds the price, the year and the title as in version 1, then the id of its
+ * authors in the dictionary as an int, the ISBN as a string and the genre as one byte: the ordinal of its
+ * {@link Genre}. Readers also accept -1 followed by the genre code as a string, which stores written
+ * while books held their genre as a string used for codes outside {@link Genre}. The dictionary comes after the last record: the
+ * number of entries as an int, then each entry as a string, its id being its position.
+ * <p>
+ * Version 3 stores are dictionary-encoded stores compressed in blocks. Their header is followed by the
+ * offsets of the dictionary and of the block index as longs. The records, encoded as in version 2, are
+ * grouped {@value #BLOCK_RECORDS} to a block, and each block is stored as its uncompressed size as an int
+ * followed by its bytes compressed with {@link Deflater}. The dictionary is compressed the same way, and
+ * the block index at the end of the file holds the number of blocks as an int, then the offset of every
+ * block and of the dictionary as longs, so a block is found without reading any other.
+ */
+final class BookStoreFormat {
+
+    /** The magic number at the start of every store, "BKST" in ASCII. */
+    static final int MAGIC = 0x424B5354;
+
+    /** The version of the format with the books written out in full. */
+    static final short VERSION = 1;
+
+    /** The version of the format with dictionary-encoded authors and genres. */
+    static final short DICTIONARY_VERSION = 2;
+
+    /** The version of the format with dictionary-encoded records compressed in blocks. */
+    static final short COMPRESSED_VERSION = 3;
+
+    /** The number of records in each block of a compressed store; only the last block may hold fewer. */
+    static final int BLOCK_RECORDS = 256;
+
+    /** The size of the header in bytes. */
+    static final int HEADER_SIZE = 16;
+
+    /** The size of the header of a dictionary-encoded store in bytes. */
+    static final int DICTIONARY_HEADER_SIZE = 24;
+
+    /** The size of the header of a compressed store in bytes. */
+    static final int COMPRESSED_HEADER_SIZE = 32;
+
+    /** The offset in the header of the record count. */
+    static final int RECORD_COUNT_OFFSET = 8;
+
+    /** The offset in the header of a dictionary-encoded store of the offset of its dictionary. */
+    static final int DICTIONARY_OFFSET_OFFSET = 16;
+
+    /** The offset in the header of a compressed store of the offset of its block index. */
+    static final int INDEX_OFFSET_OFFSET = 24;
+
+    /** The first two bytes of a file written by ObjectOutputStream. */
+    static final short SERIALIZATION_MAGIC = (short) 0xACED;
+
+    private BookStoreFormat() {
+    }
+
+    /**
+     * Writes the header of a store.
+     *
+     * @param out         the stream to write to
+     * @param recordCount the number of records in the store
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeHeader(DataOutputStream out, long recordCount) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+        out.writeLong(recordCount);
+    }
+
+    /**
+     * Writes the header of a dictionary-encoded store.
+     *
+     * @param out              the stream to write to
+     * @param recordCount      the number of records in the store
+     * @param dictionaryOffset the offset of the dictionary in the store
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeDictionaryHeader(DataOutputStream out, long recordCount, long dictionaryOffset) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(DICTIONARY_VERSION);
+        out.writeShort(0);
+        out.writeLong(recordCount);
+        out.writeLong(dictionaryOffset);
+    }
+
+    /**
+     * Writes the header of a compressed store.
+     *
+     * @param out              the stream to write to
+     * @param recordCount      the number of records in the store
+     * @param dictionaryOffset the offset of the dictionary in the store
+     * @param indexOffset      the offset of the block index in the store
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeCompressedHeader(DataOutputStream out, long recordCount, long dictionaryOffset, long indexOffset)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(COMPRESSED_VERSION);
+        out.writeShort(0);
+        out.writeLong(recordCount);
+        out.writeLong(dictionaryOffset);
+        out.writeLong(indexOffset);
+    }
+
+    /**
+     * Returns the size of the header of a store of the given version.
+     *
+     * @param version the format version
+     * @return the header size in bytes
+     * @throws IOException if the version is not supported
+     */
+    static int headerSize(short version) throws IOException {
+        if (version == VERSION) {
+            return HEADER_SIZE;
+        }
+        if (version == DICTIONARY_VERSION) {
+            return DICTIONARY_HEADER_SIZE;
+        }
+        if (version == COMPRESSED_VERSION) {
+            return COMPRESSED_HEADER_SIZE;
+        }
+        throw new IOException("Unsupported book store version " + version);
+    }
+
+    /**
+     * Encodes a book as a length-prefixed record.
+     *
+     * @param out  the stream to write to
+     * @param book the book to encode
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    static int writeRecord(DataOutputStream out, Book book) throws IOException {
+        byte[] title = book.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] authors = book.getAuthors().getBytes(StandardCharsets.UTF_8);
+        byte[] isbn = book.getIsbn().getBytes(StandardCharsets.UTF_8);
+        byte[] genre = book.getGenre().getCode().getBytes(StandardCharsets.UTF_8);
+
+        int length = recordLength(title, authors, isbn, genre);
+        out.writeInt(length);
+        out.writeDouble(book.getPrice());
+        out.writeInt(book.getYear());
+        writeString(out, title);
+        writeString(out, authors);
+        writeString(out, isbn);
+        writeString(out, genre);
+        return Integer.BYTES + length;
+    }
+
+    /**
+     * Encodes a book as a length-prefixed record of a dictionary-encoded store.
+     *
+     * @param out       the stream to write to
+     * @param book      the book to encode
+     * @param authorsId the id of the book's authors in the store's dictionary
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    static int writeRecord(DataOutputStream out, Book book, int authorsId) throws IOException {
+        byte[] title = book.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] isbn = book.getIsbn().getBytes(StandardCharsets.UTF_8);
+
+        int length = Double.BYTES + Integer.BYTES + 3 * Integer.BYTES + title.length + isbn.length + 1;
+        out.writeInt(length);
+        out.writeDouble(book.getPrice());
+        out.writeInt(book.getYear());
+        writeString(out, title);
+        out.writeInt(authorsId);
+        writeString(out, isbn);
+        out.writeByte(book.getGenre().ordinal());
+        return Integer.BYTES + length;
+    }
+
+    /**
+     * Writes the dictionary of a dictionary-encoded store.
+     *
+     * @param out     the stream to write to
+     * @param entries the entries, in id order
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeDictionary(DataOutputStream out, List<String> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (String entry : entries) {
+            writeString(out, entry.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Reads the dictionary of a dictionary-encoded store.
+     *
+     * @param buffer the buffer positioned at the start of the dictionary
+     * @return the entries, indexed by id
+     */
+    static String[] readDictionary(ByteBuffer buffer) {
+        String[] entries = new String[buffer.getInt()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = readString(buffer);
+        }
+        return entries;
+    }
+
+    /**
+     * Writes a block of a compressed store: the size of the bytes, then the bytes compressed.
+     *
+     * @param out      the stream to write to
+     * @param bytes    the array holding the bytes
+     * @param length   the number of bytes, from the start of the array
+     * @param deflater the compressor, which is reset before use
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    static int writeBlock(DataOutputStream out, byte[] bytes, int length, Deflater deflater) throws IOException {
+        deflater.reset();
+        deflater.setInput(bytes, 0, length);
+        deflater.finish();
+        out.writeInt(length);
+        int written = Integer.BYTES;
+        byte[] buffer = new byte[Math.max(64, length / 2)];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            out.write(buffer, 0, count);
+            written += count;
+        }
+        return written;
+    }
+
+    /**
+     * Reads a block of a compressed store written by {@link #writeBlock}.
+     *
+     * @param block    the buffer holding the whole block
+     * @param inflater the decompressor, which is reset before use
+     * @param bytes    an array to decompress into, or null; it is used if it is large enough
+     * @return the array holding the decompressed bytes, from its start; their number is the size of the block
+     * @throws IOException if the block is damaged
+     */
+    static byte[] readBlock(ByteBuffer block, Inflater inflater, byte[] bytes) throws IOException {
+        int length = block.getInt();
+        if (length < 0) {
+            throw new IOException("Damaged block in book store");
+        }
+        if (bytes == null || bytes.length < length) {
+            bytes = new byte[length];
+        }
+        inflater.reset();
+        inflater.setInput(block);
+        try {
+            int inflated = 0;
+            while (inflated < length) {
+                int count = inflater.inflate(bytes, inflated, length - inflated);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Damaged block in book store");
+                }
+                inflated += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged block in book store", e);
+        }
+        return bytes;
+    }
+
+    private static void writeString(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Returns the length in bytes of the record body for the given book.
+     *
+     * @param title   the UTF-8 bytes of the title
+     * @param authors the UTF-8 bytes of the authors
+     * @param isbn    the UTF-8 bytes of the ISBN
+     * @param genre   the UTF-8 bytes of the genre
+     * @return the record length, not counting the length prefix itself
+     */
+    static int recordLength(byte[] title, byte[] authors, byte[] isbn, byte[] genre) {
+        return Double.BYTES + Integer.BYTES
+                + 4 * Integer.BYTES + title.length + authors.length + isbn.length + genre.length;
+    }
+
+    /**
+     * Decodes a record body into a book.
+     *
+     * @param buffer the buffer positioned at the start of the record body; its position is advanced past it
+     * @return the decoded book
+     */
+    static Book decode(ByteBuffer buffer) {
+        double price = buffer.getDouble();
+        int year = buffer.getInt();
+        String title = readString(buffer);
+        String authors = readString(buffer);
+        String isbn = readString(buffer);
+        Genre genre = genre(readString(buffer));
+        return new Book(title, authors, price, isbn, genre, year);
+    }
+
+    /**
+     * Decodes a record body of a dictionary-encoded store into a book. The authors of the book are the strings
+     * of the dictionary, shared by every book that has them.
+     *
+     * @param buffer  the buffer positioned at the start of the record body; its position is advanced past it
+     * @param authors the dictionary of the store
+     * @return the decoded book
+     */
+    static Book decode(ByteBuffer buffer, String[] authors) {
+        double price = buffer.getDouble();
+        int year = buffer.getInt();
+        String title = readString(buffer);
+        String author = authors[buffer.getInt()];
+        String isbn = readString(buffer);
+        byte genreCode = buffer.get();
+        Genre genre = genreCode >= 0 ? Genre.fromOrdinal(genreCode) : genre(readString(buffer));
+        return new Book(title, author, price, isbn, genre, year);
+    }
+
+    /**
+     * Returns the genre with the given code, read from a record.
+     *
+     * @throws IllegalArgumentException if no genre has that code
+     */
+    private static Genre genre(String code) {
+        Genre genre = Genre.fromCode(code);
+        if (genre == null) {
+            throw new IllegalArgumentException("Unknown genre in book store: " + code);
+        }
+        return genre;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(buffer.position(), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,232 @@
+package books;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the books of a genre store.
+ * <p>
+ * Stores in the format described by {@link BookStoreFormat} are read record by record using the record
+ * count from the header; the authors dictionary of a dictionary-encoded store is read from the end of the
+ * file first, and a compressed store is read a block at a time through a {@link CompressedBookStore}. Files
+ * written by the earlier versions of the program with ObjectOutputStream are still accepted and read
+ * through an ObjectInputStream. Those versions had {@code Book} in the default package, so their books are
+ * read as {@link Book} whatever serialVersionUID the stream gives them; the fields of the class have not
+ * changed since.
+ */
+class BookStoreReader implements Closeable {
+
+    private final DataInputStream in;
+    private final ObjectInputStream legacyIn;
+    private final CompressedBookStore compressed;
+    private final long recordCount;
+    private long recordsRead;
+    private byte[] record = new byte[256];
+    private String[] authors;
+
+    /**
+     * Opens a store for reading.
+     *
+     * @param fileName the name of the store file
+     * @throws IOException if the file could not be opened or is not a book store
+     */
+    public BookStoreReader(String fileName) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 64 * 1024));
+
+        try {
+            data.mark(BookStoreFormat.HEADER_SIZE);
+            if (data.readShort() == BookStoreFormat.SERIALIZATION_MAGIC) {
+                data.reset();
+                in = null;
+                legacyIn = new LegacyObjectInputStream(data);
+                compressed = null;
+                recordCount = -1;
+                return;
+            }
+
+            data.reset();
+            if (data.readInt() != BookStoreFormat.MAGIC) {
+                throw new IOException(fileName + " is not a book store");
+            }
+            short version = data.readShort();
+            if (version == BookStoreFormat.COMPRESSED_VERSION) {
+                data.close();
+                in = null;
+                legacyIn = null;
+                compressed = new CompressedBookStore(fileName);
+                recordCount = compressed.size();
+                return;
+            }
+            if (version != BookStoreFormat.VERSION && version != BookStoreFormat.DICTIONARY_VERSION) {
+                throw new IOException(fileName + " has unsupported book store version " + version);
+            }
+            data.readShort();
+            recordCount = data.readLong();
+            if (version == BookStoreFormat.DICTIONARY_VERSION) {
+                authors = readDictionary(fileName, data.readLong());
+            }
+            in = data;
+            legacyIn = null;
+            compressed = null;
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns whether the store was written with ObjectOutputStream by an earlier version of the program.
+     *
+     * @return true for a legacy serialized file
+     */
+    public boolean isLegacy() {
+        return legacyIn != null;
+    }
+
+    /**
+     * Returns the number of books in the store.
+     *
+     * @return the record count, or -1 for a legacy file, whose count is only known once it has been read
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Reads the next book from the store.
+     *
+     * @return the next book, or null if all books have been read
+     * @throws IOException            if an I/O error occurs
+     * @throws ClassNotFoundException if a legacy file holds an object of an unknown class
+     */
+    public Book next() throws IOException, ClassNotFoundException {
+        if (legacyIn != null) {
+            try {
+                return (Book) legacyIn.readObject();
+            } catch (EOFException e) {
+                // End of file reached
+                return null;
+            }
+        }
+
+        if (recordsRead == recordCount) {
+            return null;
+        }
+        if (compressed != null) {
+            return compressed.get((int) recordsRead++);
+        }
+
+        int length = in.readInt();
+        if (length > record.length) {
+            record = new byte[Math.max(length, record.length * 2)];
+        }
+        in.readFully(record, 0, length);
+        recordsRead++;
+        ByteBuffer buffer = ByteBuffer.wrap(record, 0, length);
+        return authors == null ? BookStoreFormat.decode(buffer) : BookStoreFormat.decode(buffer, authors);
+    }
+
+    /**
+     * Reads the dictionary at the end of a dictionary-encoded store, which is needed before the first record.
+     */
+    private static String[] readDictionary(String fileName, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            long size = channel.size() - offset;
+            if (offset < BookStoreFormat.DICTIONARY_HEADER_SIZE || size < Integer.BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " has no valid dictionary");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException(fileName + " is truncated");
+                }
+            }
+            buffer.flip();
+            try {
+                return BookStoreFormat.readDictionary(buffer);
+            } catch (RuntimeException e) {
+                throw new IOException(fileName + " has no valid dictionary", e);
+            }
+        }
+    }
+
+    /**
+     * Reads all remaining books from the store.
+     *
+     * @return the books, in the order they were written
+     * @throws IOException            if an I/O error occurs
+     * @throws ClassNotFoundException if a legacy file holds an object of an unknown class
+     */
+    public Book[] readAll() throws IOException, ClassNotFoundException {
+        if (legacyIn == null) {
+            if (recordCount - recordsRead > Integer.MAX_VALUE) {
+                throw new IOException("Too many books to hold in memory: " + (recordCount - recordsRead));
+            }
+            Book[] books = new Book[(int) (recordCount - recordsRead)];
+            for (int i = 0; i < books.length; i++) {
+                books[i] = next();
+            }
+            return books;
+        }
+
+        Book[] books = new Book[100];
+        int index = 0;
+        Book currentBook;
+
+        while ((currentBook = next()) != null) {
+            if (index >= books.length) {
+                Book[] temp = new Book[books.length * 2];
+                System.arraycopy(books, 0, temp, 0, books.length);
+                books = temp;
+            }
+            books[index++] = currentBook;
+        }
+
+        Book[] result = new Book[index];
+        System.arraycopy(books, 0, result, 0, index);
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (legacyIn != null) {
+            legacyIn.close();
+        } else if (compressed != null) {
+            compressed.close();
+        } else {
+            in.close();
+        }
+    }
+
+    /**
+     * An ObjectInputStream that reads the {@code Book} objects of the earlier versions of the program, which
+     * wrote them before the class moved to this package.
+     */
+    private static class LegacyObjectInputStream extends ObjectInputStream {
+
+        LegacyObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass descriptor = super.readClassDescriptor();
+            // The stream's serialVersionUID was computed for the old class, so the local one is used instead
+            if (descriptor.getName().equals("Book")) {
+                return ObjectStreamClass.lookup(Book.class);
+            }
+            return descriptor;
+        }
+    }
+}
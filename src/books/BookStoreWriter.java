@@ -0,0 +1,474 @@
+package books;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes books to a genre store in the format described by {@link BookStoreFormat}.
+ * <p>
+ * Stores are dictionary-encoded by default: each distinct authors string is given an id the first time it
+ * is written, and the dictionary of ids is written after the last record when the writer is closed, along
+ * with the record count and the dictionary offset in the header. A compressed store collects the records of
+ * each block in memory and compresses the block once it is full, and writes the block index after the
+ * dictionary. The words of the books written
+ * are collected into a {@link TextIndex} and their prices and years into a {@link RangeIndex}, both of
+ * which spill to files next to the store rather than grow in memory, and are saved once the store is closed.
+ * <p>
+ * A dictionary-encoded store that is not compressed can be made durable part way with {@link #sync()}, and
+ * written on by a later run with {@link #resume}. Since the dictionary is only written on close, syncing
+ * appends the authors strings added since the last sync to a journal next to the store. The journal is left
+ * in place when the store is closed, as the last sync may still have to be resumed from until the caller has
+ * recorded that the store is complete; the caller deletes it then.
+ */
+class BookStoreWriter implements Closeable {
+
+    /** The extension of the journal of authors strings kept while a store is synced part way. */
+    static final String JOURNAL_EXTENSION = ".authors";
+
+    private final Path path;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final boolean dictionaryEncoded;
+    private final boolean compressed;
+    private final Map<String, Integer> authorIds = new HashMap<>();
+    private final List<String> authors = new ArrayList<>();
+    private long position;
+    private long recordCount;
+    private ByteArrayOutputStream blockBytes;
+    private DataOutputStream block;
+    private Deflater deflater;
+    private long[] blockOffsets;
+    private int blockCount;
+    private TextIndex.Builder textIndex;
+    private RangeIndex.Builder rangeIndex;
+    private FileChannel journalChannel;
+    private DataOutputStream journal;
+    private int journaledAuthors;
+    private long journalLength;
+
+    /**
+     * Creates a new dictionary-encoded store, replacing any existing file with the same name.
+     *
+     * @param fileName the name of the store file
+     * @throws IOException if the file could not be created
+     */
+    public BookStoreWriter(String fileName) throws IOException {
+        this(fileName, true);
+    }
+
+    /**
+     * Creates a new store, replacing any existing file with the same name.
+     *
+     * @param fileName          the name of the store file
+     * @param dictionaryEncoded whether the store is dictionary-encoded; only a store that is not can be
+     *                          given records with {@link #writeRecords} or {@link #appendRecords}
+     * @throws IOException if the file could not be created
+     */
+    public BookStoreWriter(String fileName, boolean dictionaryEncoded) throws IOException {
+        this(fileName, dictionaryEncoded, false);
+    }
+
+    /**
+     * Creates a new store, replacing any existing file with the same name.
+     *
+     * @param fileName          the name of the store file
+     * @param dictionaryEncoded whether the store is dictionary-encoded; only a store that is not can be
+     *                          given records with {@link #writeRecords} or {@link #appendRecords}
+     * @param compressed        whether the records are compressed in blocks, which needs a dictionary-encoded
+     *                          store
+     * @throws IOException if the file could not be created
+     */
+    public BookStoreWriter(String fileName, boolean dictionaryEncoded, boolean compressed) throws IOException {
+        if (compressed && !dictionaryEncoded) {
+            throw new IllegalArgumentException("A compressed store has to be dictionary-encoded");
+        }
+        path = Path.of(fileName);
+        textIndex = new TextIndex.Builder(path);
+        rangeIndex = new RangeIndex.Builder(path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        this.dictionaryEncoded = dictionaryEncoded;
+        this.compressed = compressed;
+
+        if (compressed) {
+            BookStoreFormat.writeCompressedHeader(out, 0, 0, 0);
+            position = BookStoreFormat.COMPRESSED_HEADER_SIZE;
+            blockBytes = new ByteArrayOutputStream(64 * 1024);
+            block = new DataOutputStream(blockBytes);
+            deflater = new Deflater();
+            blockOffsets = new long[64];
+        } else if (dictionaryEncoded) {
+            BookStoreFormat.writeDictionaryHeader(out, 0, 0);
+            position = BookStoreFormat.DICTIONARY_HEADER_SIZE;
+        } else {
+            BookStoreFormat.writeHeader(out, 0);
+            position = BookStoreFormat.HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Opens a dictionary-encoded store that an earlier writer synced with {@link #sync()} and never closed,
+     * so that books can be written on after those it held at the sync. Anything written to the store or its
+     * journal after that sync is discarded, and the indexes are rebuilt from the books kept.
+     *
+     * @param fileName    the name of the store file
+     * @param length      the length of the store returned by the sync
+     * @param recordCount the number of books written at the sync
+     * @param authorCount the number of authors strings known at the sync
+     * @return the writer, positioned after the last book kept
+     * @throws IOException if the store or its journal could not be read, or hold less than they did at the sync
+     */
+    static BookStoreWriter resume(String fileName, long length, long recordCount, int authorCount) throws IOException {
+        return new BookStoreWriter(fileName, length, recordCount, authorCount);
+    }
+
+    private BookStoreWriter(String fileName, long length, long recordCount, int authorCount) throws IOException {
+        path = Path.of(fileName);
+        textIndex = new TextIndex.Builder(path);
+        rangeIndex = new RangeIndex.Builder(path);
+        dictionaryEncoded = true;
+        compressed = false;
+
+        Path journalPath = Path.of(fileName + JOURNAL_EXTENSION);
+        if (authorCount > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+                for (int i = 0; i < authorCount; i++) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    String entry = new String(bytes, StandardCharsets.UTF_8);
+                    authorIds.put(entry, i);
+                    authors.add(entry);
+                    journalLength += Integer.BYTES + bytes.length;
+                }
+            } catch (EOFException e) {
+                throw new IOException(journalPath + " holds fewer authors than when it was synced", e);
+            }
+        }
+        journaledAuthors = authorCount;
+
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < length || length < BookStoreFormat.DICTIONARY_HEADER_SIZE) {
+                throw new IOException(fileName + " is shorter than when it was synced");
+            }
+            channel.truncate(length);
+            rebuildIndexes(length, recordCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            discardIndexes(e);
+            throw e;
+        }
+        channel.position(length);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        position = length;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Decodes the books already in the store to add them to the indexes.
+     */
+    private void rebuildIndexes(long length, long count) throws IOException {
+        String[] dictionary = authors.toArray(new String[0]);
+        long offset = BookStoreFormat.DICTIONARY_HEADER_SIZE;
+        byte[] record = new byte[256];
+        // Not closed, as that would close the channel too
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(
+                channel.position(offset)), 64 * 1024));
+        try {
+            for (int i = 0; i < count; i++) {
+                int recordLength = in.readInt();
+                if (record.length < recordLength) {
+                    record = new byte[Math.max(recordLength, record.length * 2)];
+                }
+                in.readFully(record, 0, recordLength);
+                Book book = BookStoreFormat.decode(ByteBuffer.wrap(record, 0, recordLength), dictionary);
+                addToIndexes(i, book);
+                offset += Integer.BYTES + recordLength;
+            }
+        } catch (EOFException | IndexOutOfBoundsException e) {
+            throw new IOException(path + " holds fewer books than when it was synced", e);
+        }
+        if (offset != length) {
+            throw new IOException(path + " does not match the length it was synced with");
+        }
+    }
+
+    /**
+     * Appends a book to the store.
+     *
+     * @param book the book to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(Book book) throws IOException {
+        if (dictionaryEncoded) {
+            Integer authorsId = authorIds.get(book.getAuthors());
+            if (authorsId == null) {
+                authorsId = authors.size();
+                authorIds.put(book.getAuthors(), authorsId);
+                authors.add(book.getAuthors());
+            }
+            if (compressed) {
+                BookStoreFormat.writeRecord(block, book, authorsId);
+            } else {
+                position += BookStoreFormat.writeRecord(out, book, authorsId);
+            }
+        } else {
+            position += BookStoreFormat.writeRecord(out, book);
+        }
+        addToIndexes((int) recordCount, book);
+        recordCount++;
+        if (compressed && recordCount % BookStoreFormat.BLOCK_RECORDS == 0) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Adds a book to the indexes of the store. The text index is given up as soon as the store has too many
+     * words for it.
+     */
+    private void addToIndexes(int record, Book book) throws IOException {
+        if (textIndex != null) {
+            textIndex.add(record, book);
+            if (!textIndex.isWithinLimit()) {
+                textIndex = null;
+            }
+        }
+        if (rangeIndex != null) {
+            rangeIndex.add(book);
+        }
+    }
+
+    /**
+     * Compresses the records collected since the last block into a new block.
+     */
+    private void writeBlock() throws IOException {
+        if (blockCount == blockOffsets.length) {
+            blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+        }
+        blockOffsets[blockCount++] = position;
+        block.flush();
+        position += BookStoreFormat.writeBlock(out, blockBytes.toByteArray(), blockBytes.size(), deflater);
+        blockBytes.reset();
+    }
+
+    /**
+     * Appends records that were already encoded with {@link BookStoreFormat#writeRecord}, such as the
+     * records of another store without its header.
+     *
+     * @param records the file holding the encoded records
+     * @param count   the number of records in the file
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeRecords(Path records, long count) throws IOException {
+        if (dictionaryEncoded) {
+            throw new IllegalStateException("Encoded records cannot be copied into a dictionary-encoded store");
+        }
+        position += Files.copy(records, out);
+        recordCount += count;
+        // The books copied are not decoded, so the store is indexed when it is first searched instead
+        if (textIndex != null) {
+            textIndex.discard();
+            textIndex = null;
+        }
+        if (rangeIndex != null) {
+            rangeIndex.discard();
+            rangeIndex = null;
+        }
+    }
+
+    /**
+     * Appends encoded records to the end of an existing store that is not dictionary-encoded, and updates the
+     * record count in its header.
+     *
+     * @param store   the store to append to
+     * @param records the file holding the encoded records
+     * @param count   the number of records in the file
+     * @throws IOException if an I/O error occurs
+     */
+    public static void appendRecords(Path store, Path records, long count) throws IOException {
+        try (FileChannel channel = FileChannel.open(store, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileChannel source = FileChannel.open(records, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BookStoreFormat.HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            if (header.hasRemaining() || header.getInt(0) != BookStoreFormat.MAGIC) {
+                throw new IOException(store + " is not a book store");
+            }
+            if (header.getShort(4) != BookStoreFormat.VERSION) {
+                throw new IOException(store + " is dictionary-encoded and cannot be appended to");
+            }
+
+            long position = channel.size();
+            long size = source.size();
+            for (long copied = 0; copied < size; ) {
+                copied += source.transferTo(copied, size - copied, channel.position(position + copied));
+            }
+
+            long recordCount = header.getLong(BookStoreFormat.RECORD_COUNT_OFFSET) + count;
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, recordCount), BookStoreFormat.RECORD_COUNT_OFFSET);
+        }
+    }
+
+    /**
+     * Returns the number of books written so far.
+     *
+     * @return the record count
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the number of distinct authors strings written so far.
+     *
+     * @return the number of entries of the dictionary
+     */
+    int getAuthorCount() {
+        return authors.size();
+    }
+
+    /**
+     * Writes the books written so far to disk, along with the authors strings they use, so that a later run
+     * can carry on from here with {@link #resume} if this one stops before the store is closed.
+     *
+     * @return the length of the store written so far
+     * @throws IOException if an I/O error occurs
+     */
+    long sync() throws IOException {
+        if (!dictionaryEncoded || compressed) {
+            throw new IllegalStateException("Only a dictionary-encoded store that is not compressed can be synced");
+        }
+        if (journaledAuthors < authors.size()) {
+            if (journal == null) {
+                // Whatever the journal holds after the authors known at the start was not synced
+                journalChannel = FileChannel.open(Path.of(path + JOURNAL_EXTENSION), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE);
+                journalChannel.truncate(journalLength).position(journalLength);
+                journal = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(journalChannel)));
+            }
+            for (; journaledAuthors < authors.size(); journaledAuthors++) {
+                byte[] bytes = authors.get(journaledAuthors).getBytes(StandardCharsets.UTF_8);
+                journal.writeInt(bytes.length);
+                journal.write(bytes);
+            }
+            journal.flush();
+            journalChannel.force(false);
+        }
+        out.flush();
+        channel.force(false);
+        return position;
+    }
+
+    /**
+     * Writes the last block and the dictionary, and the block index of a compressed store, writes the record
+     * count and the offsets into the header, closes the store and saves its indexes.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        long indexOffset = 0;
+        try {
+            if (compressed && recordCount % BookStoreFormat.BLOCK_RECORDS != 0) {
+                writeBlock();
+            }
+            long dictionaryOffset = position;
+            if (compressed) {
+                ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+                BookStoreFormat.writeDictionary(new DataOutputStream(dictionary), authors);
+                indexOffset = dictionaryOffset + BookStoreFormat.writeBlock(out, dictionary.toByteArray(), dictionary.size(), deflater);
+
+                out.writeInt(blockCount);
+                for (int i = 0; i < blockCount; i++) {
+                    out.writeLong(blockOffsets[i]);
+                }
+                out.writeLong(dictionaryOffset);
+            } else if (dictionaryEncoded) {
+                BookStoreFormat.writeDictionary(out, authors);
+            }
+            out.flush();
+            ByteBuffer count = ByteBuffer.allocate(Long.BYTES).putLong(0, recordCount);
+            channel.write(count, BookStoreFormat.RECORD_COUNT_OFFSET);
+            if (dictionaryEncoded) {
+                ByteBuffer offset = ByteBuffer.allocate(Long.BYTES).putLong(0, dictionaryOffset);
+                channel.write(offset, BookStoreFormat.DICTIONARY_OFFSET_OFFSET);
+            }
+            if (compressed) {
+                ByteBuffer offset = ByteBuffer.allocate(Long.BYTES).putLong(0, indexOffset);
+                channel.write(offset, BookStoreFormat.INDEX_OFFSET_OFFSET);
+            }
+        } catch (IOException | RuntimeException e) {
+            discardIndexes(e);
+            throw e;
+        } finally {
+            out.close();
+            if (deflater != null) {
+                deflater.end();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+        }
+
+        if (textIndex != null) {
+            try {
+                if (recordCount <= Integer.MAX_VALUE) {
+                    textIndex.save(recordCount);
+                } else {
+                    textIndex.discard();
+                }
+            } catch (IOException e) {
+                // The store is complete without its index, which is built when the store is first searched
+            }
+        }
+        textIndex = null;
+
+        if (rangeIndex != null) {
+            try {
+                rangeIndex.save();
+            } catch (IOException e) {
+                // As above, the indexes are built when the store is first queried
+            }
+        }
+        rangeIndex = null;
+    }
+
+    /**
+     * Deletes the files the indexes were being built in, for a store that could not be completed.
+     */
+    private void discardIndexes(Exception cause) {
+        try {
+            if (textIndex != null) {
+                textIndex.discard();
+            }
+            if (rangeIndex != null) {
+                rangeIndex.discard();
+            }
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+        textIndex = null;
+        rangeIndex = null;
+    }
+}
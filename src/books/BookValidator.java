@@ -0,0 +1,190 @@
+package books;
+
+/**
+ * Validates and parses the fields of a book record directly from the characters of the record.
+ * <p>
+ * Every method works on a slice of the record given by start and end offsets, such as the field bounds
+ * reported by {@link CsvTokenizer}, so checking a record creates no objects: no substrings, no digit arrays
+ * and no boxed numbers.
+ */
+final class BookValidator {
+
+    /** The earliest accepted publication year. */
+    static final int MIN_YEAR = 1995;
+
+    /** The latest accepted publication year. */
+    static final int MAX_YEAR = 2024;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The largest mantissa that a double holds exactly. */
+    private static final long MAX_EXACT_MANTISSA = (1L << 53) - 1;
+
+    private BookValidator() {
+    }
+
+    /**
+     * Validates the price, ISBN and year of a record that has already been tokenized and parsed.
+     *
+     * @param record    the record
+     * @param isbnStart the start offset of the ISBN field
+     * @param isbnEnd   the end offset of the ISBN field
+     * @param price     the parsed price
+     * @param year      the parsed year
+     * @return the semantic error found, or {@link RecordError#NONE}
+     */
+    static RecordError validate(CharSequence record, int isbnStart, int isbnEnd, double price, int year) {
+        if (price < 0) {
+            return RecordError.BAD_PRICE;
+        }
+
+        int isbnLength = isbnEnd - isbnStart;
+        if (isbnLength == 10 && !isValidIsbn10(record, isbnStart, isbnEnd)) {
+            return RecordError.BAD_ISBN10;
+        } else if (isbnLength == 13 && !isValidIsbn13(record, isbnStart, isbnEnd)) {
+            return RecordError.BAD_ISBN13;
+        }
+
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            return RecordError.BAD_YEAR;
+        }
+
+        return RecordError.NONE;
+    }
+
+    /**
+     * Checks the checksum of an ISBN-10. The check digit may be {@code X}, which stands for 10.
+     *
+     * @param record the record holding the ISBN
+     * @param start  the start offset of the ISBN
+     * @param end    the end offset of the ISBN
+     * @return true if the ISBN has ten digits and a correct checksum
+     */
+    static boolean isValidIsbn10(CharSequence record, int start, int end) {
+        if (end - start != 10) {
+            return false;
+        }
+
+        int sum = 0;
+        for (int k = 0; k < 10; k++) {
+            char c = record.charAt(start + k);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (k == 9 && (c == 'X' || c == 'x')) {
+                digit = 10;
+            } else {
+                return false;
+            }
+            sum += (10 - k) * digit;
+        }
+        return sum % 11 == 0;
+    }
+
+    /**
+     * Checks the checksum of an ISBN-13.
+     *
+     * @param record the record holding the ISBN
+     * @param start  the start offset of the ISBN
+     * @param end    the end offset of the ISBN
+     * @return true if the ISBN has thirteen digits and a correct checksum
+     */
+    static boolean isValidIsbn13(CharSequence record, int start, int end) {
+        if (end - start != 13) {
+            return false;
+        }
+
+        int sum = 0;
+        for (int k = 0; k < 13; k++) {
+            char c = record.charAt(start + k);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            sum += (k % 2 == 1) ? 3 * (c - '0') : c - '0';
+        }
+        return sum % 10 == 0;
+    }
+
+    /**
+     * Parses a price. Plain decimal numbers with up to 15 significant digits, which covers every price in
+     * practice, are parsed directly and exactly; anything else is handed to {@link Double#parseDouble}.
+     *
+     * @param record the record holding the price
+     * @param start  the start offset of the price
+     * @param end    the end offset of the price
+     * @return the price
+     * @throws NumberFormatException if the text is not a number
+     */
+    static double parsePrice(String record, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (record.charAt(i) == '-' || record.charAt(i) == '+')) {
+            negative = record.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+
+        for (; i < end; i++) {
+            char c = record.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                digits = -1;
+                break;
+            }
+        }
+
+        // Both the mantissa and the power of ten are exact doubles here, so a single division gives the
+        // correctly rounded result, the same one Double.parseDouble returns.
+        if (digits > 0 && digits <= 15 && mantissa <= MAX_EXACT_MANTISSA) {
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(record.substring(start, end));
+    }
+
+    /**
+     * Parses a year. Plain integers of up to nine digits are parsed directly; anything else is handed to
+     * {@link Integer#parseInt}, which also reports malformed input.
+     *
+     * @param record the record holding the year
+     * @param start  the start offset of the year
+     * @param end    the end offset of the year
+     * @return the year
+     * @throws NumberFormatException if the text is not an integer
+     */
+    static int parseYear(String record, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (record.charAt(i) == '-' || record.charAt(i) == '+')) {
+            negative = record.charAt(i) == '-';
+            i++;
+        }
+
+        int length = end - i;
+        if (length > 0 && length <= 9) {
+            int value = 0;
+            for (; i < end; i++) {
+                char c = record.charAt(i);
+                if (c < '0' || c > '9') {
+                    return Integer.parseInt(record.substring(start, end));
+                }
+                value = value * 10 + (c - '0');
+            }
+            return negative ? -value : value;
+        }
+        return Integer.parseInt(record.substring(start, end));
+    }
+}
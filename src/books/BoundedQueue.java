@@ -0,0 +1,166 @@
+package books;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded first-in first-out queue that any number of threads may put to and take from without locks.
+ * <p>
+ * The elements are held in a ring whose slots each carry a sequence number, after the array-based queue of
+ * Dmitry Vyukov. A producer claims the slot at the tail by advancing the tail with a compare-and-set once
+ * the slot's sequence says it is free, stores its element and then publishes it by advancing the slot's
+ * sequence; a consumer does the same at the head. Producers and consumers only contend on the counter at
+ * their own end, and never on each other.
+ * <p>
+ * {@link #put} and {@link #take} wait for room or for an element by spinning briefly, then yielding, then
+ * parking for increasingly long intervals, so a full queue holds back its producers and an idle stage
+ * costs little CPU.
+ *
+ * @param <E> the type of the elements
+ */
+final class BoundedQueue<E> {
+
+    private static final int SPINS = 128;
+    private static final int YIELDS = 16;
+    private static final long MIN_PARK_NANOS = 20_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param capacity the least number of elements the queue can hold, rounded up to a power of two
+     */
+    BoundedQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an element at the tail of the queue if there is room.
+     *
+     * @param element the element, not null
+     * @return true if the element was added, false if the queue is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[slot] = element;
+                    // The release store publishes the element to the consumer that reads this sequence
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the element at the head of the queue if there is one.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long position = head.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = (E) elements[slot];
+                    elements[slot] = null;
+                    // Frees the slot for the producer that comes round to it on the next lap of the ring
+                    sequences.lazySet(slot, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Adds an element at the tail of the queue, waiting for room if the queue is full.
+     *
+     * @param element the element, not null
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    void put(E element) throws InterruptedException {
+        for (int attempt = 0; !offer(element); attempt++) {
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Removes the element at the head of the queue, waiting for one if the queue is empty.
+     *
+     * @return the element
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    E take() throws InterruptedException {
+        E element;
+        for (int attempt = 0; (element = poll()) == null; attempt++) {
+            backOff(attempt);
+        }
+        return element;
+    }
+
+    /**
+     * Returns the number of elements the queue can hold.
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Waits a little before a thread checks again for a condition set by another thread: a spin at first,
+     * then a yield, then a park that grows longer the longer the thread has waited.
+     *
+     * @param attempt the number of times the thread already checked the condition
+     * @throws InterruptedException if the thread was interrupted
+     */
+    static void backOff(int attempt) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+        } else if (attempt < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            int doublings = Math.min(attempt - SPINS - YIELDS, 6);
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, MIN_PARK_NANOS << doublings));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package books;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects output in memory so that files processed concurrently can be written in input order.
+ */
+class BufferedRecordSink implements RecordSink {
+
+    private final List<String>[] records;
+    private final List<Book>[] books;
+    private final List<String> syntaxErrors = new ArrayList<>();
+    private final List<String> semanticErrors = new ArrayList<>();
+    private final List<String> messages = new ArrayList<>();
+
+    /**
+     * Constructs a new BufferedRecordSink.
+     *
+     * @param genreCount the number of genres records can be routed to
+     */
+    @SuppressWarnings("unchecked")
+    public BufferedRecordSink(int genreCount) {
+        records = (List<String>[]) new List<?>[genreCount];
+        books = (List<Book>[]) new List<?>[genreCount];
+        for (int i = 0; i < genreCount; i++) {
+            records[i] = new ArrayList<>();
+            books[i] = new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void record(int genreIndex, String record) {
+        records[genreIndex].add(record);
+    }
+
+    @Override
+    public void book(int genreIndex, Book book) {
+        books[genreIndex].add(book);
+    }
+
+    @Override
+    public void syntaxError(String message) {
+        syntaxErrors.add(message);
+    }
+
+    @Override
+    public void semanticError(String message) {
+        semanticErrors.add(message);
+    }
+
+    @Override
+    public void message(String message) {
+        messages.add(message);
+    }
+
+    /**
+     * Passes everything collected so far on to another sink, keeping the order of each kind of output.
+     *
+     * @param target the sink to pass the output to
+     * @throws IOException if a book could not be written
+     */
+    public void replayTo(RecordSink target) throws IOException {
+        for (int i = 0; i < records.length; i++) {
+            for (String record : records[i]) {
+                target.record(i, record);
+            }
+            for (Book book : books[i]) {
+                target.book(i, book);
+            }
+        }
+        for (String message : syntaxErrors) {
+            target.syntaxError(message);
+        }
+        for (String message : semanticErrors) {
+            target.semanticError(message);
+        }
+        for (String message : messages) {
+            target.message(message);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package books;
+
+/**
+ * Controls how Part 3 holds the books of the genre stores while they are viewed.
+ */
+enum CatalogMode {
+
+    /** Binary stores are memory-mapped and decoded on demand; legacy files are read into {@code Book} objects. */
+    MAPPED,
+
+    /** Every store is loaded into primitive columns and a text arena on the heap; see {@link ColumnarBookSource}. */
+    HEAP,
+
+    /** As {@link #HEAP}, but the text arena is allocated outside the heap. */
+    OFF_HEAP;
+
+    /**
+     * Returns the catalog mode with the given name, ignoring case and accepting hyphens for underscores.
+     *
+     * @param name the name of the mode
+     * @return the catalog mode
+     * @throws IllegalArgumentException if there is no mode with that name
+     */
+    public static CatalogMode fromName(String name) {
+        for (CatalogMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name.replace('-', '_'))) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown catalog mode: " + name + ". Please enter mapped, heap or off-heap.");
+    }
+}
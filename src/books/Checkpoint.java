@@ -0,0 +1,233 @@
+package books;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how far a checkpointed run of Parts 1 and 2 got: the part it was in, the input file it was
+ * reading and the byte offset of the first record not handled yet, and the length of each output file
+ * written up to that record.
+ * <p>
+ * The checkpoint is a tab-separated text file. After its header comes a {@code phase} line, an
+ * {@code input} line for the file being read, an {@code output} line for each output file and a
+ * {@code count} line for each counter the run needs to carry on, such as the number of errors logged.
+ * A part that is committing has written all its outputs and is only left to rename them.
+ */
+class Checkpoint {
+
+    /** The name of the checkpoint file. */
+    static final String FILE_NAME = "books_checkpoint.txt";
+
+    private static final String HEADER = "# books checkpoint v1";
+
+    private final int part;
+    private final boolean committing;
+    private int fileIndex;
+    private String fileName = "-";
+    private long offset;
+    private long fileSize = -1;
+    private long fileModified = -1;
+    private final Map<String, Long> outputLengths = new LinkedHashMap<>();
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+
+    /**
+     * Constructs a new Checkpoint.
+     *
+     * @param part       the part the run is in, 1 or 2
+     * @param committing whether the part has written all its outputs and is renaming them
+     */
+    Checkpoint(int part, boolean committing) {
+        this.part = part;
+        this.committing = committing;
+    }
+
+    /**
+     * Records the input file being read.
+     *
+     * @param fileIndex    the index of the file among the files the part reads
+     * @param fileName     the name of the file
+     * @param offset       the byte offset of the first record not handled yet
+     * @param fileSize     the size of the file in bytes
+     * @param fileModified the modification time of the file in milliseconds
+     */
+    void setInput(int fileIndex, String fileName, long offset, long fileSize, long fileModified) {
+        this.fileIndex = fileIndex;
+        this.fileName = fileName;
+        this.offset = offset;
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+    }
+
+    /**
+     * Returns the part the run was in.
+     *
+     * @return 1 or 2
+     */
+    int getPart() {
+        return part;
+    }
+
+    /**
+     * Returns whether the part had written all its outputs and was renaming them.
+     *
+     * @return true if only the renames are left
+     */
+    boolean isCommitting() {
+        return committing;
+    }
+
+    /**
+     * Returns the index of the input file being read among the files the part reads.
+     *
+     * @return the file index
+     */
+    int getFileIndex() {
+        return fileIndex;
+    }
+
+    /**
+     * Returns the name of the input file being read.
+     *
+     * @return the file name
+     */
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the byte offset in the input file of the first record not handled yet.
+     *
+     * @return the offset
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the size the input file had.
+     *
+     * @return the size in bytes
+     */
+    long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Returns the modification time the input file had.
+     *
+     * @return the modification time in milliseconds
+     */
+    long getFileModified() {
+        return fileModified;
+    }
+
+    /**
+     * Returns the length of each output file written up to the checkpoint, by file name.
+     *
+     * @return the output lengths
+     */
+    Map<String, Long> getOutputLengths() {
+        return outputLengths;
+    }
+
+    /**
+     * Returns the counters of the run, by name.
+     *
+     * @return the counts
+     */
+    Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    /**
+     * Returns a counter of the run.
+     *
+     * @param name the name of the counter
+     * @return its value, or 0 if it was not recorded
+     */
+    long getCount(String name) {
+        return counts.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Loads a checkpoint.
+     *
+     * @param file the checkpoint file
+     * @return the checkpoint, or null if the file does not exist or is not a complete checkpoint
+     * @throws IOException if the file could not be read
+     */
+    static Checkpoint load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                return null;
+            }
+            String[] phase = in.readLine().split("\t");
+            if (!phase[0].equals("phase") || phase.length != 3) {
+                return null;
+            }
+            Checkpoint checkpoint = new Checkpoint(Integer.parseInt(phase[1]), phase[2].equals("committing"));
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts[0].equals("input") && parts.length == 6) {
+                    checkpoint.setInput(Integer.parseInt(parts[1]), parts[2], Long.parseLong(parts[3]),
+                            Long.parseLong(parts[4]), Long.parseLong(parts[5]));
+                } else if (parts[0].equals("output") && parts.length == 3) {
+                    checkpoint.outputLengths.put(parts[1], Long.parseLong(parts[2]));
+                } else if (parts[0].equals("count") && parts.length == 3) {
+                    checkpoint.counts.put(parts[1], Long.parseLong(parts[2]));
+                } else if (parts[0].equals("end")) {
+                    return checkpoint;
+                }
+            }
+        } catch (RuntimeException e) {
+            // A damaged checkpoint is as good as none
+        }
+        return null;
+    }
+
+    /**
+     * Saves the checkpoint and forces it to disk, replacing the previous one atomically.
+     *
+     * @param file the checkpoint file
+     * @throws IOException if the file could not be written
+     */
+    void save(Path file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append(HEADER).append('\n');
+        text.append("phase\t").append(part).append('\t').append(committing ? "committing" : "running").append('\n');
+        text.append("input\t").append(fileIndex).append('\t').append(fileName).append('\t').append(offset)
+                .append('\t').append(fileSize).append('\t').append(fileModified).append('\n');
+        for (Map.Entry<String, Long> output : outputLengths.entrySet()) {
+            text.append("output\t").append(output.getKey()).append('\t').append(output.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            text.append("count\t").append(count.getKey()).append('\t').append(count.getValue()).append('\n');
+        }
+        text.append("end\n");
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
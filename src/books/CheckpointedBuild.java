@@ -0,0 +1,410 @@
+package books;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs Parts 1 and 2 sequentially, taking a {@link Checkpoint} every so often, so that a run that stops part
+ * way can be resumed from its last checkpoint instead of starting over.
+ * <p>
+ * Every output file is written under a temporary name, with {@value #TEMP_EXTENSION} appended. A checkpoint
+ * flushes the outputs and forces them to disk, then records the input file being read, the byte offset of
+ * the next record and the length of each output. Resuming cuts each output back to the length it had at the
+ * checkpoint and carries on reading from the recorded offset, so the records after the checkpoint are
+ * handled exactly once. Once a part has written all its outputs it records that it is committing, and then
+ * renames them to their real names; a run resumed while committing only finishes the renames. The outputs
+ * from before the run are kept until then, so they are never left half-written.
+ */
+class CheckpointedBuild {
+
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final String SYNTAX_ERROR_FILE = "syntax_error_file.txt";
+    private static final String SEMANTIC_ERROR_FILE = "semantic_error_file.txt";
+    private static final String TEXT_INDEX_TEMP = TEMP_EXTENSION + TextIndex.EXTENSION;
+    private static final String RANGE_INDEX_TEMP = TEMP_EXTENSION + RangeIndex.EXTENSION;
+    private static final String ERROR_COUNT = "errors";
+    private static final String RECORD_COUNT = "books";
+    private static final String AUTHOR_COUNT = "authors";
+
+    /** How many records are handled between two looks at the clock. */
+    private static final int CLOCK_RECORDS = 1024;
+
+    private final RunOptions options;
+    private final String[][] genreToFileMapping;
+    private final RunMetrics metrics;
+    private final PrintStream console;
+    private final Path checkpointFile = Path.of(Checkpoint.FILE_NAME);
+    private final long intervalNanos;
+    private long lastCheckpoint;
+
+    /**
+     * Constructs a new CheckpointedBuild.
+     *
+     * @param options            the options giving the checkpoint interval and controlling how errors are reported
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @param metrics            the metrics of the run
+     * @param console            the stream used for console messages
+     */
+    CheckpointedBuild(RunOptions options, String[][] genreToFileMapping, RunMetrics metrics, PrintStream console) {
+        this(options, genreToFileMapping, metrics, console, TimeUnit.SECONDS.toNanos(options.getCheckpointInterval()));
+    }
+
+    /**
+     * Constructs a new CheckpointedBuild that takes a checkpoint at the given interval rather than the one of
+     * the options; with an interval of 0, a checkpoint is taken every {@value #CLOCK_RECORDS} records.
+     *
+     * @param options            the options controlling how errors are reported
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @param metrics            the metrics of the run
+     * @param console            the stream used for console messages
+     * @param intervalNanos      the least time between two checkpoints, in nanoseconds
+     */
+    CheckpointedBuild(RunOptions options, String[][] genreToFileMapping, RunMetrics metrics, PrintStream console,
+                      long intervalNanos) {
+        this.options = options;
+        this.genreToFileMapping = genreToFileMapping;
+        this.metrics = metrics;
+        this.console = console;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * Runs Parts 1 and 2, or what was left of them at the last checkpoint.
+     *
+     * @param resume whether to carry on from the last checkpoint, if there is a usable one
+     * @throws IOException if an I/O error occurs
+     */
+    void run(boolean resume) throws IOException {
+        lastCheckpoint = System.nanoTime();
+        Checkpoint checkpoint = resume ? loadCheckpoint() : null;
+        if (checkpoint == null) {
+            // A checkpoint left by an earlier run does not describe the outputs of this one
+            Files.deleteIfExists(checkpointFile);
+        }
+
+        if (checkpoint == null || checkpoint.getPart() == 1) {
+            if (checkpoint == null || !checkpoint.isCommitting()) {
+                runPart1(checkpoint);
+            }
+            for (int i = 0; i < 8; i++) {
+                commit(genreToFileMapping[1][i] + ".txt");
+            }
+            commit(SYNTAX_ERROR_FILE);
+            checkpoint = null;
+        }
+
+        if (checkpoint == null || !checkpoint.isCommitting()) {
+            runPart2(checkpoint);
+        }
+        for (int i = 0; i < 8; i++) {
+            String store = genreToFileMapping[1][i] + ".ser";
+            // The indexes first: they are stamped with the size and time of the store, which a rename keeps
+            commit(store + TEXT_INDEX_TEMP, store + TextIndex.EXTENSION);
+            commit(store + RANGE_INDEX_TEMP, store + RangeIndex.EXTENSION);
+            commit(store);
+        }
+        commit(SEMANTIC_ERROR_FILE);
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    /**
+     * Loads the last checkpoint, if it still matches the input and output files.
+     */
+    private Checkpoint loadCheckpoint() throws IOException {
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile);
+        if (checkpoint == null) {
+            console.println("There is no checkpoint to resume from, starting from the beginning.");
+            return null;
+        }
+        if (checkpoint.isCommitting()) {
+            console.println("Resuming Part " + checkpoint.getPart() + " where it was renaming its output files.");
+            return checkpoint;
+        }
+        if (!matches(checkpoint)) {
+            console.println("The files changed since the last checkpoint, starting from the beginning.");
+            return null;
+        }
+        console.println("Resuming Part " + checkpoint.getPart() + " at byte " + checkpoint.getOffset() + " of "
+                + checkpoint.getFileName() + ".");
+        return checkpoint;
+    }
+
+    /**
+     * Checks that the input file of a checkpoint is the one the run would read at that point and has not
+     * changed, and that every output holds at least what it held at the checkpoint.
+     */
+    private boolean matches(Checkpoint checkpoint) throws IOException {
+        int index = checkpoint.getFileIndex();
+        String expected;
+        if (checkpoint.getPart() == 1) {
+            List<String> fileNames = Main.readInputFileNames();
+            expected = index < fileNames.size() ? fileNames.get(index) : "-";
+        } else {
+            expected = index < 8 ? genreToFileMapping[1][index] + ".txt" : "-";
+        }
+        if (!expected.equals(checkpoint.getFileName())) {
+            return false;
+        }
+        if (!expected.equals("-")) {
+            Path file = Path.of(expected.trim());
+            if (size(file) != checkpoint.getFileSize() || modified(file) != checkpoint.getFileModified()) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, Long> output : checkpoint.getOutputLengths().entrySet()) {
+            if (size(Path.of(output.getKey())) < output.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Classifies the records of the input files into the genre files and the syntax error file.
+     */
+    private void runPart1(Checkpoint from) throws IOException {
+        List<String> fileNames = Main.readInputFileNames();
+
+        FileChannel[] channels = new FileChannel[8];
+        PrintWriter[] writers = new PrintWriter[8];
+        for (int i = 0; i < 8; i++) {
+            channels[i] = openOutput(genreToFileMapping[1][i] + ".txt", from);
+            writers[i] = new PrintWriter(Channels.newOutputStream(channels[i]));
+        }
+        FileChannel errorChannel = openOutput(SYNTAX_ERROR_FILE, from);
+        ErrorSink syntaxErrors = openErrors(SYNTAX_ERROR_FILE, errorChannel, from);
+        RecordSink sink = new DirectRecordSink(writers, syntaxErrors, null, null, console);
+
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        int first = from == null ? 0 : from.getFileIndex();
+        for (int f = first; f < fileNames.size(); f++) {
+            String fileName = fileNames.get(f);
+            Path file = Path.of(fileName.trim());
+            FileMetrics fileMetrics = new FileMetrics(fileName, metrics);
+            if (!Files.isRegularFile(file)) {
+                sink.message("Could not find file " + fileName + ", moving on to the next input file.\n");
+                metrics.add(fileMetrics);
+                continue;
+            }
+
+            long size = size(file);
+            long modified = modified(file);
+            try (LineReader reader = new LineReader(file, f == first && from != null ? from.getOffset() : 0)) {
+                long mark = fileMetrics.start();
+                long handled = 0;
+                String currentLine;
+                while ((currentLine = reader.readLine()) != null) {
+                    long recordStart = mark;
+                    mark = fileMetrics.read(mark, currentLine.length() + 1);
+                    mark = Main.classifyRecord(fileName, currentLine, genreToFileMapping, tokenizer, false, sink,
+                            fileMetrics, mark);
+                    fileMetrics.recordDone(recordStart, mark);
+
+                    if (++handled % CLOCK_RECORDS == 0 && isDue()) {
+                        Checkpoint checkpoint = new Checkpoint(1, false);
+                        checkpoint.setInput(f, fileName, reader.getOffset(), size, modified);
+                        for (int i = 0; i < 8; i++) {
+                            sync(writers[i], channels[i], genreToFileMapping[1][i] + ".txt", checkpoint);
+                        }
+                        sync(syntaxErrors, errorChannel, SYNTAX_ERROR_FILE, checkpoint);
+                        save(checkpoint);
+                    }
+                }
+                fileMetrics.finish();
+            }
+            metrics.add(fileMetrics);
+        }
+
+        Checkpoint done = new Checkpoint(1, true);
+        for (int i = 0; i < 8; i++) {
+            sync(writers[i], channels[i], genreToFileMapping[1][i] + ".txt", done);
+            writers[i].close();
+        }
+        sync(syntaxErrors, errorChannel, SYNTAX_ERROR_FILE, done);
+        syntaxErrors.close();
+        save(done);
+    }
+
+    /**
+     * Validates the records of the genre files into the genre stores and the semantic error file.
+     */
+    private void runPart2(Checkpoint from) throws IOException {
+        String[] files = genreToFileMapping[1];
+        FileChannel errorChannel = openOutput(SEMANTIC_ERROR_FILE, from);
+        ErrorSink semanticErrors = openErrors(SEMANTIC_ERROR_FILE, errorChannel, from);
+        RecordSink errorSink = new DirectRecordSink(null, null, null, semanticErrors, console);
+
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        int first = from == null ? 0 : from.getFileIndex();
+        for (int i = first; i < 8; i++) {
+            String store = files[i] + ".ser" + TEMP_EXTENSION;
+            Path file = Path.of(files[i] + ".txt");
+            FileMetrics fileMetrics = new FileMetrics(files[i] + ".txt", metrics);
+
+            BookStoreWriter writer;
+            if (i == first && from != null && from.getOutputLengths().containsKey(store)) {
+                writer = BookStoreWriter.resume(store, from.getOutputLengths().get(store), from.getCount(RECORD_COUNT),
+                        (int) from.getCount(AUTHOR_COUNT));
+            } else {
+                writer = new BookStoreWriter(store);
+            }
+
+            if (Files.isRegularFile(file)) {
+                long size = size(file);
+                long modified = modified(file);
+                long offset = i == first && from != null ? from.getOffset() : 0;
+                try (LineReader reader = new LineReader(file, offset)) {
+                    long mark = fileMetrics.start();
+                    long handled = 0;
+                    String book;
+                    while ((book = reader.readLine()) != null) {
+                        long recordStart = mark;
+                        mark = fileMetrics.read(mark, book.length() + 1);
+                        tokenizer.tokenize(book); // Split by comma, but ignore commas within quotes
+                        mark = fileMetrics.lap(Stage.SPLIT, mark);
+
+                        Book bookObject = Main.validateRecord(tokenizer, files[i], errorSink, fileMetrics);
+                        mark = fileMetrics.lap(Stage.VALIDATE, mark);
+
+                        if (bookObject != null) {
+                            fileMetrics.book(i);
+                            writer.write(bookObject);
+                            mark = fileMetrics.lap(Stage.SERIALIZE, mark);
+                        }
+                        fileMetrics.recordDone(recordStart, mark);
+
+                        if (++handled % CLOCK_RECORDS == 0 && isDue()) {
+                            Checkpoint checkpoint = new Checkpoint(2, false);
+                            checkpoint.setInput(i, files[i] + ".txt", reader.getOffset(), size, modified);
+                            checkpoint.getOutputLengths().put(store, writer.sync());
+                            checkpoint.getCounts().put(RECORD_COUNT, writer.getRecordCount());
+                            checkpoint.getCounts().put(AUTHOR_COUNT, (long) writer.getAuthorCount());
+                            sync(semanticErrors, errorChannel, SEMANTIC_ERROR_FILE, checkpoint);
+                            save(checkpoint);
+                        }
+                    }
+                    fileMetrics.finish();
+                }
+                metrics.add(fileMetrics);
+                console.println("Line: " + writer.getRecordCount());
+            } else {
+                // The store is still written, empty, so that Part 3 finds every genre
+                console.println("Could not find file " + files[i] + ", moving on to the next input file.");
+            }
+            writer.close();
+            forceFile(Path.of(store));
+
+            // Move the checkpoint past the finished store before its journal goes
+            Checkpoint checkpoint = new Checkpoint(2, false);
+            if (i + 1 < 8) {
+                Path next = Path.of(files[i + 1] + ".txt");
+                checkpoint.setInput(i + 1, files[i + 1] + ".txt", 0, size(next), modified(next));
+            } else {
+                checkpoint.setInput(8, "-", 0, -1, -1);
+            }
+            sync(semanticErrors, errorChannel, SEMANTIC_ERROR_FILE, checkpoint);
+            save(checkpoint);
+            Files.deleteIfExists(Path.of(store + BookStoreWriter.JOURNAL_EXTENSION));
+        }
+
+        Checkpoint done = new Checkpoint(2, true);
+        sync(semanticErrors, errorChannel, SEMANTIC_ERROR_FILE, done);
+        semanticErrors.close();
+        save(done);
+    }
+
+    /**
+     * Opens the temporary file of an output, cut back to the length it had at the checkpoint resumed from, or
+     * empty when starting over.
+     */
+    private static FileChannel openOutput(String fileName, Checkpoint from) throws IOException {
+        Path temp = Path.of(fileName + TEMP_EXTENSION);
+        Long length = from == null ? null : from.getOutputLengths().get(temp.toString());
+        if (length == null) {
+            return FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+        channel.truncate(length);
+        channel.position(length);
+        return channel;
+    }
+
+    /**
+     * Creates the error sink of an error file, counting the errors it held at the checkpoint resumed from.
+     */
+    private ErrorSink openErrors(String fileName, FileChannel channel, Checkpoint from) {
+        ErrorSink errors = new ErrorSink(fileName, new OutputStreamWriter(Channels.newOutputStream(channel)),
+                options.getConsoleMode(), options.getConsoleSampleRate(), console);
+        if (from != null && from.getOutputLengths().containsKey(fileName + TEMP_EXTENSION)) {
+            errors.addEarlierErrors(from.getCount(ERROR_COUNT));
+        }
+        return errors;
+    }
+
+    private static void sync(PrintWriter writer, FileChannel channel, String fileName, Checkpoint checkpoint)
+            throws IOException {
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("Could not write " + fileName + TEMP_EXTENSION);
+        }
+        channel.force(false);
+        checkpoint.getOutputLengths().put(fileName + TEMP_EXTENSION, channel.position());
+    }
+
+    private static void sync(ErrorSink errors, FileChannel channel, String fileName, Checkpoint checkpoint)
+            throws IOException {
+        errors.flush();
+        channel.force(false);
+        checkpoint.getOutputLengths().put(fileName + TEMP_EXTENSION, channel.position());
+        checkpoint.getCounts().put(ERROR_COUNT, errors.getErrorCount());
+    }
+
+    private boolean isDue() {
+        return System.nanoTime() - lastCheckpoint >= intervalNanos;
+    }
+
+    private void save(Checkpoint checkpoint) throws IOException {
+        checkpoint.save(checkpointFile);
+        lastCheckpoint = System.nanoTime();
+    }
+
+    /**
+     * Renames the temporary file of an output to the output, if it has not been renamed yet.
+     */
+    private static void commit(String fileName) throws IOException {
+        commit(fileName + TEMP_EXTENSION, fileName);
+    }
+
+    private static void commit(String temp, String fileName) throws IOException {
+        Path source = Path.of(temp);
+        if (Files.exists(source)) {
+            Files.move(source, Path.of(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static void forceFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    private static long size(Path file) throws IOException {
+        return Files.exists(file) ? Files.size(file) : -1;
+    }
+
+    private static long modified(Path file) throws IOException {
+        return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : -1;
+    }
+}
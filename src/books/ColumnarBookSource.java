@@ -0,0 +1,251 @@
+package books;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A book source that holds a whole genre store as columns of primitives instead of {@link Book} objects.
+ * <p>
+ * The price, year, ISBN and genre of each book are kept in a {@code double[]}, a {@code short[]}, a
+ * {@code long[]} and a {@code byte[]}. ISBNs made of 10 or 13 digits, the last of an ISBN-10 possibly an X,
+ * are packed into their long as a number; any other ISBN is kept as text. Genres are the ordinals of their
+ * {@link Genre}. Titles are UTF-8 bytes in a shared arena of large
+ * chunks, located by an offset and a length per book, and the arena can be allocated outside the heap.
+ * Authors are dictionary-encoded: each distinct authors string is stored once in the arena, and a book
+ * holds its id.
+ * <p>
+ * A book then takes 35 bytes of heap plus its title: {@code CatalogHeapBenchmark} measures 68 bytes per book
+ * in all, against 176 for a {@code Book} and its three strings, and the columns hold no references for the
+ * garbage collector to trace.
+ * The {@code Book} returned by {@link #get(int)} is built when it is asked for, as a short-lived view.
+ */
+final class ColumnarBookSource implements BookSource {
+
+    /** The size of a chunk of the text arena. */
+    private static final int CHUNK_SIZE = 64 << 20;
+
+    /** The tag of a packed ISBN-10, in the top byte of its long. */
+    private static final long ISBN_10 = 1L << 56;
+
+    /** The tag of a packed ISBN-13. */
+    private static final long ISBN_13 = 2L << 56;
+
+    /** The tag of an ISBN kept as text, whose long holds its offset in the arena and its length. */
+    private static final long ISBN_TEXT = 3L << 56;
+
+    private static final long TAG_MASK = 0xFFL << 56;
+
+    private final boolean offHeap;
+    private int size;
+    private double[] prices = new double[1024];
+    private short[] years = new short[1024];
+    private long[] isbns = new long[1024];
+    private byte[] genres = new byte[1024];
+    private long[] titleOffsets = new long[1024];
+    private int[] titleLengths = new int[1024];
+    private int[] authorIds = new int[1024];
+
+    private long[] authorOffsets = new long[1024];
+    private int[] authorLengths = new int[1024];
+    private int authorCount;
+    private Map<String, Integer> authorDictionary = new HashMap<>();
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private int chunkPosition;
+    private byte[] scratch = new byte[256];
+
+    private ColumnarBookSource(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Reads a genre store, binary or legacy, into columns.
+     *
+     * @param fileName the name of the store file
+     * @param offHeap  whether the text arena is allocated outside the heap
+     * @return the loaded store
+     * @throws IOException            if the file could not be read
+     * @throws ClassNotFoundException if a legacy file holds an object of an unknown class
+     */
+    static ColumnarBookSource load(String fileName, boolean offHeap) throws IOException, ClassNotFoundException {
+        ColumnarBookSource source = new ColumnarBookSource(offHeap);
+        try (BookStoreReader reader = new BookStoreReader(fileName)) {
+            Book book;
+            while ((book = reader.next()) != null) {
+                source.add(book);
+            }
+        }
+        source.trim();
+        return source;
+    }
+
+    private void add(Book book) {
+        if (size == prices.length) {
+            int capacity = size * 2;
+            prices = Arrays.copyOf(prices, capacity);
+            years = Arrays.copyOf(years, capacity);
+            isbns = Arrays.copyOf(isbns, capacity);
+            genres = Arrays.copyOf(genres, capacity);
+            titleOffsets = Arrays.copyOf(titleOffsets, capacity);
+            titleLengths = Arrays.copyOf(titleLengths, capacity);
+            authorIds = Arrays.copyOf(authorIds, capacity);
+        }
+
+        byte[] title = book.getTitle().getBytes(StandardCharsets.UTF_8);
+        prices[size] = book.getPrice();
+        years[size] = (short) book.getYear();
+        isbns[size] = packIsbn(book.getIsbn());
+        genres[size] = (byte) book.getGenre().ordinal();
+        titleOffsets[size] = append(title);
+        titleLengths[size] = title.length;
+        authorIds[size] = authorId(book.getAuthors());
+        size++;
+    }
+
+    private int authorId(String authors) {
+        Integer id = authorDictionary.get(authors);
+        if (id != null) {
+            return id;
+        }
+        if (authorCount == authorOffsets.length) {
+            authorOffsets = Arrays.copyOf(authorOffsets, authorCount * 2);
+            authorLengths = Arrays.copyOf(authorLengths, authorCount * 2);
+        }
+        byte[] bytes = authors.getBytes(StandardCharsets.UTF_8);
+        authorOffsets[authorCount] = append(bytes);
+        authorLengths[authorCount] = bytes.length;
+        authorDictionary.put(authors, authorCount);
+        return authorCount++;
+    }
+
+    private void trim() {
+        prices = Arrays.copyOf(prices, size);
+        years = Arrays.copyOf(years, size);
+        isbns = Arrays.copyOf(isbns, size);
+        genres = Arrays.copyOf(genres, size);
+        titleOffsets = Arrays.copyOf(titleOffsets, size);
+        titleLengths = Arrays.copyOf(titleLengths, size);
+        authorIds = Arrays.copyOf(authorIds, size);
+        authorOffsets = Arrays.copyOf(authorOffsets, authorCount);
+        authorLengths = Arrays.copyOf(authorLengths, authorCount);
+        // The dictionary is only needed while loading; afterwards ids are resolved through the arena
+        authorDictionary = null;
+        if (chunks.length > 0) {
+            chunks[chunks.length - 1] = resize(chunks[chunks.length - 1], chunkPosition);
+        }
+    }
+
+    /**
+     * Copies text to the end of the arena, in one chunk. Every chunk but the last holds {@value #CHUNK_SIZE}
+     * bytes, and the last one doubles as it fills, so a small store does not take a whole chunk.
+     *
+     * @return the offset of the text in the arena
+     */
+    private long append(byte[] text) {
+        int length = text.length;
+        if (length > CHUNK_SIZE) {
+            throw new IllegalStateException("A book has a field of more than " + CHUNK_SIZE + " bytes");
+        }
+        if (chunks.length == 0 || chunkPosition + length > CHUNK_SIZE) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = allocate(Math.max(64 * 1024, length));
+            chunkPosition = 0;
+        }
+        ByteBuffer chunk = chunks[chunks.length - 1];
+        if (chunkPosition + length > chunk.capacity()) {
+            chunk = resize(chunk, (int) Math.min(CHUNK_SIZE, Math.max(2L * chunk.capacity(), chunkPosition + length)));
+            chunks[chunks.length - 1] = chunk;
+        }
+        chunk.put(chunkPosition, text);
+        long offset = (long) (chunks.length - 1) * CHUNK_SIZE + chunkPosition;
+        chunkPosition += length;
+        return offset;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private ByteBuffer resize(ByteBuffer chunk, int capacity) {
+        ByteBuffer resized = allocate(capacity);
+        resized.put(0, chunk, 0, chunkPosition);
+        return resized;
+    }
+
+    private String text(long offset, int length) {
+        ByteBuffer chunk = chunks[(int) (offset / CHUNK_SIZE)];
+        int position = (int) (offset % CHUNK_SIZE);
+        if (chunk.hasArray()) {
+            return new String(chunk.array(), chunk.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        }
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        chunk.get(position, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private long packIsbn(String isbn) {
+        int length = isbn.length();
+        if (length == 10 || length == 13) {
+            long digits = 0;
+            boolean packable = true;
+            for (int i = 0; i < length && packable; i++) {
+                char c = isbn.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    digits = digits * 11 + (c - '0');
+                } else if (c == 'X' && length == 10 && i == 9) {
+                    digits = digits * 11 + 10;
+                } else {
+                    packable = false;
+                }
+            }
+            if (packable) {
+                return (length == 10 ? ISBN_10 : ISBN_13) | digits;
+            }
+        }
+
+        byte[] bytes = isbn.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalStateException("A book has an ISBN of " + bytes.length + " bytes");
+        }
+        return ISBN_TEXT | (append(bytes) << 16) | bytes.length;
+    }
+
+    private String unpackIsbn(long packed) {
+        long tag = packed & TAG_MASK;
+        if (tag == ISBN_TEXT) {
+            return text((packed & ~TAG_MASK) >>> 16, (int) (packed & 0xFFFF));
+        }
+
+        char[] chars = new char[tag == ISBN_10 ? 10 : 13];
+        long digits = packed & ~TAG_MASK;
+        for (int i = chars.length - 1; i >= 0; i--) {
+            int digit = (int) (digits % 11);
+            chars[i] = digit == 10 ? 'X' : (char) ('0' + digit);
+            digits /= 11;
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Book get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " books");
+        }
+        String title = text(titleOffsets[index], titleLengths[index]);
+        int author = authorIds[index];
+        String authors = text(authorOffsets[author], authorLengths[author]);
+        return new Book(title, authors, prices[index], unpackIsbn(isbns[index]), Genre.fromOrdinal(genres[index]),
+                years[index]);
+    }
+}
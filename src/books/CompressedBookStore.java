@@ -0,0 +1,181 @@
+package books;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Inflater;
+
+/**
+ * A book source over a genre store compressed in blocks, which decompresses only the blocks holding the
+ * books asked for.
+ * <p>
+ * Opening the store reads its header, its block index and its dictionary. Asking for a book reads and
+ * decompresses the block holding it, unless that block was the last one decompressed, so paging through
+ * the books of a file decompresses each block once, and looking a book up through an index decompresses a
+ * single block of {@value BookStoreFormat#BLOCK_RECORDS} records. The file stays open until the store is
+ * closed.
+ */
+class CompressedBookStore implements BookSource, Closeable {
+
+    private final FileChannel channel;
+    private final int size;
+    private final long[] blockOffsets;
+    private final String[] authors;
+    private final Inflater inflater = new Inflater();
+
+    private int cachedBlock = -1;
+    private byte[] blockBytes;
+    private final int[] recordOffsets = new int[BookStoreFormat.BLOCK_RECORDS];
+    private ByteBuffer compressed = ByteBuffer.allocate(16 * 1024);
+
+    /**
+     * Checks whether the given file is a store compressed in blocks.
+     *
+     * @param fileName the name of the file
+     * @return true if the file starts with the header of a compressed store
+     * @throws IOException if the file could not be read
+     */
+    static boolean isCompressed(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Short.BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the magic number and version are complete or the file ends
+            }
+            return !header.hasRemaining() && header.getInt(0) == BookStoreFormat.MAGIC
+                    && header.getShort(Integer.BYTES) == BookStoreFormat.COMPRESSED_VERSION;
+        }
+    }
+
+    /**
+     * Opens a compressed store and reads its block index and dictionary.
+     *
+     * @param fileName the name of the store file
+     * @throws IOException if the file could not be read or is not a valid compressed store
+     */
+    public CompressedBookStore(String fileName) throws IOException {
+        channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < BookStoreFormat.COMPRESSED_HEADER_SIZE) {
+                throw new IOException(fileName + " is not a compressed book store");
+            }
+            ByteBuffer header = read(0, BookStoreFormat.COMPRESSED_HEADER_SIZE);
+            if (header.getInt() != BookStoreFormat.MAGIC || header.getShort() != BookStoreFormat.COMPRESSED_VERSION) {
+                throw new IOException(fileName + " is not a compressed book store");
+            }
+            header.getShort();
+            long recordCount = header.getLong();
+            long dictionaryOffset = header.getLong();
+            long indexOffset = header.getLong();
+            if (recordCount > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " has too many books to view: " + recordCount);
+            }
+            size = (int) recordCount;
+
+            int blockCount = (size + BookStoreFormat.BLOCK_RECORDS - 1) / BookStoreFormat.BLOCK_RECORDS;
+            if (indexOffset < dictionaryOffset || dictionaryOffset < BookStoreFormat.COMPRESSED_HEADER_SIZE
+                    || fileSize - indexOffset != Integer.BYTES + (blockCount + 1L) * Long.BYTES) {
+                throw new IOException(fileName + " has no valid block index");
+            }
+            ByteBuffer index = read(indexOffset, (int) (fileSize - indexOffset));
+            if (index.getInt() != blockCount) {
+                throw new IOException(fileName + " has no valid block index");
+            }
+            blockOffsets = new long[blockCount + 1];
+            for (int i = 0; i <= blockCount; i++) {
+                blockOffsets[i] = index.getLong();
+                if (i > 0 && blockOffsets[i] <= blockOffsets[i - 1]) {
+                    throw new IOException(fileName + " has no valid block index");
+                }
+            }
+
+            long dictionarySize = indexOffset - dictionaryOffset;
+            if (dictionarySize > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " has no valid dictionary");
+            }
+            try {
+                byte[] dictionary = BookStoreFormat.readBlock(read(dictionaryOffset, (int) dictionarySize), inflater, null);
+                authors = BookStoreFormat.readDictionary(ByteBuffer.wrap(dictionary));
+            } catch (RuntimeException e) {
+                throw new IOException(fileName + " has no valid dictionary", e);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Book get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " books");
+        }
+
+        int block = index / BookStoreFormat.BLOCK_RECORDS;
+        if (block != cachedBlock) {
+            loadBlock(block);
+        }
+        int offset = recordOffsets[index % BookStoreFormat.BLOCK_RECORDS];
+        ByteBuffer buffer = ByteBuffer.wrap(blockBytes);
+        int length = buffer.getInt(offset);
+        return BookStoreFormat.decode(buffer.position(offset + Integer.BYTES).limit(offset + Integer.BYTES + length), authors);
+    }
+
+    /**
+     * Reads and decompresses a block, and finds where each of its records starts.
+     */
+    private void loadBlock(int block) {
+        cachedBlock = -1;
+        try {
+            long start = blockOffsets[block];
+            ByteBuffer bytes = read(start, (int) (blockOffsets[block + 1] - start));
+            blockBytes = BookStoreFormat.readBlock(bytes, inflater, blockBytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read block " + block + " of the book store", e);
+        }
+
+        int records = Math.min(BookStoreFormat.BLOCK_RECORDS, size - block * BookStoreFormat.BLOCK_RECORDS);
+        ByteBuffer buffer = ByteBuffer.wrap(blockBytes);
+        int offset = 0;
+        for (int i = 0; i < records; i++) {
+            recordOffsets[i] = offset;
+            offset += Integer.BYTES + buffer.getInt(offset);
+        }
+        cachedBlock = block;
+    }
+
+    /**
+     * Reads bytes of the file into a buffer that is reused by the next read.
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (compressed.capacity() < length) {
+            compressed = ByteBuffer.allocate(Math.max(length, compressed.capacity() * 2));
+        }
+        compressed.clear().limit(length);
+        while (compressed.hasRemaining()) {
+            if (channel.read(compressed, position + compressed.position()) < 0) {
+                throw new IOException("Book store is truncated at offset " + position);
+            }
+        }
+        return compressed.flip();
+    }
+
+    /**
+     * Closes the file and releases the decompressor.
+     *
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
@@ -0,0 +1,35 @@
+package books;
+
+/**
+ * Controls how much of the error output is echoed to the console.
+ */
+enum ConsoleMode {
+
+    /** Nothing is echoed. */
+    OFF,
+
+    /** Only the number of errors written to each error file is shown at the end. */
+    SUMMARY,
+
+    /** One error in every N is echoed, followed by the summary. */
+    SAMPLED,
+
+    /** Every error is echoed as it is found. */
+    FULL;
+
+    /**
+     * Returns the console mode with the given name, ignoring case.
+     *
+     * @param name the name of the mode
+     * @return the console mode
+     * @throws IllegalArgumentException if there is no mode with that name
+     */
+    public static ConsoleMode fromName(String name) {
+        for (ConsoleMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown console mode: " + name + ". Please enter off, summary, sampled or full.");
+    }
+}
@@ -0,0 +1,185 @@
+package books;
+
+/**
+ * Splits a CSV book record into its fields in a single pass over the line.
+ * <p>
+ * Commas that appear inside a quoted field are not treated as separators, and an escaped quote
+ * ({@code ""}) inside a quoted field does not end it. The field boundaries are kept as offsets into the
+ * current line, and the offset buffers are reused from one line to the next, so tokenizing a record does
+ * not allocate unless a field is actually read as a {@code String}.
+ * <p>
+ * The field count reported for a line is the same as the one {@code String.split} produced with the
+ * quote-aware regular expression used previously, including the removal of trailing empty fields. This
+ * keeps the "too many fields", "too few fields" and "missing field" classification unchanged.
+ */
+class CsvTokenizer {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private String line = "";
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int count;
+
+    /**
+     * Tokenizes the given line, replacing the fields of the previous line.
+     *
+     * @param line the record to split
+     * @return the number of fields in the record
+     */
+    public int tokenize(String line) {
+        this.line = line;
+        this.count = 0;
+
+        int length = line.length();
+
+        // A comma separates two fields when an even number of quotes follows it. Counting the quotes once
+        // up front lets us decide this from the number of quotes seen so far instead of rescanning the rest
+        // of the line at every comma.
+        int totalQuotes = 0;
+        for (int i = 0; i < length; i++) {
+            if (line.charAt(i) == '"') {
+                totalQuotes++;
+            }
+        }
+
+        int quotesSeen = 0;
+        int fieldStart = 0;
+        boolean split = false;
+
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quotesSeen++;
+            } else if (c == ',' && ((totalQuotes - quotesSeen) & 1) == 0) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+                split = true;
+            }
+        }
+        addField(fieldStart, length);
+
+        if (split) {
+            // Trailing empty fields are dropped, as String.split does
+            while (count > 0 && starts[count - 1] == ends[count - 1]) {
+                count--;
+            }
+        }
+
+        return count;
+    }
+
+    private void addField(int start, int end) {
+        if (count == starts.length) {
+            int[] newStarts = new int[count * 2];
+            int[] newEnds = new int[count * 2];
+            System.arraycopy(starts, 0, newStarts, 0, count);
+            System.arraycopy(ends, 0, newEnds, 0, count);
+            starts = newStarts;
+            ends = newEnds;
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * Returns the line that was last tokenized.
+     *
+     * @return the current line
+     */
+    public String line() {
+        return line;
+    }
+
+    /**
+     * Returns the number of fields in the current line.
+     *
+     * @return the field count
+     */
+    public int fieldCount() {
+        return count;
+    }
+
+    /**
+     * Returns the offset in the current line at which the given field starts.
+     *
+     * @param index the index of the field
+     * @return the start offset, inclusive
+     */
+    public int start(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * Returns the offset in the current line at which the given field ends.
+     *
+     * @param index the index of the field
+     * @return the end offset, exclusive
+     */
+    public int end(int index) {
+        checkIndex(index);
+        return ends[index];
+    }
+
+    /**
+     * Checks whether the given field is empty.
+     *
+     * @param index the index of the field
+     * @return true if the field has no characters, false otherwise
+     */
+    public boolean isEmpty(int index) {
+        checkIndex(index);
+        return starts[index] == ends[index];
+    }
+
+    /**
+     * Checks whether the raw text of the given field is equal to a value, without creating a String for it.
+     *
+     * @param index the index of the field
+     * @param value the value to compare with
+     * @return true if the field text equals the value, false otherwise
+     */
+    public boolean fieldEquals(int index, String value) {
+        checkIndex(index);
+        int length = ends[index] - starts[index];
+        return length == value.length() && line.regionMatches(starts[index], value, 0, length);
+    }
+
+    /**
+     * Returns the raw text of the given field, including any surrounding quotes.
+     *
+     * @param index the index of the field
+     * @return the field text
+     */
+    public String field(int index) {
+        checkIndex(index);
+        return line.substring(starts[index], ends[index]);
+    }
+
+    /**
+     * Returns the text of the given field with one leading and one trailing quote removed if present.
+     *
+     * @param index the index of the field
+     * @return the field text without its surrounding quotes
+     */
+    public String unquotedField(int index) {
+        checkIndex(index);
+        int start = starts[index];
+        int end = ends[index];
+        if (start < end && line.charAt(start) == '"') {
+            start++;
+        }
+        if (start < end && line.charAt(end - 1) == '"') {
+            end--;
+        }
+        return line.substring(start, end);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Field " + index + " out of bounds for " + count + " fields");
+        }
+    }
+}
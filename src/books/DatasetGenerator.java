@@ -0,0 +1,378 @@
+package books;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic year files in the format of the bundled {@code books<year>.csv.txt} inputs, together
+ * with a matching {@code part1_input_file_names.txt}, for load and soak testing Parts 1 to 3.
+ * <p>
+ * The output is fully determined by the options, including the seed, so the same command always produces
+ * the same bytes. Records are written one at a time through a buffered writer and nothing else is kept in
+ * memory, so the size of the generated data set is limited only by the disk. The mix of valid and broken
+ * records is controlled by the rate options:
+ * <ul>
+ * <li>{@code --output=DIR}: the directory to write to, {@code dataset} by default</li>
+ * <li>{@code --files=N}: the number of year files, 16 by default</li>
+ * <li>{@code --first-year=YEAR}: the year of the first file, 1995 by default</li>
+ * <li>{@code --records=N}: the number of records per file, 10000 by default</li>
+ * <li>{@code --size=SIZE}: the total size to generate instead of a record count, such as {@code 500m} or
+ * {@code 50g}, split evenly between the files</li>
+ * <li>{@code --seed=N}: the random seed, 1 by default</li>
+ * <li>{@code --quoted-titles=RATE}: the share of titles that are quoted and contain commas</li>
+ * <li>{@code --max-authors=N}: the longest author list</li>
+ * <li>{@code --isbn13=RATE}: the share of ISBN-13 values, the others being ISBN-10</li>
+ * <li>{@code --bad-isbn=RATE}, {@code --bad-price=RATE}, {@code --bad-year=RATE}: the share of records with
+ * a wrong check digit, a negative price or a year out of range (semantic errors)</li>
+ * <li>{@code --bad-field-count=RATE}, {@code --missing-field=RATE}, {@code --unknown-genre=RATE}: the share
+ * of records with too many or too few fields, an empty field or an unknown genre (syntax errors)</li>
+ * </ul>
+ */
+final class DatasetGenerator {
+
+    private static final String[] GENRES = Main.initializeGenreMappings()[0];
+
+    private static final String[] TITLE_WORDS = {
+            "The", "Complete", "Guide", "to", "Radio", "Comics", "History", "of", "American", "Baseball",
+            "Trains", "Movies", "Television", "Collectibles", "Memories", "Golden", "Age", "Classic", "Jazz",
+            "Cars", "Airplanes", "Stars", "Legends", "Heroes", "Nostalgia", "Life", "Music", "Encyclopedia",
+            "Handbook", "Secret", "World", "Early", "Years", "Illustrated", "Collector's", "Story"
+    };
+
+    private static final String[] FIRST_NAMES = {
+            "Mary", "John", "Dennis", "Janet", "Robert", "Barbara", "David", "Martin", "Erica", "Stephen",
+            "Maggie", "Peter", "Brent", "Gary", "Roy", "Annie", "Michael", "Al", "Susan", "Carol"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Giblin", "Fischer", "Coleman", "Young", "Cohen", "Victor", "Newhardt", "Malan", "Grams Jr.",
+            "Jong", "Sprinkle", "Davis", "Miller", "Thompson", "Bickford", "Frankenhoff", "Starr", "Jackson"
+    };
+
+    private Path output = Paths.get("dataset");
+    private int files = 16;
+    private int firstYear = 1995;
+    private long recordsPerFile = 10_000;
+    private long totalSize = -1;
+    private long seed = 1;
+    private double quotedTitles = 0.2;
+    private int maxAuthors = 8;
+    private double isbn13 = 0.4;
+    private double badIsbn = 0.02;
+    private double badPrice = 0.01;
+    private double badYear = 0.01;
+    private double badFieldCount = 0.005;
+    private double missingField = 0.005;
+    private double unknownGenre = 0.005;
+
+    private final StringBuilder record = new StringBuilder(256);
+    private final char[] digits = new char[13];
+
+    private DatasetGenerator() {
+    }
+
+    /**
+     * Generates a data set as described by the command-line options.
+     *
+     * @param args the command-line options
+     * @throws IOException if an I/O error occurs
+     */
+    public static void main(String[] args) throws IOException {
+        DatasetGenerator generator;
+        try {
+            generator = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.print("Program will terminate.");
+            System.exit(1);
+            return;
+        }
+        generator.generate();
+    }
+
+    private static DatasetGenerator parse(String[] args) {
+        DatasetGenerator generator = new DatasetGenerator();
+
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = equals < 0 ? arg : arg.substring(0, equals);
+            String value = equals < 0 ? "" : arg.substring(equals + 1);
+            switch (name) {
+                case "--output" -> generator.output = Paths.get(value);
+                case "--files" -> generator.files = (int) parseCount(arg, value, Integer.MAX_VALUE);
+                case "--first-year" -> generator.firstYear = (int) parseCount(arg, value, 9999);
+                case "--records" -> generator.recordsPerFile = parseCount(arg, value, Long.MAX_VALUE);
+                case "--size" -> generator.totalSize = parseSize(arg, value);
+                case "--seed" -> generator.seed = parseSeed(arg, value);
+                case "--quoted-titles" -> generator.quotedTitles = parseRate(arg, value);
+                case "--max-authors" -> generator.maxAuthors = (int) parseCount(arg, value, 1000);
+                case "--isbn13" -> generator.isbn13 = parseRate(arg, value);
+                case "--bad-isbn" -> generator.badIsbn = parseRate(arg, value);
+                case "--bad-price" -> generator.badPrice = parseRate(arg, value);
+                case "--bad-year" -> generator.badYear = parseRate(arg, value);
+                case "--bad-field-count" -> generator.badFieldCount = parseRate(arg, value);
+                case "--missing-field" -> generator.missingField = parseRate(arg, value);
+                case "--unknown-genre" -> generator.unknownGenre = parseRate(arg, value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        return generator;
+    }
+
+    private static long parseCount(String arg, String value, long max) {
+        try {
+            long count = Long.parseLong(value);
+            if (count > 0 && count <= max) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Invalid value in option: " + arg + ". Please enter a positive integer.");
+    }
+
+    private static long parseSize(String arg, String value) {
+        String lower = value.toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (lower.endsWith("k")) {
+            unit = 1L << 10;
+        } else if (lower.endsWith("m")) {
+            unit = 1L << 20;
+        } else if (lower.endsWith("g")) {
+            unit = 1L << 30;
+        }
+        String number = unit == 1 ? lower : lower.substring(0, lower.length() - 1);
+        try {
+            long size = Long.parseLong(number);
+            if (size > 0 && size <= Long.MAX_VALUE / unit) {
+                return size * unit;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Invalid value in option: " + arg + ". Please enter a size such as 500m or 50g.");
+    }
+
+    private static long parseSeed(String arg, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value in option: " + arg + ". Please enter an integer.");
+        }
+    }
+
+    private static double parseRate(String arg, String value) {
+        try {
+            double rate = Double.parseDouble(value);
+            if (rate >= 0 && rate <= 1) {
+                return rate;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Invalid value in option: " + arg + ". Please enter a rate between 0 and 1.");
+    }
+
+    /**
+     * Writes the year files and the list of input files.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void generate() throws IOException {
+        Files.createDirectories(output);
+
+        try (BufferedWriter list = Files.newBufferedWriter(output.resolve("part1_input_file_names.txt"), StandardCharsets.UTF_8)) {
+            list.write(Integer.toString(files));
+            for (int i = 0; i < files; i++) {
+                list.newLine();
+                list.write(fileName(i));
+            }
+        }
+
+        for (int i = 0; i < files; i++) {
+            // Each file has its own random stream, so a single file can be regenerated on its own
+            SplittableRandom random = new SplittableRandom(seed + i * 0x9E3779B97F4A7C15L);
+            long bytes = totalSize < 0 ? -1 : totalSize / files + (i < totalSize % files ? 1 : 0);
+            long records = writeYearFile(output.resolve(fileName(i)), firstYear + i, random, bytes);
+            System.out.println("Wrote " + fileName(i) + ": " + records + " records");
+        }
+    }
+
+    private String fileName(int index) {
+        return "books" + (firstYear + index) + ".csv.txt";
+    }
+
+    /**
+     * Writes one year file, either a fixed number of records or until the file reaches a given size.
+     *
+     * @param file   the file to write
+     * @param year   the year of the file
+     * @param random the random stream of the file
+     * @param bytes  the size to reach, or -1 to write the configured number of records
+     * @return the number of records written
+     * @throws IOException if an I/O error occurs
+     */
+    private long writeYearFile(Path file, int year, SplittableRandom random, long bytes) throws IOException {
+        long records = 0;
+        long written = 0;
+
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 20)) {
+            while (bytes < 0 ? records < recordsPerFile : written < bytes) {
+                record.setLength(0);
+                appendRecord(year, random);
+                record.append('\n');
+                out.append(record);
+                // Records are plain ASCII, so every character is one byte
+                written += record.length();
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Appends one record, possibly with a deliberate syntax or semantic error, to the record buffer.
+     *
+     * @param year   the year of the file the record belongs to
+     * @param random the random stream of the file
+     */
+    private void appendRecord(int year, SplittableRandom random) {
+        int missing = random.nextDouble() < missingField ? random.nextInt(6) : -1;
+
+        if (missing != 0) {
+            appendTitle(random);
+        }
+        record.append(',');
+        if (missing != 1) {
+            appendAuthors(random);
+        }
+        record.append(',');
+        if (missing != 2) {
+            appendPrice(random);
+        }
+        record.append(',');
+        if (missing != 3) {
+            appendIsbn(random);
+        }
+        record.append(',');
+        if (missing != 4) {
+            if (random.nextDouble() < unknownGenre) {
+                record.append("XYZ");
+            } else {
+                record.append(GENRES[random.nextInt(GENRES.length)]);
+            }
+        }
+        record.append(',');
+        // An empty year is a trailing empty field, which the tokenizer drops, so Part 1 reports the record
+        // as having too few fields rather than a missing year, just as it would for a real input file
+        if (missing != 5) {
+            appendYear(year, random);
+        }
+
+        if (random.nextDouble() < badFieldCount) {
+            if (random.nextBoolean()) {
+                record.append(",reprint");
+            } else {
+                record.setLength(record.lastIndexOf(","));
+            }
+        }
+    }
+
+    private void appendTitle(SplittableRandom random) {
+        boolean quoted = random.nextDouble() < quotedTitles;
+        if (quoted) {
+            record.append('"');
+        }
+        int words = 1 + random.nextInt(8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                // Quoted titles carry commas, as in "Zimbalist, Efrem - A Life"
+                record.append(quoted && random.nextInt(3) == 0 ? ", " : " ");
+            }
+            record.append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]);
+        }
+        if (quoted) {
+            record.append('"');
+        }
+    }
+
+    private void appendAuthors(SplittableRandom random) {
+        // Most books have one or two authors, with a long tail up to the configured maximum
+        int authors = 1;
+        while (authors < maxAuthors && random.nextInt(3) == 0) {
+            authors++;
+        }
+        for (int i = 0; i < authors; i++) {
+            if (i > 0) {
+                record.append(" & ");
+            }
+            record.append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append(' ')
+                    .append(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+        }
+    }
+
+    private void appendPrice(SplittableRandom random) {
+        int cents = 100 + random.nextInt(20_000);
+        if (random.nextDouble() < badPrice) {
+            record.append('-');
+        }
+        record.append(cents / 100).append('.');
+        int fraction = cents % 100;
+        if (fraction < 10) {
+            record.append('0');
+        }
+        record.append(fraction);
+    }
+
+    private void appendIsbn(SplittableRandom random) {
+        int length = random.nextDouble() < isbn13 ? 13 : 10;
+        int sum = 0;
+
+        if (length == 13) {
+            digits[0] = '9';
+            digits[1] = '7';
+            digits[2] = random.nextBoolean() ? '8' : '9';
+            for (int i = 3; i < 12; i++) {
+                digits[i] = (char) ('0' + random.nextInt(10));
+            }
+            for (int i = 0; i < 12; i++) {
+                sum += (digits[i] - '0') * (i % 2 == 0 ? 1 : 3);
+            }
+            int check = (10 - sum % 10) % 10;
+            if (random.nextDouble() < badIsbn) {
+                check = (check + 1 + random.nextInt(9)) % 10;
+            }
+            digits[12] = (char) ('0' + check);
+        } else {
+            for (int i = 0; i < 9; i++) {
+                digits[i] = (char) ('0' + random.nextInt(10));
+                sum += (digits[i] - '0') * (10 - i);
+            }
+            int check = (11 - sum % 11) % 11;
+            if (random.nextDouble() < badIsbn) {
+                check = (check + 1 + random.nextInt(10)) % 11;
+            }
+            digits[9] = check == 10 ? 'X' : (char) ('0' + check);
+        }
+        record.append(digits, 0, length);
+    }
+
+    private void appendYear(int year, SplittableRandom random) {
+        if (random.nextDouble() < badYear) {
+            // Out of range on either side, like the 1905 records of the bundled files
+            record.append(random.nextBoolean() ? BookValidator.MIN_YEAR - 1 - random.nextInt(100)
+                    : BookValidator.MAX_YEAR + 1 + random.nextInt(100));
+        } else if (year >= BookValidator.MIN_YEAR && year <= BookValidator.MAX_YEAR) {
+            record.append(year);
+        } else {
+            record.append(BookValidator.MIN_YEAR + random.nextInt(BookValidator.MAX_YEAR - BookValidator.MIN_YEAR + 1));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package books;
+
+import java.util.Locale;
+
+/**
+ * Decides which copy of a book is kept when the same ISBN occurs more than once, for example because a
+ * book is listed again in a later yearly file.
+ */
+enum DedupPolicy {
+
+    /**
+     * The copy listed first is kept: the one with the earliest year, as the input files are yearly, or the
+     * first of those with that year in the order Part 2 reads the genre files.
+     */
+    FIRST,
+
+    /** The copy with the latest year is kept, or the first of those with that year. */
+    LATEST_YEAR,
+
+    /** The copy with the lowest price is kept, or the first of those with that price. */
+    LOWEST_PRICE;
+
+    /**
+     * Returns the policy with the given name, ignoring case and accepting hyphens for underscores.
+     *
+     * @param name the name of the policy, such as {@code latest-year}
+     * @return the policy
+     * @throws IllegalArgumentException if there is no policy with that name
+     */
+    public static DedupPolicy fromName(String name) {
+        for (DedupPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name.replace('-', '_'))) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown deduplication policy: " + name + ". Please enter first, latest-year or lowest-price.");
+    }
+
+    /**
+     * Returns the name of the policy as given on the command line.
+     *
+     * @return the option name, such as {@code latest-year}
+     */
+    String getOptionName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
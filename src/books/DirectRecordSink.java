@@ -0,0 +1,82 @@
+package books;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+
+/**
+ * Writes records, books and messages straight to their output files and to the console.
+ * Any output that is given as null is discarded.
+ */
+class DirectRecordSink implements RecordSink {
+
+    private final PrintWriter[] recordWriters;
+    private final ErrorSink syntaxErrors;
+    private final BookStoreWriter[] bookWriters;
+    private final ErrorSink semanticErrors;
+    private final PrintStream console;
+    private final int[] bookCounts;
+
+    /**
+     * Constructs a new DirectRecordSink.
+     *
+     * @param recordWriters  the writers of the genre CSV files, or null
+     * @param syntaxErrors   the sink of the syntax error file, or null
+     * @param bookWriters    the stores the validated books of each genre are written to, or null
+     * @param semanticErrors the sink of the semantic error file, or null
+     * @param console        the stream used for console messages
+     */
+    public DirectRecordSink(PrintWriter[] recordWriters, ErrorSink syntaxErrors, BookStoreWriter[] bookWriters,
+                            ErrorSink semanticErrors, PrintStream console) {
+        this.recordWriters = recordWriters;
+        this.syntaxErrors = syntaxErrors;
+        this.bookWriters = bookWriters;
+        this.semanticErrors = semanticErrors;
+        this.console = console;
+        this.bookCounts = new int[8];
+    }
+
+    @Override
+    public void record(int genreIndex, String record) {
+        if (recordWriters != null) {
+            recordWriters[genreIndex].println(record);
+        }
+    }
+
+    @Override
+    public void book(int genreIndex, Book book) throws IOException {
+        if (bookWriters != null) {
+            bookWriters[genreIndex].write(book);
+        }
+        bookCounts[genreIndex]++;
+    }
+
+    @Override
+    public void syntaxError(String message) {
+        if (syntaxErrors != null) {
+            syntaxErrors.log(message);
+        }
+    }
+
+    @Override
+    public void semanticError(String message) {
+        if (semanticErrors != null) {
+            semanticErrors.log(message);
+        }
+    }
+
+    @Override
+    public void message(String message) {
+        console.println(message);
+    }
+
+    /**
+     * Returns the number of validated books accepted for a genre.
+     *
+     * @param genreIndex the index of the genre in the genre-to-file mapping
+     * @return the number of books
+     */
+    public int getBookCount(int genreIndex) {
+        return bookCounts[genreIndex];
+    }
+}
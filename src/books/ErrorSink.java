@@ -0,0 +1,225 @@
+package books;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes error messages to an error file on a background thread, and echoes them to the console as
+ * configured by a {@link ConsoleMode}.
+ * <p>
+ * Messages are collected in large batches; a full batch is handed to the background thread, which writes
+ * it while the caller carries on filling the next one. At most {@value #PENDING_BATCHES} batches wait to
+ * be written, so a slow disk slows the caller down instead of using more and more memory. An error sink is
+ * meant to be fed from a single thread.
+ */
+class ErrorSink implements Closeable {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int BATCH_SIZE = 256 * 1024;
+    private static final int PENDING_BATCHES = 4;
+
+    /** Handed to the background thread to tell it that no more batches will follow. */
+    private static final StringBuilder END = new StringBuilder();
+
+    /** Handed to the background thread to have it flush the error file. */
+    private static final StringBuilder FLUSH = new StringBuilder();
+
+    private final String fileName;
+    private final ConsoleMode consoleMode;
+    private final int sampleRate;
+    private final PrintStream console;
+
+    private final BlockingQueue<StringBuilder> pending = new ArrayBlockingQueue<>(PENDING_BATCHES);
+    private final BlockingQueue<StringBuilder> spare = new ArrayBlockingQueue<>(PENDING_BATCHES + 1);
+    private final Thread writerThread;
+    private final Semaphore flushed = new Semaphore(0);
+    private volatile IOException failure;
+
+    private StringBuilder batch = new StringBuilder(BATCH_SIZE);
+    private long errorCount;
+    private boolean closed;
+
+    /**
+     * Constructs a new ErrorSink and starts its background writer thread.
+     *
+     * @param fileName    the name of the error file, used in the summary
+     * @param out         the writer of the error file; it is closed when the sink is closed
+     * @param consoleMode how much of the error output is echoed to the console
+     * @param sampleRate  in {@link ConsoleMode#SAMPLED} mode, one error in this many is echoed
+     * @param console     the stream the console output goes to
+     */
+    public ErrorSink(String fileName, Writer out, ConsoleMode consoleMode, int sampleRate, PrintStream console) {
+        this.fileName = fileName;
+        this.consoleMode = consoleMode;
+        this.sampleRate = sampleRate;
+        this.console = console;
+
+        writerThread = new Thread(() -> writeBatches(out), "error-writer-" + fileName);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Logs an error message.
+     *
+     * @param message the error message
+     */
+    public void log(String message) {
+        if (consoleMode == ConsoleMode.FULL || (consoleMode == ConsoleMode.SAMPLED && errorCount % sampleRate == 0)) {
+            console.println(message);
+        }
+        errorCount++;
+
+        batch.append(message).append(LINE_SEPARATOR);
+        if (batch.length() >= BATCH_SIZE) {
+            handOff(batch);
+            StringBuilder next = spare.poll();
+            batch = next != null ? next : new StringBuilder(BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Returns the number of errors logged so far.
+     *
+     * @return the error count
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Counts errors logged to the error file by an earlier run that this one carries on from, so that the
+     * summary and the sampling of the console output cover them too.
+     *
+     * @param count the number of errors already in the error file
+     */
+    void addEarlierErrors(long count) {
+        errorCount += count;
+    }
+
+    /**
+     * Writes every message logged so far and flushes the error file, waiting for the background thread to
+     * finish doing so.
+     *
+     * @throws IOException if the error file could not be written
+     */
+    public void flush() throws IOException {
+        if (batch.length() > 0) {
+            handOff(batch);
+            StringBuilder next = spare.poll();
+            batch = next != null ? next : new StringBuilder(BATCH_SIZE);
+        }
+        handOff(FLUSH);
+        try {
+            flushed.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing " + fileName, e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void handOff(StringBuilder full) {
+        try {
+            pending.put(full);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing " + fileName, e);
+        }
+    }
+
+    /**
+     * Writes the batches handed off until the end marker. Whatever goes wrong, even a runtime exception or
+     * an error from the writer, is kept as the failure and the batches are still taken and dropped, so that
+     * the caller is never blocked on a full queue or a flush; the failure is reported by flush or close.
+     */
+    private void writeBatches(Writer out) {
+        boolean interrupted = false;
+        while (true) {
+            StringBuilder next;
+            try {
+                next = pending.take();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                continue;
+            }
+            if (next == END) {
+                break;
+            }
+            if (next == FLUSH) {
+                if (failure == null) {
+                    try {
+                        out.flush();
+                    } catch (Throwable e) {
+                        fail(e);
+                    }
+                }
+                flushed.release();
+                continue;
+            }
+            if (failure == null) {
+                try {
+                    out.append(next);
+                } catch (Throwable e) {
+                    fail(e);
+                }
+            }
+            next.setLength(0);
+            spare.offer(next);
+        }
+        try {
+            out.close();
+        } catch (Throwable e) {
+            fail(e);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (failure == null) {
+            failure = e instanceof IOException ? (IOException) e : new IOException("Could not write " + fileName, e);
+        }
+    }
+
+    /**
+     * Writes the remaining messages, waits for the background thread to finish and closes the error file.
+     * In summary and sampled console modes, the number of errors is shown.
+     *
+     * @throws IOException if the error file could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (batch.length() > 0) {
+            handOff(batch);
+        }
+        handOff(END);
+
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing " + fileName, e);
+        }
+
+        if (consoleMode == ConsoleMode.SUMMARY || consoleMode == ConsoleMode.SAMPLED) {
+            console.println(fileName + ": " + errorCount + " records with errors");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package books;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the books of a genre by a {@link SortKey} within a memory budget, so that a genre too large to sort
+ * in memory can still be written to its store in order.
+ * <p>
+ * Books are collected in memory until their estimated size reaches the budget. The collected books are then
+ * sorted and spilled to a run file in the plain record format of {@link BookStoreFormat}, after the number
+ * of books in the run, and collecting starts over. A run is read for exactly that many books, so a run cut
+ * short is an error rather than a shorter run. Once every book has been added, the runs and the sorted books
+ * still in memory are merged k ways with a priority queue holding the next book of each run. Each run is
+ * read through a buffer of {@value #RUN_BUFFER_SIZE} bytes, and the buffers come out of the same budget: the
+ * books still in memory only join the merge if the buffers of every run fit in what they leave, and are
+ * spilled too otherwise. A merge then reads at most as many runs at once as the budget has buffers; more
+ * runs are first merged in groups into longer runs. A genre that fits in the budget is sorted in memory and
+ * never touches the disk.
+ * <p>
+ * The sort is stable: runs hold consecutive books, and books with the same key are taken from the earliest
+ * run first.
+ */
+final class ExternalBookSorter implements Closeable {
+
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    /** The estimated heap taken by a book besides the characters of its title, authors and ISBN. */
+    private static final int BOOK_OVERHEAD = 200;
+
+    private final Comparator<Book> comparator;
+    private final long memoryBudget;
+    private final Path directory;
+    private final List<Book> books = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private final List<Long> runSizes = new ArrayList<>();
+    private long bufferedBytes;
+    private int spilledRuns;
+
+    /**
+     * Constructs a new ExternalBookSorter.
+     *
+     * @param key          the key the books are sorted by
+     * @param memoryBudget the number of bytes of books held in memory before they are spilled to a run
+     * @param directory    the directory the run files are created in
+     */
+    ExternalBookSorter(SortKey key, long memoryBudget, Path directory) {
+        this.comparator = key.comparator();
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+    }
+
+    /**
+     * Adds a book, spilling the books collected so far to a run if they fill the memory budget.
+     *
+     * @param book the book
+     * @throws IOException if a run could not be written
+     */
+    void add(Book book) throws IOException {
+        books.add(book);
+        bufferedBytes += BOOK_OVERHEAD + book.getTitle().length() + book.getAuthors().length()
+                + book.getIsbn().length();
+        if (bufferedBytes >= memoryBudget) {
+            spill();
+        }
+    }
+
+    /**
+     * Writes every book added, in order, to a store.
+     *
+     * @param writer the writer of the store
+     * @return the number of sorted runs spilled to disk, 0 if the books were sorted in memory
+     * @throws IOException if a run could not be read or written, or the store could not be written
+     */
+    int writeTo(BookStoreWriter writer) throws IOException {
+        books.sort(comparator);
+        if (runs.isEmpty()) {
+            for (Book book : books) {
+                writer.write(book);
+            }
+            close();
+            return 0;
+        }
+
+        // The books still in memory are the last run of the final merge if the buffers of the runs fit next
+        // to them; otherwise they are spilled, and the whole budget goes to buffers
+        if ((runs.size() + 1L) * RUN_BUFFER_SIZE > memoryBudget - bufferedBytes) {
+            spill();
+        }
+        int fanIn = (int) Math.max(2, Math.min(1024, memoryBudget / RUN_BUFFER_SIZE));
+        while (runs.size() > fanIn) {
+            // Merge consecutive runs, so that books with the same key stay in the order they were added
+            List<Path> merged = new ArrayList<>();
+            List<Long> mergedSizes = new ArrayList<>();
+            try {
+                for (int start = 0; start < runs.size(); start += fanIn) {
+                    int end = Math.min(start + fanIn, runs.size());
+                    List<Path> group = runs.subList(start, end);
+                    long size = 0;
+                    for (long groupSize : runSizes.subList(start, end)) {
+                        size += groupSize;
+                    }
+                    if (group.size() == 1) {
+                        merged.add(group.get(0));
+                        mergedSizes.add(size);
+                        continue;
+                    }
+                    Path run = Files.createTempFile(directory, "books_sort_", ".run");
+                    merged.add(run);
+                    mergedSizes.add(size);
+                    try (DataOutputStream out = openRun(run, size)) {
+                        merge(group, List.of(), book -> BookStoreFormat.writeRecord(out, book));
+                    }
+                    for (Path done : group) {
+                        Files.delete(done);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // The runs merged so far are only known here; the others are deleted by close()
+                for (Path run : merged) {
+                    Files.deleteIfExists(run);
+                }
+                throw e;
+            }
+            runs.clear();
+            runs.addAll(merged);
+            runSizes.clear();
+            runSizes.addAll(mergedSizes);
+        }
+        merge(runs, books, writer::write);
+        int spilled = spilledRuns;
+        close();
+        return spilled;
+    }
+
+    /**
+     * Sorts the books collected so far and writes them to a new run.
+     */
+    private void spill() throws IOException {
+        if (books.isEmpty()) {
+            return;
+        }
+        books.sort(comparator);
+        Path run = Files.createTempFile(directory, "books_sort_", ".run");
+        runs.add(run);
+        runSizes.add((long) books.size());
+        spilledRuns++;
+        try (DataOutputStream out = openRun(run, books.size())) {
+            for (Book book : books) {
+                BookStoreFormat.writeRecord(out, book);
+            }
+        }
+        books.clear();
+        bufferedBytes = 0;
+    }
+
+    /**
+     * Creates a run file and writes the number of books it will hold.
+     */
+    private static DataOutputStream openRun(Path run, long size) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE));
+        try {
+            out.writeLong(size);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        return out;
+    }
+
+    /**
+     * Merges sorted runs, and sorted books still in memory that come after them, passing their books on in
+     * order.
+     */
+    private void merge(List<Path> sources, List<Book> last, BookConsumer target) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>((a, b) -> {
+            int order = comparator.compare(a.head, b.head);
+            return order != 0 ? order : Integer.compare(a.index, b.index);
+        });
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i <= sources.size(); i++) {
+                RunReader reader = i < sources.size() ? new RunReader(sources.get(i), i) : new RunReader(last, i);
+                readers.add(reader);
+                if (reader.next()) {
+                    heads.add(reader);
+                }
+            }
+            while (!heads.isEmpty()) {
+                RunReader reader = heads.poll();
+                target.accept(reader.head);
+                if (reader.next()) {
+                    heads.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes the run files that are left.
+     *
+     * @throws IOException if a run file could not be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        runSizes.clear();
+        books.clear();
+        bufferedBytes = 0;
+        spilledRuns = 0;
+    }
+
+    /**
+     * Takes the books of a merge in order.
+     */
+    private interface BookConsumer {
+        void accept(Book book) throws IOException;
+    }
+
+    /**
+     * Reads the books of a run, or of a list of books in memory, one at a time.
+     */
+    private static final class RunReader {
+        final int index;
+        Book head;
+        private final DataInputStream in;
+        private final Iterator<Book> books;
+        private long remaining;
+        private byte[] record;
+
+        RunReader(Path run, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+            this.books = null;
+            this.index = index;
+            this.record = new byte[256];
+            try {
+                this.remaining = in.readLong();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        RunReader(List<Book> books, int index) {
+            this.in = null;
+            this.books = books.iterator();
+            this.index = index;
+        }
+
+        /**
+         * Reads the next book into {@link #head}.
+         *
+         * @return false if the run has no more books
+         */
+        boolean next() throws IOException {
+            if (books != null) {
+                head = books.hasNext() ? books.next() : null;
+                return head != null;
+            }
+            if (remaining == 0) {
+                head = null;
+                return false;
+            }
+            // The run ending before its last book is an EOFException
+            int length = in.readInt();
+            if (record.length < length) {
+                record = new byte[Math.max(length, record.length * 2)];
+            }
+            in.readFully(record, 0, length);
+            head = BookStoreFormat.decode(ByteBuffer.wrap(record, 0, length));
+            remaining--;
+            return true;
+        }
+
+        void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package books;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A byte range of an input file holding whole records, so that the records of one large file can be
+ * classified by several threads.
+ * <p>
+ * A record is one line of the file, and a quoted field can hold commas but never a line break, so a range
+ * that ends just after a line feed never cuts a record, whatever its fields contain. The boundaries of the
+ * ranges are found by reading a few bytes around each split point. This only holds when a line feed byte is
+ * always a line feed character, which is the case in the ASCII-compatible character sets checked by
+ * {@link #split}; with any other default character set, and for files no larger than one chunk, the file is
+ * kept whole.
+ */
+final class FileChunk {
+
+    private static final int SCAN_SIZE = 8 * 1024;
+
+    private final String fileName;
+    private final long start;
+    private final long end;
+    private final boolean first;
+    private final boolean last;
+
+    private FileChunk(String fileName, long start, long end, boolean first, boolean last) {
+        this.fileName = fileName;
+        this.start = start;
+        this.end = end;
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Splits an input file into ranges of about the given size that end on record boundaries.
+     *
+     * @param fileName  the name of the input file, as listed in part1_input_file_names.txt
+     * @param chunkSize the size of a range in bytes
+     * @return the ranges in file order, or a single range standing for the whole file, which need not exist
+     */
+    static List<FileChunk> split(String fileName, long chunkSize) {
+        List<FileChunk> chunks = new ArrayList<>();
+        Path file = Path.of(fileName.trim());
+        Charset charset = Charset.defaultCharset();
+        boolean asciiCompatible = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1) || charset.name().startsWith("windows-125");
+
+        try {
+            if (asciiCompatible && Files.isRegularFile(file) && Files.size(file) > chunkSize) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    long start = 0;
+                    while (start < size) {
+                        long end = start + chunkSize >= size ? size : nextRecord(channel, start + chunkSize);
+                        chunks.add(new FileChunk(fileName, start, end, start == 0, end == size));
+                        start = end;
+                    }
+                }
+                return chunks;
+            }
+        } catch (IOException e) {
+            // Let the whole file be read as usual, which reports it if it cannot be read
+            chunks.clear();
+        }
+        chunks.add(new FileChunk(fileName, 0, -1, true, true));
+        return chunks;
+    }
+
+    /**
+     * Returns the position just after the first line feed at or after the given position, or the size of
+     * the file if there is none.
+     */
+    private static long nextRecord(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+        long offset = position;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Reads the bytes of the range.
+     *
+     * @return the bytes
+     * @throws IOException if the file could not be read
+     */
+    byte[] read() throws IOException {
+        long length = end - start;
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("A chunk of " + fileName + " is too large to read at once");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        try (FileChannel channel = FileChannel.open(Path.of(fileName.trim()), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new IOException(fileName + " became shorter while it was read");
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Returns the name of the input file.
+     *
+     * @return the file name, as listed in part1_input_file_names.txt
+     */
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns whether the chunk stands for the whole file, which is then read as usual.
+     *
+     * @return true if the file was not split
+     */
+    boolean isWholeFile() {
+        return end < 0;
+    }
+
+    /**
+     * Returns whether this is the first range of its file.
+     *
+     * @return true for the first range
+     */
+    boolean isFirst() {
+        return first;
+    }
+
+    /**
+     * Returns whether this is the last range of its file.
+     *
+     * @return true for the last range
+     */
+    boolean isLast() {
+        return last;
+    }
+}
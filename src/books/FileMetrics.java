@@ -0,0 +1,370 @@
+package books;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the processing of one file by one thread: the time spent in each {@link Stage}, the latency of
+ * every record, and the errors, routed records, books and dropped duplicates it produced.
+ * <p>
+ * A stage is timed by taking a mark before it and calling {@link #lap(Stage, long)} after it, which adds
+ * the time since the mark to the stage and returns a new mark for the next stage. When timing is off the
+ * clock is never read, and only the counts are kept.
+ * <p>
+ * The CPU time of the stages is the CPU time the thread spent on the file, shared out between the stages in
+ * proportion to their wall time: reading a thread's CPU clock around every stage of every record would cost
+ * more than the stages themselves.
+ */
+final class FileMetrics {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final int STAGES = Stage.values().length;
+
+    private final String fileName;
+    private final RunMetrics run;
+    private final boolean timed;
+
+    private final long[] stageCounts = new long[STAGES];
+    private final long[] stageNanos = new long[STAGES];
+    private final long[] stageCpuNanos = new long[STAGES];
+    private final long[] stageBytes = new long[STAGES];
+    private final long[] measuredNanos = new long[STAGES];
+    private final long[] errorCounts = new long[RecordError.values().length];
+    private final long[] recordCounts = new long[8];
+    private final long[] bookCounts = new long[8];
+    private final long[] duplicateCounts = new long[8];
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private long wallNanos;
+    private long cpuNanos;
+
+    private long startNanos;
+    private long startCpuNanos;
+
+    /**
+     * Constructs the metrics of one file of a run.
+     *
+     * @param fileName the name of the file
+     * @param run      the metrics of the run, which are told about progress while the file is read
+     */
+    FileMetrics(String fileName, RunMetrics run) {
+        this.fileName = fileName;
+        this.run = run;
+        this.timed = run.isTimed();
+    }
+
+    /**
+     * Starts measuring the file on the current thread.
+     *
+     * @return the mark for the first stage
+     */
+    long start() {
+        run.setCurrentFile(fileName);
+        if (!timed) {
+            return 0;
+        }
+        startCpuNanos = cpuTime();
+        startNanos = System.nanoTime();
+        return startNanos;
+    }
+
+    /**
+     * Takes a mark for work measured with {@link #addMeasured}.
+     *
+     * @return the mark
+     */
+    long mark() {
+        return timed ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Ends a stage that started at the given mark.
+     *
+     * @param stage the stage
+     * @param mark  the mark taken when the stage started
+     * @return the mark for the next stage
+     */
+    long lap(Stage stage, long mark) {
+        stageCounts[stage.ordinal()]++;
+        if (!timed) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        stageNanos[stage.ordinal()] += now - mark;
+        return now;
+    }
+
+    /**
+     * Ends the reading of a line that started at the given mark.
+     *
+     * @param mark  the mark taken before the line was read
+     * @param bytes the size of the line, including its line terminator
+     * @return the mark for the next stage
+     */
+    long read(long mark, long bytes) {
+        stageBytes[Stage.READ.ordinal()] += bytes;
+        if (timed) {
+            run.addProgress(1, bytes);
+        }
+        return lap(Stage.READ, mark);
+    }
+
+    /**
+     * Records the latency of a record.
+     *
+     * @param start the mark taken before the record was read
+     * @param end   the mark taken once its outputs were written
+     */
+    void recordDone(long start, long end) {
+        if (timed) {
+            latency.record(end - start);
+        }
+    }
+
+    /**
+     * Counts a record with a syntax or semantic error.
+     *
+     * @param error the error
+     */
+    void error(RecordError error) {
+        errorCounts[error.ordinal()]++;
+    }
+
+    /**
+     * Counts a record routed to a genre.
+     *
+     * @param genre the index of the genre
+     */
+    void routed(int genre) {
+        recordCounts[genre]++;
+    }
+
+    /**
+     * Counts a valid book of a genre.
+     *
+     * @param genre the index of the genre
+     */
+    void book(int genre) {
+        bookCounts[genre]++;
+    }
+
+    /**
+     * Counts a valid book of a genre dropped as a duplicate of another book with the same ISBN.
+     *
+     * @param genre the index of the genre
+     */
+    void duplicate(int genre) {
+        duplicateCounts[genre]++;
+    }
+
+    /**
+     * Adds work measured as a whole, such as opening a store, to a stage.
+     *
+     * @param stage    the stage
+     * @param count    the number of records handled
+     * @param bytes    the number of bytes handled
+     * @param mark     the mark taken before the work started
+     * @param cpuStart the CPU time of the thread before the work started, from {@link #cpuTime()}
+     */
+    void addMeasured(Stage stage, long count, long bytes, long mark, long cpuStart) {
+        stageCounts[stage.ordinal()] += count;
+        stageBytes[stage.ordinal()] += bytes;
+        if (timed) {
+            long nanos = System.nanoTime() - mark;
+            long cpu = cpuTime() - cpuStart;
+            stageNanos[stage.ordinal()] += nanos;
+            measuredNanos[stage.ordinal()] += nanos;
+            stageCpuNanos[stage.ordinal()] += cpu;
+            wallNanos += nanos;
+            cpuNanos += cpu;
+        }
+    }
+
+    /**
+     * Stops measuring the file on the current thread and shares out its CPU time between the stages timed
+     * since {@link #start()}.
+     */
+    void finish() {
+        if (!timed) {
+            return;
+        }
+        long wall = System.nanoTime() - startNanos;
+        long cpu = cpuTime() - startCpuNanos;
+        wallNanos += wall;
+        cpuNanos += cpu;
+
+        // Work added with addMeasured already has its own CPU time
+        long stageTotal = 0;
+        for (int i = 0; i < STAGES; i++) {
+            stageTotal += stageNanos[i] - measuredNanos[i];
+        }
+        if (stageTotal > 0) {
+            for (int i = 0; i < STAGES; i++) {
+                stageCpuNanos[i] += (long) ((double) cpu * (stageNanos[i] - measuredNanos[i]) / stageTotal);
+            }
+        }
+    }
+
+    /**
+     * Adds the finished metrics of part of the file, measured separately on another thread, to these.
+     *
+     * @param part the metrics of the part
+     */
+    void add(FileMetrics part) {
+        for (int i = 0; i < STAGES; i++) {
+            stageCounts[i] += part.stageCounts[i];
+            stageNanos[i] += part.stageNanos[i];
+            stageCpuNanos[i] += part.stageCpuNanos[i];
+            stageBytes[i] += part.stageBytes[i];
+            measuredNanos[i] += part.stageNanos[i];
+        }
+        for (int i = 0; i < errorCounts.length; i++) {
+            errorCounts[i] += part.errorCounts[i];
+        }
+        for (int i = 0; i < 8; i++) {
+            recordCounts[i] += part.recordCounts[i];
+            bookCounts[i] += part.bookCounts[i];
+            duplicateCounts[i] += part.duplicateCounts[i];
+        }
+        latency.add(part.latency);
+        wallNanos += part.wallNanos;
+        cpuNanos += part.cpuNanos;
+    }
+
+    /**
+     * Returns the CPU time of the current thread, or its wall time if the JVM cannot measure CPU time.
+     *
+     * @return the time in nanoseconds
+     */
+    long cpuTime() {
+        if (!timed) {
+            return 0;
+        }
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Returns the name of the file.
+     *
+     * @return the file name
+     */
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns how many times each stage ran, indexed by {@link Stage#ordinal()}.
+     *
+     * @return the counts per stage
+     */
+    long[] getStageCounts() {
+        return stageCounts;
+    }
+
+    /**
+     * Returns the wall time spent in each stage, indexed by {@link Stage#ordinal()}.
+     *
+     * @return the wall time per stage in nanoseconds
+     */
+    long[] getStageNanos() {
+        return stageNanos;
+    }
+
+    /**
+     * Returns the CPU time spent in each stage, indexed by {@link Stage#ordinal()}.
+     *
+     * @return the CPU time per stage in nanoseconds
+     */
+    long[] getStageCpuNanos() {
+        return stageCpuNanos;
+    }
+
+    /**
+     * Returns the number of bytes handled by each stage, indexed by {@link Stage#ordinal()}.
+     *
+     * @return the bytes per stage
+     */
+    long[] getStageBytes() {
+        return stageBytes;
+    }
+
+    /**
+     * Returns the number of records with each error, indexed by {@link RecordError#ordinal()}.
+     *
+     * @return the counts per error
+     */
+    long[] getErrorCounts() {
+        return errorCounts;
+    }
+
+    /**
+     * Returns the number of records routed to each genre.
+     *
+     * @return the counts per genre
+     */
+    long[] getRecordCounts() {
+        return recordCounts;
+    }
+
+    /**
+     * Returns the number of valid books of each genre.
+     *
+     * @return the counts per genre
+     */
+    long[] getBookCounts() {
+        return bookCounts;
+    }
+
+    /**
+     * Returns the number of books of each genre dropped as duplicates.
+     *
+     * @return the counts per genre
+     */
+    long[] getDuplicateCounts() {
+        return duplicateCounts;
+    }
+
+    /**
+     * Returns the latencies of the records of the file.
+     *
+     * @return the latency histogram
+     */
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the number of records read or decoded from the file.
+     *
+     * @return the number of records
+     */
+    long getRecords() {
+        return stageCounts[Stage.READ.ordinal()] + stageCounts[Stage.DESERIALIZE.ordinal()];
+    }
+
+    /**
+     * Returns the number of bytes read or decoded from the file.
+     *
+     * @return the number of bytes
+     */
+    long getBytes() {
+        return stageBytes[Stage.READ.ordinal()] + stageBytes[Stage.DESERIALIZE.ordinal()];
+    }
+
+    /**
+     * Returns the wall time spent on the file.
+     *
+     * @return the wall time in nanoseconds
+     */
+    long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * Returns the CPU time spent on the file.
+     *
+     * @return the CPU time in nanoseconds
+     */
+    long getCpuNanos() {
+        return cpuNanos;
+    }
+}
@@ -0,0 +1,88 @@
+package books;
+
+/**
+ * The genres books are routed to, each with the code used in the input files and the name of its genre
+ * file. The order of the constants is the order of the genre files, and their ordinals are the genre codes
+ * of dictionary-encoded stores.
+ */
+enum Genre {
+
+    CCB("Cartoons_Comics_Books.csv"),
+    HCB("Hobbies_Collectibles_Books.csv"),
+    MTV("Movies_TV.csv"),
+    MRB("Music_Radio_Books.csv"),
+    NEB("Nostalgia_Eclectic_Books.csv"),
+    OTR("Old_Time_Radio.csv"),
+    SSM("Sports_Sports_Memorabilia.csv"),
+    TPA("Trains_Planes_Automobiles.csv");
+
+    private static final Genre[] GENRES = values();
+
+    private final String code;
+    private final String fileName;
+
+    Genre(String fileName) {
+        this.code = name();
+        this.fileName = fileName;
+    }
+
+    /**
+     * Returns the code of the genre in the input files, such as {@code CCB}.
+     *
+     * @return the genre code
+     */
+    String getCode() {
+        return code;
+    }
+
+    /**
+     * Returns the name of the genre file, without its .txt or .ser extension.
+     *
+     * @return the file name
+     */
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the genre with the given ordinal, without copying {@link #values()}.
+     *
+     * @param ordinal the ordinal of the genre
+     * @return the genre
+     * @throws ArrayIndexOutOfBoundsException if no genre has that ordinal
+     */
+    static Genre fromOrdinal(int ordinal) {
+        return GENRES[ordinal];
+    }
+
+    /**
+     * Returns the genre with the given code.
+     *
+     * @param code the genre code, which is case-sensitive
+     * @return the genre, or null if no genre has that code
+     */
+    static Genre fromCode(String code) {
+        for (Genre genre : GENRES) {
+            if (genre.code.equals(code)) {
+                return genre;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the genre whose code is the given field of a record, without copying the field.
+     *
+     * @param fields the tokenized record
+     * @param index  the index of the genre field
+     * @return the genre, or null if no genre has that code
+     */
+    static Genre fromField(CsvTokenizer fields, int index) {
+        for (Genre genre : GENRES) {
+            if (fields.fieldEquals(index, genre.code)) {
+                return genre;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,382 @@
+package books;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Runs Parts 1 and 2 incrementally, reprocessing only the input files that are new or have changed since
+ * the last run.
+ * <p>
+ * Each input file is processed on its own into a segment in the cache directory, holding the file's genre
+ * records, encoded books and error messages. The genre CSV files, the genre stores and the two error files
+ * are the concatenation of the segments in input order. An {@link InputManifest} remembers which segment
+ * every input file produced, so a rerun only processes files whose size, modification time or content
+ * changed. When the earlier input files are all unchanged and new files were only added at the end of the
+ * list, their segments are appended to the existing outputs; otherwise the outputs are rebuilt from the
+ * segments, which copies bytes but parses nothing.
+ * <p>
+ * As in the fused mode, the semantic error file lists errors in input order rather than genre by genre.
+ */
+class IncrementalBuild {
+
+    /** The directory holding the segments of the processed input files. */
+    static final String CACHE_DIRECTORY = ".books_cache";
+
+    private static final String SYNTAX_ERROR_FILE = "syntax_error_file.txt";
+    private static final String SEMANTIC_ERROR_FILE = "semantic_error_file.txt";
+
+    private final RunOptions options;
+    private final String[][] genreToFileMapping;
+    private final RunMetrics metrics;
+    private final Path cacheDirectory;
+    private final PrintStream console;
+
+    /**
+     * Constructs a new IncrementalBuild working in the current directory.
+     *
+     * @param options            the options controlling how errors are reported
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @param metrics            the metrics of the run, which only cover the input files processed again
+     * @param console            the stream used for console messages
+     */
+    IncrementalBuild(RunOptions options, String[][] genreToFileMapping, RunMetrics metrics, PrintStream console) {
+        this.options = options;
+        this.genreToFileMapping = genreToFileMapping;
+        this.metrics = metrics;
+        this.cacheDirectory = Path.of(CACHE_DIRECTORY);
+        this.console = console;
+    }
+
+    /**
+     * Brings the outputs up to date with the input files.
+     *
+     * @param fileNames the input file names, in the order they are listed
+     * @throws IOException if an I/O error occurs
+     */
+    void run(List<String> fileNames) throws IOException {
+        Path manifestFile = Path.of(InputManifest.FILE_NAME);
+        InputManifest previous = InputManifest.load(manifestFile);
+        InputManifest current = new InputManifest();
+
+        Files.createDirectories(cacheDirectory);
+
+        int reused = 0;
+        int processed = 0;
+        Set<String> segmentsThisRun = new HashSet<>();
+
+        for (String fileName : fileNames) {
+            Path file = Path.of(fileName.trim());
+
+            if (!Files.isRegularFile(file)) {
+                console.println("Could not find file " + fileName + ", moving on to the next input file.\n");
+                current.getEntries().add(new InputManifest.Entry(fileName, -1, -1, "-", new long[8], new long[8]));
+                continue;
+            }
+
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            InputManifest.Entry known = findEntry(previous, fileName);
+
+            String hash;
+            if (known != null && known.size == size && known.modified == modified) {
+                hash = known.hash;
+            } else {
+                hash = InputManifest.hash(file);
+            }
+
+            Path segment = segmentDirectory(fileName, hash);
+            InputManifest.Entry entry;
+
+            if (known != null && known.hash.equals(hash) && Files.isDirectory(segment)) {
+                entry = new InputManifest.Entry(fileName, size, modified, hash, known.records, known.books);
+                reused++;
+            } else if (segmentsThisRun.contains(segment.getFileName().toString())) {
+                // The same file is listed more than once; its segment was just built
+                InputManifest.Entry first = findEntry(current, fileName);
+                entry = new InputManifest.Entry(fileName, size, modified, hash, first.records, first.books);
+            } else {
+                entry = processFile(fileName, size, modified, hash, segment);
+                processed++;
+            }
+
+            segmentsThisRun.add(segment.getFileName().toString());
+            current.getEntries().add(entry);
+        }
+
+        if (canAppend(previous, current)) {
+            appendOutputs(previous, current);
+        } else {
+            rebuildOutputs(current);
+        }
+
+        for (String output : outputFileNames()) {
+            current.getOutputSizes().put(output, Files.size(Path.of(output)));
+        }
+        current.save(manifestFile);
+        removeUnusedSegments(segmentsThisRun);
+
+        for (int i = 0; i < 8; i++) {
+            long books = 0;
+            for (InputManifest.Entry entry : current.getEntries()) {
+                books += entry.books[i];
+            }
+            console.println("Line: " + books);
+        }
+        console.println("Incremental run: " + processed + " input files processed, " + reused + " reused.");
+    }
+
+    private static InputManifest.Entry findEntry(InputManifest manifest, String fileName) {
+        for (InputManifest.Entry entry : manifest.getEntries()) {
+            if (entry.fileName.equals(fileName)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private Path segmentDirectory(String fileName, String hash) {
+        // The file name is part of the key because the error messages in a segment mention it
+        return cacheDirectory.resolve(InputManifest.hash(fileName + "\n" + hash).substring(0, 32));
+    }
+
+    /**
+     * Processes one input file into a new segment.
+     */
+    private InputManifest.Entry processFile(String fileName, long size, long modified, String hash, Path segment) throws IOException {
+        Path temp = segment.resolveSibling(segment.getFileName() + ".tmp");
+        deleteRecursively(temp);
+        Files.createDirectories(temp);
+
+        long[] records;
+        long[] books;
+        try (SegmentRecordSink sink = new SegmentRecordSink(temp, fileName, options, console)) {
+            FileMetrics fileMetrics = new FileMetrics(fileName, metrics);
+            Main.classifyInputFile(fileName, genreToFileMapping, new CsvTokenizer(), true, sink, fileMetrics);
+            metrics.add(fileMetrics);
+            records = sink.getRecordCounts();
+            books = sink.getBookCounts();
+        }
+
+        // The segment only appears under its final name once it is complete
+        deleteRecursively(segment);
+        Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE);
+        return new InputManifest.Entry(fileName, size, modified, hash, records, books);
+    }
+
+    /**
+     * Checks whether the new outputs are the old outputs with more segments added at the end: every input
+     * of the previous run is unchanged and in the same place, and the outputs have not been touched since.
+     */
+    private boolean canAppend(InputManifest previous, InputManifest current) throws IOException {
+        List<InputManifest.Entry> before = previous.getEntries();
+        List<InputManifest.Entry> after = current.getEntries();
+
+        if (before.isEmpty() || before.size() > after.size()) {
+            return false;
+        }
+        for (int i = 0; i < before.size(); i++) {
+            if (!before.get(i).fileName.equals(after.get(i).fileName) || !before.get(i).hash.equals(after.get(i).hash)) {
+                return false;
+            }
+        }
+
+        Map<String, Long> outputSizes = previous.getOutputSizes();
+        for (String output : outputFileNames()) {
+            Path file = Path.of(output);
+            Long expected = outputSizes.get(output);
+            if (expected == null || !Files.isRegularFile(file) || Files.size(file) != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendOutputs(InputManifest previous, InputManifest current) throws IOException {
+        List<InputManifest.Entry> entries = current.getEntries();
+
+        for (int e = previous.getEntries().size(); e < entries.size(); e++) {
+            InputManifest.Entry entry = entries.get(e);
+            if (entry.isMissing()) {
+                continue;
+            }
+            Path segment = segmentDirectory(entry.fileName, entry.hash);
+
+            for (int i = 0; i < 8; i++) {
+                appendFile(segment.resolve("genre" + i + ".csv"), Path.of(genreToFileMapping[1][i] + ".txt"));
+                BookStoreWriter.appendRecords(Path.of(genreToFileMapping[1][i] + ".ser"), segment.resolve("genre" + i + ".rec"), entry.books[i]);
+            }
+            appendFile(segment.resolve("syntax.txt"), Path.of(SYNTAX_ERROR_FILE));
+            appendFile(segment.resolve("semantic.txt"), Path.of(SEMANTIC_ERROR_FILE));
+        }
+    }
+
+    private static void appendFile(Path source, Path target) throws IOException {
+        try (OutputStream out = Files.newOutputStream(target, StandardOpenOption.APPEND)) {
+            Files.copy(source, out);
+        }
+    }
+
+    private void rebuildOutputs(InputManifest current) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        List<InputManifest.Entry> entries = new ArrayList<>();
+        for (InputManifest.Entry entry : current.getEntries()) {
+            if (!entry.isMissing()) {
+                segments.add(segmentDirectory(entry.fileName, entry.hash));
+                entries.add(entry);
+            }
+        }
+
+        for (int i = 0; i < 8; i++) {
+            concatenate(segments, "genre" + i + ".csv", Path.of(genreToFileMapping[1][i] + ".txt"));
+
+            try (BookStoreWriter store = new BookStoreWriter(genreToFileMapping[1][i] + ".ser", false)) {
+                for (int s = 0; s < segments.size(); s++) {
+                    store.writeRecords(segments.get(s).resolve("genre" + i + ".rec"), entries.get(s).books[i]);
+                }
+            }
+        }
+        concatenate(segments, "syntax.txt", Path.of(SYNTAX_ERROR_FILE));
+        concatenate(segments, "semantic.txt", Path.of(SEMANTIC_ERROR_FILE));
+    }
+
+    private static void concatenate(List<Path> segments, String part, Path target) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), 64 * 1024)) {
+            for (Path segment : segments) {
+                Files.copy(segment.resolve(part), out);
+            }
+        }
+    }
+
+    private List<String> outputFileNames() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            names.add(genreToFileMapping[1][i] + ".txt");
+            names.add(genreToFileMapping[1][i] + ".ser");
+        }
+        names.add(SYNTAX_ERROR_FILE);
+        names.add(SEMANTIC_ERROR_FILE);
+        return names;
+    }
+
+    private void removeUnusedSegments(Set<String> used) throws IOException {
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(cacheDirectory)) {
+            for (Path segment : segments) {
+                if (!used.contains(segment.getFileName().toString())) {
+                    deleteRecursively(segment);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
+
+/**
+ * Writes the output of one input file into the files of an incremental build segment.
+ */
+class SegmentRecordSink implements RecordSink, AutoCloseable {
+
+    private final PrintWriter[] recordWriters = new PrintWriter[8];
+    private final DataOutputStream[] bookWriters = new DataOutputStream[8];
+    private final ErrorSink syntaxErrors;
+    private final ErrorSink semanticErrors;
+    private final PrintStream console;
+    private final long[] recordCounts = new long[8];
+    private final long[] bookCounts = new long[8];
+
+    /**
+     * Creates the files of a segment.
+     *
+     * @param directory the directory of the segment
+     * @param fileName  the name of the input file the segment is built from
+     * @param options   the options controlling how errors are reported
+     * @param console   the stream used for console messages
+     * @throws IOException if a file could not be created
+     */
+    SegmentRecordSink(Path directory, String fileName, RunOptions options, PrintStream console) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            recordWriters[i] = new PrintWriter(new FileOutputStream(directory.resolve("genre" + i + ".csv").toFile()));
+            bookWriters[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(directory.resolve("genre" + i + ".rec").toFile()), 64 * 1024));
+        }
+        syntaxErrors = new ErrorSink("syntax errors in " + fileName, new OutputStreamWriter(new FileOutputStream(directory.resolve("syntax.txt").toFile())),
+                options.getConsoleMode(), options.getConsoleSampleRate(), console);
+        semanticErrors = new ErrorSink("semantic errors in " + fileName, new OutputStreamWriter(new FileOutputStream(directory.resolve("semantic.txt").toFile())),
+                options.getConsoleMode(), options.getConsoleSampleRate(), console);
+        this.console = console;
+    }
+
+    @Override
+    public void record(int genreIndex, String record) {
+        recordWriters[genreIndex].println(record);
+        recordCounts[genreIndex]++;
+    }
+
+    @Override
+    public void book(int genreIndex, Book book) throws IOException {
+        BookStoreFormat.writeRecord(bookWriters[genreIndex], book);
+        bookCounts[genreIndex]++;
+    }
+
+    @Override
+    public void syntaxError(String message) {
+        syntaxErrors.log(message);
+    }
+
+    @Override
+    public void semanticError(String message) {
+        semanticErrors.log(message);
+    }
+
+    @Override
+    public void message(String message) {
+        console.println(message);
+    }
+
+    long[] getRecordCounts() {
+        return recordCounts;
+    }
+
+    long[] getBookCounts() {
+        return bookCounts;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < 8; i++) {
+            recordWriters[i].close();
+            bookWriters[i].close();
+            if (recordWriters[i].checkError()) {
+                throw new IOException("Could not write the genre records of an incremental build segment");
+            }
+        }
+        syntaxErrors.close();
+        semanticErrors.close();
+    }
+}
@@ -0,0 +1,213 @@
+package books;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records what an incremental run was built from: the size, modification time and content hash of each
+ * input file, the number of records and books it contributed to each genre, and the size of every output
+ * file the run wrote.
+ * <p>
+ * The manifest is a tab-separated text file. Each line starts with its kind, {@code input} or
+ * {@code output}, and input lines appear in the order the files are listed in
+ * part1_input_file_names.txt.
+ */
+class InputManifest {
+
+    /** The name of the manifest file. */
+    static final String FILE_NAME = "books_manifest.txt";
+
+    private static final String HEADER = "# books manifest v1";
+
+    /**
+     * What one input file contributed to the last run.
+     */
+    static class Entry {
+        final String fileName;
+        final long size;
+        final long modified;
+        final String hash;
+        final long[] records;
+        final long[] books;
+
+        /**
+         * Constructs a new Entry.
+         *
+         * @param fileName the name of the input file as listed
+         * @param size     the size of the file in bytes, or -1 if it was missing
+         * @param modified the modification time of the file in milliseconds, or -1 if it was missing
+         * @param hash     the SHA-256 hash of the file content in hex, or "-" if it was missing
+         * @param records  the number of syntactically valid records routed to each genre
+         * @param books    the number of valid books written for each genre
+         */
+        Entry(String fileName, long size, long modified, String hash, long[] records, long[] books) {
+            this.fileName = fileName;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.records = records;
+            this.books = books;
+        }
+
+        boolean isMissing() {
+            return size < 0;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Long> outputSizes = new LinkedHashMap<>();
+
+    /**
+     * Returns the input entries, in input order.
+     *
+     * @return the entries
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the sizes of the output files written by the run, by file name.
+     *
+     * @return the output sizes
+     */
+    public Map<String, Long> getOutputSizes() {
+        return outputSizes;
+    }
+
+    /**
+     * Loads a manifest.
+     *
+     * @param file the manifest file
+     * @return the manifest, or an empty one if the file does not exist or is not a manifest
+     * @throws IOException if the file could not be read
+     */
+    public static InputManifest load(Path file) throws IOException {
+        InputManifest manifest = new InputManifest();
+        if (!Files.exists(file)) {
+            return manifest;
+        }
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                return manifest;
+            }
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts[0].equals("input") && parts.length == 7) {
+                    manifest.entries.add(new Entry(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]), parts[4],
+                            parseCounts(parts[5]), parseCounts(parts[6])));
+                } else if (parts[0].equals("output") && parts.length == 3) {
+                    manifest.outputSizes.put(parts[1], Long.parseLong(parts[2]));
+                }
+            }
+        } catch (RuntimeException e) {
+            // A damaged manifest only means the next run cannot reuse anything
+            return new InputManifest();
+        }
+        return manifest;
+    }
+
+    /**
+     * Saves the manifest, replacing the previous one atomically.
+     *
+     * @param file the manifest file
+     * @throws IOException if the file could not be written
+     */
+    public void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (Entry entry : entries) {
+                out.write("input\t" + entry.fileName + "\t" + entry.size + "\t" + entry.modified + "\t" + entry.hash
+                        + "\t" + formatCounts(entry.records) + "\t" + formatCounts(entry.books));
+                out.newLine();
+            }
+            for (Map.Entry<String, Long> output : outputSizes.entrySet()) {
+                out.write("output\t" + output.getKey() + "\t" + output.getValue());
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long[] parseCounts(String text) {
+        String[] parts = text.split(",");
+        long[] counts = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Long.parseLong(parts[i]);
+        }
+        return counts;
+    }
+
+    private static String formatCounts(long[] counts) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(counts[i]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Computes the SHA-256 hash of a file's content.
+     *
+     * @param file the file
+     * @return the hash in lowercase hex
+     * @throws IOException if the file could not be read
+     */
+    static String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the SHA-256 hash of a string.
+     *
+     * @param text the string
+     * @return the hash in lowercase hex
+     */
+    static String hash(String text) {
+        return toHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package books;
+
+/**
+ * Drops the books whose ISBN was already seen, keeping one copy of each ISBN across all genres according to
+ * a {@link DedupPolicy}.
+ * <p>
+ * ISBNs are tracked as the numbers given by {@link IsbnIndex#key}, so the ISBN-10 and ISBN-13 of a book are
+ * the same ISBN, in a {@link LongIntMap} of fixed capacity: the memory used is known before the first book
+ * is read, whatever the number of books. Once the map is full, books with ISBNs not yet tracked are all kept
+ * and counted as untracked.
+ * <p>
+ * Every policy needs to see every copy before choosing one, as Part 2 reads the books genre by genre rather
+ * than in input order, so the books are first passed to {@link #scan}, which keeps the best year or price of
+ * each ISBN, and then to {@link #keep}, which keeps the first copy that has it. The input files are yearly,
+ * so {@link DedupPolicy#FIRST} takes the copy from the earliest year as the one listed first.
+ */
+final class IsbnDeduplicator {
+
+    /** The value of an ISBN whose copy has been kept. */
+    private static final int KEPT = Integer.MIN_VALUE;
+
+    /** The value returned for an ISBN that is not tracked, which no score can take. */
+    private static final int ABSENT = Integer.MAX_VALUE;
+
+    private final DedupPolicy policy;
+    private final LongIntMap seen;
+    private long dropped;
+    private long untracked;
+
+    /**
+     * Constructs a deduplicator.
+     *
+     * @param policy   the copy of each ISBN that is kept
+     * @param capacity the largest number of distinct ISBNs tracked
+     */
+    IsbnDeduplicator(DedupPolicy policy, int capacity) {
+        this.policy = policy;
+        this.seen = LongIntMap.withFixedCapacity(capacity);
+    }
+
+    /**
+     * Notes a copy of an ISBN during the first pass.
+     *
+     * @param isbn  the ISBN of the book
+     * @param price the price of the book
+     * @param year  the year of the book
+     */
+    void scan(String isbn, double price, int year) {
+        long key = IsbnIndex.key(isbn);
+        if (key <= 0) {
+            return;
+        }
+        int score = score(price, year);
+        int best = seen.get(key, ABSENT);
+        if (best == ABSENT) {
+            if (seen.isFull()) {
+                untracked++;
+            } else {
+                seen.put(key, score);
+            }
+        } else if (score > best) {
+            seen.put(key, score);
+        }
+    }
+
+    /**
+     * Decides whether a book is kept or dropped as a duplicate.
+     *
+     * @param isbn  the ISBN of the book
+     * @param price the price of the book
+     * @param year  the year of the book
+     * @return true if the book is kept
+     */
+    boolean keep(String isbn, double price, int year) {
+        long key = IsbnIndex.key(isbn);
+        if (key <= 0) {
+            return true;
+        }
+        int value = seen.get(key, ABSENT);
+
+        if (value == ABSENT) {
+            // Not tracked by the scan, so there is no best copy to compare with
+            return true;
+        } else if (value == score(price, year)) {
+            seen.put(key, KEPT);
+            return true;
+        }
+        dropped++;
+        return false;
+    }
+
+    /**
+     * Returns the score of a copy under the policy; the copy with the highest score is kept.
+     */
+    private int score(double price, int year) {
+        if (policy == DedupPolicy.LATEST_YEAR) {
+            return year;
+        }
+        if (policy == DedupPolicy.LOWEST_PRICE) {
+            // The bits of a float order the same way as its value, and prices are never negative; adding
+            // zero turns a price of -0 into 0, whose negated bits would otherwise be the KEPT value
+            return -Float.floatToIntBits((float) price + 0.0f);
+        }
+        // The earliest year wins
+        return -year;
+    }
+
+    /**
+     * Returns the policy deciding which copy is kept.
+     *
+     * @return the policy
+     */
+    DedupPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the number of books dropped as duplicates so far.
+     *
+     * @return the number of duplicates
+     */
+    long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Returns the number of books that were kept without checking their ISBN because the map was full.
+     *
+     * @return the number of untracked books
+     */
+    long getUntracked() {
+        return untracked;
+    }
+}
@@ -0,0 +1,219 @@
+package books;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Finds the position of a book in a genre store from its ISBN.
+ * <p>
+ * ISBNs are normalized to the number of their ISBN-13 form, so the ISBN-10 and ISBN-13 of a book give the
+ * same key, and kept in a {@link LongIntMap} from key to record index. When an ISBN occurs more than once in
+ * a store the first record is kept.
+ * <p>
+ * Building the index reads every book of the store once. The index is then saved next to the store as
+ * {@code <store>.isbn}, together with the size and modification time of the store, and later runs load it
+ * in one read for as long as the store is unchanged.
+ */
+final class IsbnIndex {
+
+    /** The extension added to the name of a store to name its saved index. */
+    static final String EXTENSION = ".isbn";
+
+    private static final int MAGIC = 0x4953424E; // "ISBN"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    /** The largest table saved, which keeps the saved index within one buffer. */
+    private static final int MAX_SAVED_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / 12;
+
+    private final LongIntMap positions;
+
+    private IsbnIndex(LongIntMap positions) {
+        this.positions = positions;
+    }
+
+    /**
+     * Returns the index of a store, loading the saved index if it matches the store and otherwise building
+     * it and saving it for the next run.
+     *
+     * @param source    the opened store
+     * @param storeFile the name of the store file
+     * @return the index of the store
+     * @throws IOException if the store could not be read
+     */
+    static IsbnIndex open(BookSource source, String storeFile) throws IOException {
+        Path store = Path.of(storeFile);
+        Path saved = Path.of(storeFile + EXTENSION);
+        long storeSize = Files.size(store);
+        FileTime storeModified = Files.getLastModifiedTime(store);
+
+        IsbnIndex index = load(saved, storeSize, storeModified.toMillis(), source.size());
+        if (index == null) {
+            index = build(source);
+            try {
+                index.save(saved, storeSize, storeModified.toMillis(), source.size());
+            } catch (IOException e) {
+                // The index still works for this run; it is just built again next time
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Builds the index of a store by reading each of its books.
+     *
+     * @param source the store
+     * @return the index
+     */
+    static IsbnIndex build(BookSource source) {
+        int size = source.size();
+        LongIntMap positions = new LongIntMap(size);
+        for (int i = 0; i < size; i++) {
+            long key = key(source.get(i).getIsbn());
+            if (key > 0) {
+                positions.putIfAbsent(key, i);
+            }
+        }
+        return new IsbnIndex(positions);
+    }
+
+    /**
+     * Returns the position in the store of the book with the given ISBN.
+     *
+     * @param isbn an ISBN-10 or ISBN-13, possibly with hyphens or spaces
+     * @return the index of the book in the store, or -1 if no book has this ISBN
+     */
+    int find(String isbn) {
+        long key = key(isbn);
+        return key > 0 ? positions.get(key, -1) : -1;
+    }
+
+    /**
+     * Returns the number of distinct ISBNs in the index.
+     *
+     * @return the number of ISBNs
+     */
+    int size() {
+        return positions.size();
+    }
+
+    /**
+     * Normalizes an ISBN to the number of its ISBN-13 form. The check digit is not verified, since the books
+     * of a store have already been validated; hyphens and spaces are ignored.
+     *
+     * @param isbn an ISBN-10 or ISBN-13
+     * @return the key of the ISBN, or -1 if it is not made of 10 or 13 digits
+     */
+    static long key(CharSequence isbn) {
+        long digits = 0;
+        int count = 0;
+        int last = -1;
+
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (count == 13 || last == 10) {
+                    return -1;
+                }
+                digits = digits * 10 + (c - '0');
+                last = c - '0';
+                count++;
+            } else if ((c == 'X' || c == 'x') && count == 9) {
+                // The check digit of an ISBN-10 may be X; it is dropped below anyway
+                digits = digits * 10 + 10;
+                last = 10;
+                count++;
+            } else if (c != '-' && c != ' ') {
+                return -1;
+            }
+        }
+
+        if (count == 13) {
+            return digits;
+        }
+        if (count != 10) {
+            return -1;
+        }
+
+        // ISBN-10 to ISBN-13: prefix 978 to the first nine digits and compute the EAN-13 check digit
+        long body = 978_000_000_000L + (digits - last) / 10;
+        int sum = 0;
+        long rest = body;
+        for (int i = 0; i < 12; i++) {
+            int digit = (int) (rest % 10);
+            sum += (i % 2 == 0) ? digit * 3 : digit;
+            rest /= 10;
+        }
+        return body * 10 + (10 - sum % 10) % 10;
+    }
+
+    private static IsbnIndex load(Path file, long storeSize, long storeModified, int recordCount) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+                return null;
+            }
+            header.getShort();
+            if (header.getLong() != storeSize || header.getLong() != storeModified || header.getInt() != recordCount) {
+                return null;
+            }
+            int capacity = header.getInt();
+            if (capacity <= 0 || capacity > MAX_SAVED_CAPACITY || Integer.bitCount(capacity) != 1 || channel.size() != HEADER_SIZE + (long) capacity * 12) {
+                return null;
+            }
+
+            ByteBuffer tables = ByteBuffer.allocate(capacity * 12);
+            readFully(channel, tables);
+            tables.flip();
+            long[] keys = new long[capacity];
+            int[] values = new int[capacity];
+            tables.asLongBuffer().get(keys);
+            tables.position(capacity * 8);
+            tables.asIntBuffer().get(values);
+            return new IsbnIndex(new LongIntMap(keys, values));
+        } catch (IOException | IllegalArgumentException e) {
+            // A missing or unreadable index is simply built again
+            return null;
+        }
+    }
+
+    private void save(Path file, long storeSize, long storeModified, int recordCount) throws IOException {
+        long[] keys = positions.getKeys();
+        int[] values = positions.getValues();
+        if (keys.length > MAX_SAVED_CAPACITY) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + keys.length * 12);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+        buffer.putLong(storeSize).putLong(storeModified).putInt(recordCount).putInt(keys.length);
+        buffer.asLongBuffer().put(keys);
+        buffer.position(HEADER_SIZE + keys.length * 8);
+        buffer.asIntBuffer().put(values);
+        buffer.position(0);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package books;
+
+/**
+ * A histogram of latencies in nanoseconds with one bucket per power of two.
+ * <p>
+ * Recording a value is a few arithmetic operations on a fixed array, which keeps the cost of timing every
+ * record low. Percentiles are reported as the upper bound of their bucket, so they are accurate to within
+ * a factor of two.
+ */
+final class LatencyHistogram {
+
+    private final long[] buckets = new long[64];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[64 - Long.numberOfLeadingZeros(nanos)]++;
+        count++;
+        total += nanos;
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    /**
+     * Adds the latencies recorded by another histogram to this one.
+     *
+     * @param other the histogram to add
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return the number of latencies
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean latency.
+     *
+     * @return the mean latency in nanoseconds, 0 if nothing was recorded
+     */
+    double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Returns the largest latency recorded.
+     *
+     * @return the largest latency in nanoseconds
+     */
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns an upper bound of the latency below which the given share of the latencies fall.
+     *
+     * @param quantile the share of latencies, between 0 and 1
+     * @return the upper bound in nanoseconds, 0 if nothing was recorded
+     */
+    long getPercentile(double quantile) {
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                long upper = i == 0 ? 0 : i == 63 ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(upper, max);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,103 @@
+package books;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a file in the default character set, keeping track of the byte offset of the next line
+ * so that a later run can start reading again from there.
+ * <p>
+ * Lines end with a line feed, a carriage return, or both, as they do for {@link java.util.Scanner}. Unlike
+ * a scanner, the reader does not end lines at the Unicode line and paragraph separators or at a next-line
+ * character, which never occur in the input files: finding them would need the text decoded before it is
+ * split, and the offsets of the lines could then no longer be known. Only ASCII-compatible character sets
+ * give exact offsets, as a line feed byte has to be a line feed character.
+ */
+final class LineReader implements Closeable {
+
+    private final FileChannel channel;
+    private final Charset charset = Charset.defaultCharset();
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).limit(0);
+    private byte[] line = new byte[256];
+    private long offset;
+
+    /**
+     * Opens a file and positions the reader at a line that starts at the given offset.
+     *
+     * @param file   the file
+     * @param offset the byte offset of the first line to read, 0 to read the whole file
+     * @throws IOException if the file could not be opened
+     */
+    LineReader(Path file, long offset) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        this.offset = offset;
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @return the line without its line terminator, or null at the end of the file
+     * @throws IOException if the file could not be read
+     */
+    String readLine() throws IOException {
+        int length = 0;
+        boolean any = false;
+        while (buffer.hasRemaining() || fill()) {
+            byte b = buffer.get();
+            offset++;
+            any = true;
+            if (b == '\n') {
+                break;
+            }
+            if (b == '\r') {
+                if ((buffer.hasRemaining() || fill()) && buffer.get(buffer.position()) == '\n') {
+                    buffer.get();
+                    offset++;
+                }
+                break;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+        return any ? new String(line, 0, length, charset) : null;
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        return read > 0;
+    }
+
+    /**
+     * Returns the byte offset of the next line, which is the number of bytes read once the file is read to
+     * its end.
+     *
+     * @return the offset
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,216 @@
+package books;
+
+/**
+ * A map from positive {@code long} keys to {@code int} values, stored in two flat arrays with open
+ * addressing and linear probing.
+ * <p>
+ * Keys and values are kept as primitives side by side, so a lookup is a multiply, a shift and usually one
+ * or two array reads, with no boxing and no entry objects. Zero marks an empty slot, which is why keys must
+ * be positive. The table doubles when it becomes half full, unless the map was created with a fixed
+ * capacity, in which case its memory is allocated once and it refuses keys beyond that capacity.
+ */
+final class LongIntMap {
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int shift;
+    private int size;
+    private final int maxSize;
+
+    /**
+     * Constructs a map sized for the given number of keys.
+     *
+     * @param expectedSize the number of keys the map is expected to hold
+     */
+    LongIntMap(int expectedSize) {
+        this(expectedSize, Integer.MAX_VALUE);
+    }
+
+    private LongIntMap(int expectedSize, int maxSize) {
+        allocate(tableSize(expectedSize));
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Constructs a map that holds at most the given number of keys and never grows, so the memory it uses
+     * is known up front: 24 to 48 bytes per key, as the table size is rounded up to a power of two.
+     *
+     * @param maxSize the largest number of keys the map holds
+     * @return the map
+     */
+    static LongIntMap withFixedCapacity(int maxSize) {
+        return new LongIntMap(maxSize, maxSize);
+    }
+
+    /**
+     * Constructs a map from tables saved with {@link #getKeys()} and {@link #getValues()}.
+     *
+     * @param keys   the key table, whose length is a power of two
+     * @param values the value table, as long as the key table
+     * @throws IllegalArgumentException if the tables are not a valid pair
+     */
+    LongIntMap(long[] keys, int[] values) {
+        if (Integer.bitCount(keys.length) != 1 || values.length != keys.length) {
+            throw new IllegalArgumentException("Invalid map tables of " + keys.length + " and " + values.length + " slots");
+        }
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.shift = Long.numberOfLeadingZeros(mask);
+        this.maxSize = Integer.MAX_VALUE;
+        for (long key : keys) {
+            if (key != 0) {
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Returns the size of a table that holds the given number of keys at most half full.
+     *
+     * @param expectedSize the number of keys
+     * @return a power of two, at least 16
+     */
+    static int tableSize(int expectedSize) {
+        long wanted = Math.max(16, 2L * expectedSize);
+        if (wanted > 1 << 30) {
+            throw new IllegalArgumentException("Too many keys for one map: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(mask);
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads keys that differ only in their low digits over the whole table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift) & mask;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key          the key, which must be positive
+     * @param defaultValue the value returned when the key is absent
+     * @return the value of the key, or the default value
+     */
+    int get(long key, int defaultValue) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long found = keys[i];
+            if (found == key) {
+                return values[i];
+            }
+            if (found == 0) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * Adds a key with its value unless the key is already present.
+     *
+     * @param key   the key, which must be positive
+     * @param value the value
+     * @return true if the key was added, false if it was already present and kept its value
+     * @throws IllegalStateException if the key is new and the map is full
+     */
+    boolean putIfAbsent(long key, int value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * Sets the value of a key, adding the key if it is absent.
+     *
+     * @param key   the key, which must be positive
+     * @param value the value
+     * @return true if the key was added, false if it was already present
+     * @throws IllegalStateException if the key is new and the map is full
+     */
+    boolean put(long key, int value) {
+        return put(key, value, true);
+    }
+
+    private boolean put(long key, int value, boolean replace) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Keys must be positive: " + key);
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long found = keys[i];
+            if (found == key) {
+                if (replace) {
+                    values[i] = value;
+                }
+                return false;
+            }
+            if (found == 0) {
+                if (size == maxSize) {
+                    throw new IllegalStateException("The map is full with " + maxSize + " keys");
+                }
+                keys[i] = key;
+                values[i] = value;
+                if (++size > keys.length / 2) {
+                    grow();
+                }
+                return true;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys in the map.
+     *
+     * @return the number of keys
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the map has a fixed capacity that its keys fill.
+     *
+     * @return true if no more keys can be added
+     */
+    boolean isFull() {
+        return size == maxSize;
+    }
+
+    /**
+     * Returns the key table, for saving the map. Empty slots hold 0.
+     *
+     * @return the key table, not a copy
+     */
+    long[] getKeys() {
+        return keys;
+    }
+
+    /**
+     * Returns the value table, for saving the map.
+     *
+     * @return the value table, not a copy
+     */
+    int[] getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,1446 @@
+package books;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.management.JMException;
+
+/**
+ * This class contains the main method and functionalities for processing book data.
+ */
+public class Main {
+
+    /**
+     * Processes input files to categorize books based on genre and handle syntax errors.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_part1() throws IOException {
+        do_part1(new RunOptions(), new RunMetrics(false));
+    }
+
+    /**
+     * Processes input files to categorize books based on genre and handle syntax errors.
+     *
+     * @param options the options controlling how the input files are processed
+     * @param metrics the metrics of the run
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_part1(RunOptions options, RunMetrics metrics) throws IOException {
+
+        String[][] genreToFileMapping = initializeGenreMappings();
+        PrintWriter[] writers = initializeFileWriters(genreToFileMapping);
+        ErrorSink syntaxErrors = initializeSyntaxErrorSink(options);
+        RecordSink sink = new DirectRecordSink(writers, syntaxErrors, null, null, System.out);
+        handleInputFiles(sink, genreToFileMapping, false, options.getParallelism(), options.getChunkSize(), metrics);
+        closeWriters(writers);
+        if (syntaxErrors != null) {
+            syntaxErrors.close();
+        }
+    }
+
+    /**
+     * Processes the input files in a single pass: each record is parsed once, checked for syntax errors,
+     * routed to its genre, validated and serialized straight to the genre's binary file. The genre CSV
+     * files of Part 1 are only written when requested as debug output.
+     *
+     * @param options the options controlling how the input files are processed
+     * @param metrics the metrics of the run
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_fused(RunOptions options, RunMetrics metrics) throws IOException {
+
+        String[][] genreToFileMapping = initializeGenreMappings();
+        PrintWriter[] recordWriters = options.isDebugCsv() ? initializeFileWriters(genreToFileMapping) : null;
+        ErrorSink syntaxErrors = initializeSyntaxErrorSink(options);
+        ErrorSink semanticErrors = initializeSemanticErrorSink(options);
+        BookStoreWriter[] bookWriters = new BookStoreWriter[8];
+        for (int i = 0; i < 8; i++) {
+            bookWriters[i] = new BookStoreWriter(genreToFileMapping[1][i] + ".ser", true, options.isCompressed());
+        }
+
+        DirectRecordSink sink = new DirectRecordSink(recordWriters, syntaxErrors, bookWriters, semanticErrors, System.out);
+        handleInputFiles(sink, genreToFileMapping, true, options.getParallelism(), options.getChunkSize(), metrics);
+
+        for (int i = 0; i < 8; i++) {
+            System.out.println("Line: " + sink.getBookCount(i));
+        }
+
+        if (recordWriters != null) {
+            closeWriters(recordWriters);
+        }
+        if (syntaxErrors != null) {
+            syntaxErrors.close();
+        }
+        semanticErrors.close();
+        for (BookStoreWriter writer : bookWriters) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Processes the input files like {@link #do_fused}, but as a pipeline: a reader thread, as many parser
+     * threads as the parallelism level and a writer thread per genre, connected by bounded queues. The
+     * outputs are the same as those of the fused mode.
+     *
+     * @param options the options controlling how the input files are processed
+     * @param metrics the metrics of the run
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_pipeline(RunOptions options, RunMetrics metrics) throws IOException {
+
+        String[][] genreToFileMapping = initializeGenreMappings();
+        PrintWriter[] recordWriters = options.isDebugCsv() ? initializeFileWriters(genreToFileMapping) : null;
+        ErrorSink syntaxErrors = initializeSyntaxErrorSink(options);
+        ErrorSink semanticErrors = initializeSemanticErrorSink(options);
+        BookStoreWriter[] bookWriters = new BookStoreWriter[8];
+        for (int i = 0; i < 8; i++) {
+            bookWriters[i] = new BookStoreWriter(genreToFileMapping[1][i] + ".ser", true, options.isCompressed());
+        }
+
+        PipelineBuild pipeline = new PipelineBuild(genreToFileMapping, options.getParallelism(), metrics,
+                recordWriters, bookWriters, syntaxErrors, semanticErrors, System.out);
+        pipeline.run(readInputFileNames());
+
+        for (int i = 0; i < 8; i++) {
+            System.out.println("Line: " + pipeline.getBookCount(i));
+        }
+
+        if (recordWriters != null) {
+            closeWriters(recordWriters);
+        }
+        if (syntaxErrors != null) {
+            syntaxErrors.close();
+        }
+        semanticErrors.close();
+        for (BookStoreWriter writer : bookWriters) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Runs Parts 1 and 2 incrementally: only the input files that are new or changed since the last run are
+     * processed, and their results are spliced into the existing genre files, binary files and error files.
+     *
+     * @param options the options controlling how the input files are processed
+     * @param metrics the metrics of the run
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_incremental(RunOptions options, RunMetrics metrics) throws IOException {
+        new IncrementalBuild(options, initializeGenreMappings(), metrics, System.out).run(readInputFileNames());
+    }
+
+    /**
+     * Runs Parts 1 and 2 like {@link #do_part1} and {@link #do_part2}, taking a checkpoint every so often so
+     * that a run that stops part way can be resumed with --resume instead of starting over.
+     *
+     * @param options the options controlling how the input files are processed
+     * @param metrics the metrics of the run
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_checkpointed(RunOptions options, RunMetrics metrics) throws IOException {
+        new CheckpointedBuild(options, initializeGenreMappings(), metrics, System.out).run(options.isResume());
+    }
+
+    /**
+     * Keeps Parts 1 and 2 up to date with the input directory until the program is stopped: new or updated
+     * {@code books*.csv.txt} files are added to part1_input_file_names.txt if needed and processed
+     * incrementally as soon as they land.
+     *
+     * @param options the options controlling how the input files are processed
+     * @param metrics the metrics of the run
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_watch(RunOptions options, RunMetrics metrics) throws IOException {
+        new WatchBuild(options, initializeGenreMappings(), metrics, System.out).run();
+    }
+
+    /**
+     * Classifies the records of every input file listed in part1_input_file_names.txt.
+     *
+     * @param target             the destination of the routed records, books and messages
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @param validate           whether routed records are also validated and turned into books
+     * @param parallelism        the number of input files, or chunks of large input files, that may be processed
+     *                           at the same time
+     * @param chunkSize          the size in bytes of the chunks large input files are split into when processed
+     *                           in parallel
+     * @param metrics            the metrics of the run
+     * @throws IOException if an I/O error occurs
+     */
+    private static void handleInputFiles(RecordSink target, String[][] genreToFileMapping, boolean validate, int parallelism,
+                                         long chunkSize, RunMetrics metrics) throws IOException {
+
+        List<String> fileNames = readInputFileNames();
+
+        if (parallelism == 1) {
+            CsvTokenizer tokenizer = new CsvTokenizer();
+            for (String fileName : fileNames) {
+                FileMetrics fileMetrics = new FileMetrics(fileName, metrics);
+                classifyInputFile(fileName, genreToFileMapping, tokenizer, validate, target, fileMetrics);
+                metrics.add(fileMetrics);
+            }
+            return;
+        }
+
+        // Files are classified concurrently into in-memory buffers, which are then written out strictly in
+        // input order so the output files come out the same as with sequential processing. A file larger
+        // than one chunk is split into chunks of whole records that are classified concurrently too. At most
+        // two files or chunks per worker are in flight, which bounds how much output is held in memory at once.
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Deque<Future<BufferedRecordSink>> inFlight = new ArrayDeque<>();
+            Deque<FileChunk> inFlightChunks = new ArrayDeque<>();
+            Deque<FileMetrics> inFlightMetrics = new ArrayDeque<>();
+            Iterator<String> next = fileNames.iterator();
+            Iterator<FileChunk> chunks = Collections.emptyIterator();
+            FileMetrics fileMetrics = null;
+
+            while (next.hasNext() || chunks.hasNext() || !inFlight.isEmpty()) {
+                while ((next.hasNext() || chunks.hasNext()) && inFlight.size() < parallelism * 2) {
+                    if (!chunks.hasNext()) {
+                        chunks = FileChunk.split(next.next(), chunkSize).iterator();
+                    }
+                    FileChunk chunk = chunks.next();
+                    FileMetrics chunkMetrics = new FileMetrics(chunk.getFileName(), metrics);
+                    inFlightChunks.add(chunk);
+                    inFlightMetrics.add(chunkMetrics);
+                    inFlight.add(pool.submit(() -> {
+                        BufferedRecordSink sink = new BufferedRecordSink(8);
+                        if (chunk.isWholeFile()) {
+                            classifyInputFile(chunk.getFileName(), genreToFileMapping, new CsvTokenizer(), validate, sink, chunkMetrics);
+                        } else {
+                            classifyChunk(chunk, genreToFileMapping, new CsvTokenizer(), validate, sink, chunkMetrics);
+                        }
+                        return sink;
+                    }));
+                }
+                BufferedRecordSink sink = awaitResult(inFlight.poll());
+                FileChunk chunk = inFlightChunks.poll();
+                FileMetrics chunkMetrics = inFlightMetrics.poll();
+
+                // The workers only buffered the outputs, which are really written here
+                long mark = chunkMetrics.mark();
+                long cpuStart = chunkMetrics.cpuTime();
+                sink.replayTo(target);
+                chunkMetrics.addMeasured(Stage.SERIALIZE, 0, 0, mark, cpuStart);
+
+                // The chunks of a file are reported together, as one file
+                if (chunk.isFirst()) {
+                    fileMetrics = chunk.isLast() ? chunkMetrics : new FileMetrics(chunk.getFileName(), metrics);
+                }
+                if (fileMetrics != chunkMetrics) {
+                    fileMetrics.add(chunkMetrics);
+                }
+                if (chunk.isLast()) {
+                    metrics.add(fileMetrics);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> T awaitResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing the input files", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Reads the names of the Part 1 input files from part1_input_file_names.txt.
+     *
+     * @return the input file names, in the order they are listed
+     */
+    static List<String> readInputFileNames() {
+
+        Scanner sc = null;
+        List<String> fileNames = new ArrayList<>();
+
+        try {
+            sc = new Scanner(new FileInputStream("part1_input_file_names.txt"));
+        } catch (FileNotFoundException e) {
+            System.out.println("Could not open input file part1_input_file_names.txt for reading." + " Please check if file exists.");
+            System.out.print("Program will terminate.");
+            System.exit(0);
+        }
+
+        int noOfBooks = sc.nextInt();
+        sc.nextLine();
+
+        while (sc.hasNextLine() && noOfBooks != 0) {
+            fileNames.add(sc.nextLine());
+        }
+        sc.close();
+
+        return fileNames;
+    }
+
+    /**
+     * Reads one input file, routing each syntactically valid record to its genre and reporting the others.
+     *
+     * @param fileName           the name of the input file
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @param tokenizer          the tokenizer used to split the records
+     * @param validate           whether routed records are also validated and turned into books
+     * @param sink               the destination of the routed records, books and error messages
+     * @param metrics            the metrics of the file, which are complete once this method returns
+     * @throws IOException if a book could not be written
+     */
+    static void classifyInputFile(String fileName, String[][] genreToFileMapping, CsvTokenizer tokenizer,
+                                          boolean validate, RecordSink sink, FileMetrics metrics) throws IOException {
+
+        Scanner bookScanner;
+        String currentLine;
+
+        try {
+            bookScanner = new Scanner(new FileInputStream(fileName.trim()));
+
+        } catch (FileNotFoundException e) {
+            sink.message("Could not find file " + fileName + ", moving on to the next input file.\n");
+            return; // Move to the next file if current file is not found
+        }
+
+        classifyLines(fileName, bookScanner, genreToFileMapping, tokenizer, validate, sink, metrics);
+    }
+
+    /**
+     * Reads one chunk of a large input file, routing each syntactically valid record to its genre and
+     * reporting the others.
+     *
+     * @param chunk              the chunk of the input file
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @param tokenizer          the tokenizer used to split the records
+     * @param validate           whether routed records are also validated and turned into books
+     * @param sink               the destination of the routed records, books and error messages
+     * @param metrics            the metrics of the chunk, which are complete once this method returns
+     * @throws IOException if the chunk could not be read or a book could not be written
+     */
+    static void classifyChunk(FileChunk chunk, String[][] genreToFileMapping, CsvTokenizer tokenizer,
+                              boolean validate, RecordSink sink, FileMetrics metrics) throws IOException {
+        Scanner chunkScanner = new Scanner(new ByteArrayInputStream(chunk.read()));
+        classifyLines(chunk.getFileName(), chunkScanner, genreToFileMapping, tokenizer, validate, sink, metrics);
+    }
+
+    private static void classifyLines(String fileName, Scanner bookScanner, String[][] genreToFileMapping,
+                                      CsvTokenizer tokenizer, boolean validate, RecordSink sink,
+                                      FileMetrics metrics) throws IOException {
+        String currentLine;
+        long mark = metrics.start();
+        while (bookScanner.hasNextLine()) {
+            long recordStart = mark;
+            currentLine = bookScanner.nextLine();
+            mark = metrics.read(mark, currentLine.length() + 1);
+            mark = classifyRecord(fileName, currentLine, genreToFileMapping, tokenizer, validate, sink, metrics, mark);
+            metrics.recordDone(recordStart, mark);
+        }
+
+        bookScanner.close();
+        metrics.finish();
+    }
+
+    /**
+     * Classifies one record of an input file: checks its syntax, routes it to its genre and, if asked,
+     * validates it, passing the outcome to the sink.
+     *
+     * @param fileName           the name of the input file, used in error messages
+     * @param currentLine        the record as read from the input file
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @param tokenizer          the tokenizer used to split the record
+     * @param validate           whether a routed record is also validated and turned into a book
+     * @param sink               the destination of the routed record, its book or its error
+     * @param metrics            the metrics of the input file
+     * @param mark               the mark taken once the record was read
+     * @return the mark taken once the outputs of the record were passed to the sink
+     * @throws IOException if a book could not be written
+     */
+    static long classifyRecord(String fileName, String currentLine, String[][] genreToFileMapping, CsvTokenizer tokenizer,
+                               boolean validate, RecordSink sink, FileMetrics metrics, long mark) throws IOException {
+        tokenizer.tokenize(currentLine); // Split by comma, but ignore commas within quotes
+        mark = metrics.lap(Stage.SPLIT, mark);
+
+        RecordError error = checkSyntax(tokenizer);
+        mark = metrics.lap(Stage.SYNTAX_CHECK, mark);
+        int outputFileIndex = -1;
+
+        if (error == RecordError.NONE) {
+            outputFileIndex = findGenre(tokenizer, genreToFileMapping[0]);
+            mark = metrics.lap(Stage.ROUTE, mark);
+            if (outputFileIndex < 0) {
+                error = RecordError.UNKNOWN_GENRE;
+            }
+        }
+
+        if (error != RecordError.NONE) {
+            metrics.error(error);
+            String message = error.message(fileName, currentLine);
+            sink.syntaxError(message);
+            return metrics.lap(Stage.SERIALIZE, mark);
+        }
+
+        metrics.routed(outputFileIndex);
+        sink.record(outputFileIndex, currentLine);
+        mark = metrics.lap(Stage.SERIALIZE, mark);
+
+        if (validate) {
+            Book book = validateRecord(tokenizer, genreToFileMapping[1][outputFileIndex], sink, metrics);
+            mark = metrics.lap(Stage.VALIDATE, mark);
+            if (book != null) {
+                metrics.book(outputFileIndex);
+                sink.book(outputFileIndex, book);
+                mark = metrics.lap(Stage.SERIALIZE, mark);
+            }
+        }
+        return mark;
+    }
+
+    /**
+     * Checks a tokenized record for syntax errors: the number of fields and any empty field.
+     *
+     * @param fields the tokenized fields of a book record
+     * @return the syntax error found, or {@link RecordError#NONE}
+     */
+    static RecordError checkSyntax(CsvTokenizer fields) {
+        int fieldCount = fields.fieldCount();
+
+        if (fieldCount > 6) {
+            return RecordError.TOO_MANY_FIELDS;
+        } else if (fieldCount < 6) {
+            return RecordError.TOO_FEW_FIELDS;
+        }
+
+        for (int i = 0; i < fieldCount; i++) {
+            if (fields.isEmpty(i)) {
+                return RecordError.missingField(i);
+            }
+        }
+        return RecordError.NONE;
+    }
+
+    /**
+     * Finds the genre of a tokenized record.
+     *
+     * @param fields the tokenized fields of a book record
+     * @param genres the known genre codes
+     * @return the index of the record's genre, or -1 if the genre is unknown
+     */
+    static int findGenre(CsvTokenizer fields, String[] genres) {
+        for (int i = 0; i < genres.length; i++) {
+            if (fields.fieldEquals(4, genres[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Initializes PrintWriter objects for writing book records to output files.
+     *
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @return an array of PrintWriter objects
+     */
+    private static PrintWriter[] initializeFileWriters(String[][] genreToFileMapping) {
+        PrintWriter[] writers = new PrintWriter[8];
+
+        for (int i = 0; i < 8; i++) {
+            try {
+                writers[i] = new PrintWriter(new FileOutputStream(genreToFileMapping[1][i] + ".txt"));
+            } catch (FileNotFoundException e) {
+                System.out.println(genreToFileMapping[1][i] + ".txt: Could not open/create the file to write to. Please check for problems such as directory permission or no available memory.");
+            }
+        }
+
+        return writers;
+
+    }
+
+    /**
+     * Initializes the error sink for the syntax error file.
+     *
+     * @param options the options holding the console mode
+     * @return the error sink, or null if the file could not be created
+     */
+    private static ErrorSink initializeSyntaxErrorSink(RunOptions options) {
+        try {
+            return new ErrorSink("syntax_error_file.txt", new OutputStreamWriter(new FileOutputStream("syntax_error_file.txt")),
+                    options.getConsoleMode(), options.getConsoleSampleRate(), System.out);
+        } catch (FileNotFoundException e) {
+            System.out.println("syntax_error_file.txt: Could not open/create the file to write to. Please check for problems such as directory permission or no available memory.");
+            return null;
+        }
+    }
+
+    /**
+     * Initializes the error sink for the semantic error file, exiting the program if it cannot be created.
+     *
+     * @param options the options holding the console mode
+     * @return the error sink
+     */
+    private static ErrorSink initializeSemanticErrorSink(RunOptions options) {
+        ErrorSink errors = null;
+
+        try {
+            errors = new ErrorSink("semantic_error_file.txt", new OutputStreamWriter(new FileOutputStream("semantic_error_file.txt")),
+                    options.getConsoleMode(), options.getConsoleSampleRate(), System.out);
+        } catch (FileNotFoundException e) {
+            System.out.println("Could not open/create the file to write to. "
+                    + " Please check for problems such as directory permission"
+                    + " or no available memory.");
+            System.out.println("System will exit.");
+            System.exit(0);
+        }
+        return errors;
+    }
+
+    /**
+     * Initializes mappings between genre names and file names.
+     *
+     * @return a 2D array containing genre-to-file mappings
+     */
+    static String[][] initializeGenreMappings() {
+        String[][] genreToFileMapping = new String[2][8];
+        for (Genre genre : Genre.values()) {
+            genreToFileMapping[0][genre.ordinal()] = genre.getCode();
+            genreToFileMapping[1][genre.ordinal()] = genre.getFileName();
+        }
+        return genreToFileMapping;
+    }
+
+    /**
+     * Closes the PrintWriter objects used for writing output files.
+     *
+     * @param writers an array of PrintWriter objects to be closed
+     */
+    private static void closeWriters(PrintWriter[] writers) {
+        for (PrintWriter writer : writers) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads CSV files, validates book data, and serializes valid books while handling semantic errors.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_part2() throws IOException {
+        do_part2(new RunOptions(), new RunMetrics(false));
+    }
+
+    /**
+     * Reads CSV files, validates book data, and serializes valid books while handling semantic errors.
+     *
+     * @param options the options controlling how errors are reported
+     * @param metrics the metrics of the run
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_part2(RunOptions options, RunMetrics metrics) throws IOException {
+
+        BookStoreWriter[] writers = new BookStoreWriter[8];
+        String[] files = new String[8];
+        Scanner[] readers = new Scanner[8];
+        ErrorSink semanticErrors;
+
+        files[0] = "Cartoons_Comics_Books.csv";
+        files[1] = "Hobbies_Collectibles_Books.csv";
+        files[2] = "Movies_TV.csv";
+        files[3] = "Music_Radio_Books.csv";
+        files[4] = "Nostalgia_Eclectic_Books.csv";
+        files[5] = "Old_Time_Radio.csv";
+        files[6] = "Sports_Sports_Memorabilia.csv";
+        files[7] = "Trains_Planes_Automobiles.csv";
+
+        semanticErrors = initializeSemanticErrorSink(options);
+        RecordSink errorSink = new DirectRecordSink(null, null, null, semanticErrors, System.out);
+
+        FileMetrics[] fileMetricsArray = new FileMetrics[8];
+        for (int i = 0; i < 8; i++) {
+            fileMetricsArray[i] = new FileMetrics(files[i] + ".txt", metrics);
+        }
+        IsbnDeduplicator deduplicator = initializeDeduplicator(options, files);
+        if (deduplicator != null) {
+            metrics.setDeduplicator(deduplicator);
+            scanForDuplicates(files, deduplicator, fileMetricsArray);
+        }
+
+        // Sorted genres are collected by the sorter, which spills sorted runs to disk once its memory budget is used
+        ExternalBookSorter sorter = options.getSortKey() == null ? null
+                : new ExternalBookSorter(options.getSortKey(), options.getSortMemory(), Paths.get("").toAbsolutePath());
+
+        for (int i = 0; i < 8; i++) {
+            try {
+                readers[i] = new Scanner(new FileInputStream(files[i] + ".txt"));
+                writers[i] = new BookStoreWriter(files[i] + ".ser", true, options.isCompressed());
+
+                CsvTokenizer tokenizer = new CsvTokenizer();
+                FileMetrics fileMetrics = fileMetricsArray[i];
+                long mark = fileMetrics.start();
+
+                while (readers[i].hasNextLine()) {
+                    long recordStart = mark;
+                    String book = readers[i].nextLine();
+                    mark = fileMetrics.read(mark, book.length() + 1);
+                    tokenizer.tokenize(book); // Split by comma, but ignore commas within quotes
+                    mark = fileMetrics.lap(Stage.SPLIT, mark);
+
+                    Book bookObject = validateRecord(tokenizer, files[i], errorSink, fileMetrics);
+                    mark = fileMetrics.lap(Stage.VALIDATE, mark);
+
+                    if (bookObject != null && deduplicator != null) {
+                        if (!deduplicator.keep(bookObject.getIsbn(), bookObject.getPrice(), bookObject.getYear())) {
+                            fileMetrics.duplicate(i);
+                            bookObject = null;
+                        }
+                        mark = fileMetrics.lap(Stage.DEDUPLICATE, mark);
+                    }
+
+                    //Write each valid book to the binary file as soon as it has been validated, or pass it to the sorter
+                    if (bookObject != null) {
+                        fileMetrics.book(i);
+                        if (sorter != null) {
+                            sorter.add(bookObject);
+                        } else {
+                            writers[i].write(bookObject);
+                        }
+                        mark = fileMetrics.lap(Stage.SERIALIZE, mark);
+                    }
+                    fileMetrics.recordDone(recordStart, mark);
+
+                }
+                readers[i].close();
+                fileMetrics.finish();
+                if (sorter != null) {
+                    // Measured after finish(), so the merge is not also part of the span finish() added
+                    mark = fileMetrics.mark();
+                    long cpuStart = fileMetrics.cpuTime();
+                    int runs = sorter.writeTo(writers[i]);
+                    fileMetrics.addMeasured(Stage.SERIALIZE, 0, 0, mark, cpuStart);
+                    if (runs > 0) {
+                        System.out.println("Sorted " + files[i] + " by " + options.getSortKey().getOptionName()
+                                + ", spilling " + runs + " sorted runs to disk.");
+                    }
+                }
+                metrics.add(fileMetrics);
+
+                System.out.println("Line: " + writers[i].getRecordCount());
+
+            }
+            catch (FileNotFoundException e) {
+                System.out.println("Could not find file " + files[i] + ", moving on to the next input file.");
+            } catch (IOException io) {
+                System.out.println("Could not open/create the file to write to. "
+                        + " Please check for problems such as directory permission"
+                        + " or no available memory.");
+                if (sorter != null) {
+                    sorter.close(); // Drop the books of this genre so they do not end up in the next one
+                }
+                continue;
+            }
+
+        }
+
+        semanticErrors.close();
+
+        for (BookStoreWriter writer : writers) {
+            writer.close();
+        }
+
+        if (deduplicator != null) {
+            System.out.println("Dropped " + deduplicator.getDropped() + " duplicate books, keeping the "
+                    + deduplicator.getPolicy().getOptionName() + " copy of each ISBN.");
+            if (deduplicator.getUntracked() > 0) {
+                System.out.println(deduplicator.getUntracked() + " books were kept without checking for duplicates"
+                        + " because more than " + options.getDedupCapacity() + " ISBNs were found.");
+            }
+        }
+    }
+
+    /**
+     * Creates the deduplicator of Part 2, if one was requested. Its map is sized for the number of ISBNs
+     * requested, or for the most records the genre files could hold when that is fewer.
+     *
+     * @param options the options giving the policy and the number of ISBNs tracked
+     * @param files   the names of the genre files, without their .txt extension
+     * @return the deduplicator, or null if duplicates are kept
+     */
+    private static IsbnDeduplicator initializeDeduplicator(RunOptions options, String[] files) {
+        if (options.getDedupPolicy() == null) {
+            return null;
+        }
+
+        // A valid record takes at least 26 bytes: one character each for the title, authors and price, ten
+        // for the ISBN, three for the genre, four for the year, five commas and a line break
+        long bytes = 0;
+        for (String file : files) {
+            bytes += new File(file + ".txt").length();
+        }
+        int capacity = (int) Math.min(options.getDedupCapacity(), bytes / 26 + 1);
+        return new IsbnDeduplicator(options.getDedupPolicy(), capacity);
+    }
+
+    /**
+     * Reads every genre file once before Part 2 writes anything, so that the deduplicator knows the best copy
+     * of each ISBN. Records with an error are skipped silently; they are reported by the second pass.
+     *
+     * @param files        the names of the genre files, without their .txt extension
+     * @param deduplicator the deduplicator
+     * @param fileMetrics  the metrics of each genre file, to which the pass is added as deduplication time
+     */
+    private static void scanForDuplicates(String[] files, IsbnDeduplicator deduplicator, FileMetrics[] fileMetrics) {
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        for (int i = 0; i < files.length; i++) {
+            long mark = fileMetrics[i].mark();
+            long cpuStart = fileMetrics[i].cpuTime();
+            long count = 0;
+            long bytes = 0;
+
+            try (Scanner reader = new Scanner(new FileInputStream(files[i] + ".txt"))) {
+                while (reader.hasNextLine()) {
+                    String book = reader.nextLine();
+                    count++;
+                    bytes += book.length() + 1;
+                    tokenizer.tokenize(book);
+
+                    double price = BookValidator.parsePrice(book, tokenizer.start(2), tokenizer.end(2));
+                    int year = BookValidator.parseYear(book, tokenizer.start(5), tokenizer.end(5));
+                    if (validate(tokenizer, price, year) == RecordError.NONE) {
+                        deduplicator.scan(tokenizer.field(3), price, year);
+                    }
+                }
+            } catch (FileNotFoundException e) {
+                // Reported by the second pass
+            }
+            fileMetrics[i].addMeasured(Stage.DEDUPLICATE, count, bytes, mark, cpuStart);
+        }
+    }
+
+    /**
+     * Validates a tokenized book record, reporting any semantic error to the given sink.
+     *
+     * @param tokenizer the tokenizer holding the fields of the record
+     * @param fileName  the name of the genre file the record belongs to, used in error messages
+     * @param sink      the destination of the error messages
+     * @param metrics   the metrics of the file the record comes from, which count its semantic error
+     * @return the book described by the record, or null if the record has a semantic error
+     */
+    static Book validateRecord(CsvTokenizer tokenizer, String fileName, RecordSink sink, FileMetrics metrics) {
+        String book = tokenizer.line();
+
+        double price = BookValidator.parsePrice(book, tokenizer.start(2), tokenizer.end(2));
+        int year = BookValidator.parseYear(book, tokenizer.start(5), tokenizer.end(5));
+
+        // Part 1 only routes records with a known genre, so an unknown one was edited into the genre file
+        Genre genre = Genre.fromField(tokenizer, 4);
+        RecordError error = genre == null ? RecordError.UNKNOWN_GENRE : validate(tokenizer, price, year);
+
+        if (error != RecordError.NONE) {
+            metrics.error(error);
+            String message = error.message(fileName, book);
+            sink.semanticError(message);
+            return null;
+        }
+
+        String title = tokenizer.unquotedField(0); // Remove quotes from title if present
+        return new Book(title, tokenizer.field(1), price, tokenizer.field(3), genre, year);
+    }
+
+    /**
+     * Validates the fields of a book record for semantic errors.
+     *
+     * @param fields the tokenized fields of a book record
+     * @param price  the price parsed from the record
+     * @param year   the year parsed from the record
+     * @return the semantic error found, or {@link RecordError#NONE} if validation succeeds
+     */
+    static RecordError validate(CsvTokenizer fields, double price, int year) {
+        return BookValidator.validate(fields.line(), fields.start(3), fields.end(3), price, year);
+    }
+
+    /**
+     * Opens the binary files of each genre and provides a navigation system to view the data interactively.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_part3() throws IOException {
+        do_part3(new RunOptions(), new RunMetrics(false));
+    }
+
+    /**
+     * Opens the binary files of each genre and provides a navigation system to view the data interactively.
+     * The run ends once the files are open: its metrics are written to the report requested in the options
+     * before the viewer starts, since leaving the viewer ends the program.
+     *
+     * @param options the options naming the run report, if any
+     * @param metrics the metrics of the run
+     * @throws IOException if an I/O error occurs
+     */
+    public static void do_part3(RunOptions options, RunMetrics metrics) throws IOException {
+
+        String[] files = {
+                "Cartoons_Comics_Books.csv.ser",
+                "Hobbies_Collectibles_Books.csv.ser",
+                "Movies_TV.csv.ser",
+                "Music_Radio_Books.csv.ser",
+                "Nostalgia_Eclectic_Books.csv.ser",
+                "Old_Time_Radio.csv.ser",
+                "Sports_Sports_Memorabilia.csv.ser",
+                "Trains_Planes_Automobiles.csv.ser"
+        };
+
+        BookSource[] bookArray = new BookSource[8];
+
+        for (int i = 0; i < 8; i++) {
+            FileMetrics fileMetrics = new FileMetrics(files[i], metrics);
+            fileMetrics.start();
+            long mark = fileMetrics.mark();
+            long cpuStart = fileMetrics.cpuTime();
+            try {
+                bookArray[i] = BookSource.open(files[i], options.getCatalogMode());
+                fileMetrics.addMeasured(Stage.DESERIALIZE, bookArray[i].size(), new File(files[i]).length(), mark, cpuStart);
+                metrics.add(fileMetrics);
+            } catch (IOException e) {
+                System.out.println("Could not open the file " + files[i]);
+            } catch (ClassNotFoundException e) {
+                System.out.println("Invalid class object in " + files[i]);
+            }
+
+        }
+
+        metrics.finish();
+        if (options.getReportFile() != null) {
+            try {
+                metrics.writeReport(Paths.get(options.getReportFile()));
+            } catch (IOException e) {
+                System.out.println("Could not write the run report " + options.getReportFile() + ": " + e.getMessage());
+            }
+        }
+
+        //Go to navigation
+        navigation(bookArray, files);
+    }
+
+    /**
+     * Displays the main menu and handles user input for file selection and navigation.
+     *
+     * @param bookArray an array of book sources containing book records
+     * @param files     an array of file names corresponding to the book records
+     */
+    public static void navigation(BookSource[] bookArray, String[] files){
+        Scanner kb = new Scanner(System.in);
+        int fileIndex = 0;
+        IsbnIndex[] isbnIndexes = null;
+        TextIndex[] textIndexes = null;
+        RangeIndex[] rangeIndexes = null;
+
+        while (true){
+            String mmChoice = displayMainMenu(files[fileIndex] + " " + describeStore(bookArray[fileIndex]), kb);
+            if(mmChoice.equals("s")){
+                int subMenuChoice = displaySubMenu(bookArray, files, kb) - 1;
+                if(subMenuChoice == 8){
+                    continue;
+                }
+                else{
+                    fileIndex = subMenuChoice;
+                    continue;
+                }
+
+            } else if (mmChoice.equals("x")) {
+                System.out.println("You chose to exit, exiting the program.");
+                System.exit(0);
+            } else if (mmChoice.equals("i")) {
+                if (isbnIndexes == null) {
+                    isbnIndexes = openIsbnIndexes(bookArray, files);
+                }
+                int foundIndex = jumpToIsbn(bookArray, files, isbnIndexes, kb);
+                if (foundIndex >= 0) {
+                    fileIndex = foundIndex;
+                }
+            } else if (mmChoice.equals("f")) {
+                if (textIndexes == null) {
+                    textIndexes = openTextIndexes(bookArray, files);
+                }
+                int foundIndex = searchBooks(bookArray, files, textIndexes, kb);
+                if (foundIndex >= 0) {
+                    fileIndex = foundIndex;
+                }
+            } else if (mmChoice.equals("r")) {
+                if (rangeIndexes == null) {
+                    rangeIndexes = openRangeIndexes(bookArray, files);
+                }
+                int foundIndex = findInRanges(bookArray, files, rangeIndexes, kb);
+                if (foundIndex >= 0) {
+                    fileIndex = foundIndex;
+                }
+            } else if (bookArray[fileIndex] == null) {
+                System.out.println("The file " + files[fileIndex] + " could not be opened. Please select another file.");
+            } else {
+                viewFile(bookArray[fileIndex], files[fileIndex] + " " + describeStore(bookArray[fileIndex]), kb);
+                continue;
+            }
+        }
+    }
+
+    /**
+     * Describes a genre store for the menus.
+     *
+     * @param bookFile the store, or null if it could not be opened
+     * @return the number of records in parentheses, or a note that the store could not be opened
+     */
+    private static String describeStore(BookSource bookFile) {
+        return bookFile == null ? "(could not be opened)" : "(" + bookFile.size() + " records)";
+    }
+
+    /**
+     * Displays the main menu and handles user interaction.
+     *
+     * @param fileDetails details about the current file being viewed
+     * @param kb scanner object for user input
+     * @return the user's choice
+     */
+    public static String displayMainMenu(String fileDetails, Scanner kb){
+
+        System.out.println("\n-----------------------------\n" +
+                "         Main Menu         \n"+
+                "-----------------------------\n" +
+                "v View the selected file: " + fileDetails +"\n" +
+                "s Select a file to view\n" +
+                "i Jump to a book by ISBN\n" +
+                "f Find books by title or author\n" +
+                "r Find books by price and year\n" +
+                "x Exit\n" +
+                "-----------------------------\n");
+
+        while (true){
+
+            System.out.print("Enter your choice: ");
+            String choice = kb.nextLine().trim().toLowerCase();
+
+            if (choice.length() == 1 && (choice.equals("v") || choice.equals("s") || choice.equals("i") || choice.equals("f") || choice.equals("r") || choice.equals("x"))) {
+                return choice;
+            }
+            else{
+                System.out.println("Invalid choice. Please enter 'v', 's', 'i', 'f', 'r', or 'x'.");
+            }
+        }
+
+    }
+
+    /**
+     * Displays the file sub-menu and handles user interaction.
+     *
+     * @param bookArray array containing book data
+     * @param files array of file names
+     * @param kb scanner object for user input
+     * @return the user's choice
+     */
+    public static int displaySubMenu(BookSource[] bookArray, String[] files, Scanner kb){
+        String[] options = {
+                "1  Cartoons_Comics_Books.csv.ser  " + describeStore(bookArray[0]),
+                "2  Hobbies_Collectibles_Books.csv.ser  " + describeStore(bookArray[1]),
+                "3  Movies_TV.csv.ser  " + describeStore(bookArray[2]),
+                "4  Music_Radio_Books.csv.ser  " + describeStore(bookArray[3]),
+                "5  Nostalgia_Eclectic_Books.csv.ser  " + describeStore(bookArray[4]),
+                "6  Old_Time_Radio.csv.ser  " + describeStore(bookArray[5]),
+                "7  Sports_Sports_Memorabilia.csv.ser  " + describeStore(bookArray[6]),
+                "8  Trains_Planes_Automobiles.csv.ser  " + describeStore(bookArray[7]),
+                "9  Exit"
+        };
+        System.out.println("\n-----------------------------\n" +
+                "         File Sub-Menu         \n"+
+                "-----------------------------\n");
+
+        for(String option: options){
+            System.out.println(option);
+        }
+        System.out.println("-----------------------------");
+
+        while (true){
+            System.out.println();
+            System.out.print("Enter your choice: ");
+            String choice = kb.nextLine().trim().toLowerCase();
+
+            // Check if the input is a valid number
+            if (!choice.matches("\\d+")) {
+                System.out.println("Invalid choice. Please enter a digit between 1 and 9");
+                continue; // Restart the loop to prompt the user again
+            }
+
+            if (choice.length() > 1) {
+                System.out.println("Invalid choice. Please enter a digit between 1 and 9");
+            } else if ((Integer.parseInt(choice) > 0 && Integer.parseInt(choice) < 10  )) {
+                return Integer.parseInt(choice);
+            } else{
+                System.out.println("Invalid choice. Please enter a digit between 1 and 9");
+            }
+        }
+    }
+
+    /**
+     * Loads or builds the ISBN index of every genre store.
+     *
+     * @param bookArray an array of book sources containing book records
+     * @param files     an array of file names corresponding to the book records
+     * @return the index of each store, null for a store that could not be indexed
+     */
+    private static IsbnIndex[] openIsbnIndexes(BookSource[] bookArray, String[] files) {
+        IsbnIndex[] indexes = new IsbnIndex[bookArray.length];
+        for (int i = 0; i < bookArray.length; i++) {
+            if (bookArray[i] == null) {
+                continue;
+            }
+            try {
+                indexes[i] = IsbnIndex.open(bookArray[i], files[i]);
+            } catch (IOException e) {
+                System.out.println("Could not index the file " + files[i]);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Asks for an ISBN and shows the book with that ISBN, whichever genre it is in. The user can then page
+     * through the book's file from there, as with the view command.
+     *
+     * @param bookArray an array of book sources containing book records
+     * @param files     an array of file names corresponding to the book records
+     * @param indexes   the ISBN index of each store
+     * @param kb        scanner object for user input
+     * @return the index of the file holding the book, or -1 if no book has the ISBN
+     */
+    public static int jumpToIsbn(BookSource[] bookArray, String[] files, IsbnIndex[] indexes, Scanner kb) {
+        String isbn;
+        while (true) {
+            System.out.print("Enter the ISBN: ");
+            isbn = kb.nextLine().trim();
+            if (IsbnIndex.key(isbn) > 0) {
+                break;
+            }
+            System.out.println("Invalid ISBN. Please enter an ISBN of 10 or 13 digits.");
+        }
+
+        for (int i = 0; i < indexes.length; i++) {
+            int bookIndex = indexes[i] == null ? -1 : indexes[i].find(isbn);
+            if (bookIndex >= 0) {
+                System.out.println("Found in " + files[i] + " at record " + (bookIndex + 1));
+                viewFile(bookArray[i], files[i] + " (" + bookArray[i].size() + " records)", kb, bookIndex);
+                return i;
+            }
+        }
+        System.out.println("No book with ISBN " + isbn + " was found.");
+        return -1;
+    }
+
+    /**
+     * Loads or builds the text index of every genre store.
+     *
+     * @param bookArray an array of book sources containing book records
+     * @param files     an array of file names corresponding to the book records
+     * @return the index of each store, null for a store that could not be indexed
+     */
+    private static TextIndex[] openTextIndexes(BookSource[] bookArray, String[] files) {
+        TextIndex[] indexes = new TextIndex[bookArray.length];
+        for (int i = 0; i < bookArray.length; i++) {
+            if (bookArray[i] == null) {
+                continue;
+            }
+            try {
+                indexes[i] = TextIndex.open(bookArray[i], files[i]);
+                if (indexes[i] == null) {
+                    System.out.println("The file " + files[i] + " is too large to search.");
+                }
+            } catch (IOException e) {
+                System.out.println("Could not index the file " + files[i]);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Asks for words and lists the books whose title or authors contain the most of them, in every genre.
+     * The user can then open one of the books and page through its file from there.
+     *
+     * @param bookArray an array of book sources containing book records
+     * @param files     an array of file names corresponding to the book records
+     * @param indexes   the text index of each store
+     * @param kb        scanner object for user input
+     * @return the index of the file holding the book opened, or -1 if none was opened
+     */
+    public static int searchBooks(BookSource[] bookArray, String[] files, TextIndex[] indexes, Scanner kb) {
+        final int maxResults = 20;
+
+        System.out.print("Enter the words to search for: ");
+        String query = kb.nextLine();
+
+        // Keep the best matches of every genre, then rank them together; the sort is stable, so matches
+        // with as many hits stay in genre and record order
+        List<int[]> results = new ArrayList<>();
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] != null) {
+                for (TextIndex.Match match : indexes[i].search(query, maxResults)) {
+                    results.add(new int[]{i, match.getRecord(), match.getHits()});
+                }
+            }
+        }
+        results.sort((a, b) -> Integer.compare(b[2], a[2]));
+        if (results.size() > maxResults) {
+            results = results.subList(0, maxResults);
+        }
+
+        if (results.isEmpty()) {
+            System.out.println("No book matches " + query.trim() + ".");
+            return -1;
+        }
+
+        System.out.println();
+        for (int i = 0; i < results.size(); i++) {
+            int[] result = results.get(i);
+            Book book = bookArray[result[0]].get(result[1]);
+            System.out.println((i + 1) + "  " + book.getTitle() + " by " + book.getAuthors()
+                    + "  (" + files[result[0]] + ", record " + (result[1] + 1) + ")");
+        }
+
+        while (true) {
+            System.out.println();
+            System.out.print("Enter a result number to view it, or 0 to go back: ");
+            String choice = kb.nextLine().trim();
+            int number;
+            try {
+                number = Integer.parseInt(choice);
+            } catch (NumberFormatException e) {
+                number = -1;
+            }
+
+            if (number == 0) {
+                return -1;
+            } else if (number > 0 && number <= results.size()) {
+                int[] result = results.get(number - 1);
+                BookSource bookFile = bookArray[result[0]];
+                viewFile(bookFile, files[result[0]] + " (" + bookFile.size() + " records)", kb, result[1]);
+                return result[0];
+            }
+            System.out.println("Invalid choice. Please enter a number between 0 and " + results.size());
+        }
+    }
+
+    /**
+     * Loads or builds the price and year indexes of every genre store.
+     *
+     * @param bookArray an array of book sources containing book records
+     * @param files     an array of file names corresponding to the book records
+     * @return the indexes of each store, null for a store that could not be indexed
+     */
+    private static RangeIndex[] openRangeIndexes(BookSource[] bookArray, String[] files) {
+        RangeIndex[] indexes = new RangeIndex[bookArray.length];
+        for (int i = 0; i < bookArray.length; i++) {
+            if (bookArray[i] == null) {
+                continue;
+            }
+            try {
+                indexes[i] = RangeIndex.open(bookArray[i], files[i]);
+            } catch (IOException e) {
+                System.out.println("Could not index the file " + files[i]);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Asks for a genre and for price and year limits, and lists the books within all of them. The user can
+     * then open one of the books and page through its file from there.
+     *
+     * @param bookArray an array of book sources containing book records
+     * @param files     an array of file names corresponding to the book records
+     * @param indexes   the price and year indexes of each store
+     * @param kb        scanner object for user input
+     * @return the index of the file holding the book opened, or -1 if none was opened
+     */
+    public static int findInRanges(BookSource[] bookArray, String[] files, RangeIndex[] indexes, Scanner kb) {
+        final int maxResults = 20;
+
+        int genre;
+        while (true) {
+            System.out.print("Enter a file number (1-" + indexes.length + "), or 0 for every file: ");
+            try {
+                genre = Integer.parseInt(kb.nextLine().trim());
+                if (genre >= 0 && genre <= indexes.length) {
+                    break;
+                }
+            } catch (NumberFormatException e) {
+                // asked again below
+            }
+            System.out.println("Invalid choice. Please enter a number between 0 and " + indexes.length);
+        }
+
+        double minPrice = readLimit("Enter the lowest price", Double.NEGATIVE_INFINITY, kb);
+        double maxPrice = readLimit("Enter the highest price", Double.POSITIVE_INFINITY, kb);
+        double minYear = readLimit("Enter the earliest year", Double.NEGATIVE_INFINITY, kb);
+        double maxYear = readLimit("Enter the latest year", Double.POSITIVE_INFINITY, kb);
+
+        List<RangeIndex.Range> ranges = new ArrayList<>();
+        if (minPrice > Double.NEGATIVE_INFINITY || maxPrice < Double.POSITIVE_INFINITY) {
+            ranges.add(new RangeIndex.Range(RangeIndex.Attribute.PRICE, minPrice, maxPrice));
+        }
+        if (minYear > Double.NEGATIVE_INFINITY || maxYear < Double.POSITIVE_INFINITY) {
+            ranges.add(new RangeIndex.Range(RangeIndex.Attribute.YEAR, minYear, maxYear));
+        }
+
+        // Results are {file, record}, in file and record order
+        List<int[]> results = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] != null && (genre == 0 || genre == i + 1)) {
+                int[] records = indexes[i].find(ranges);
+                total += records.length;
+                for (int j = 0; j < records.length && results.size() < maxResults; j++) {
+                    results.add(new int[]{i, records[j]});
+                }
+            }
+        }
+
+        if (results.isEmpty()) {
+            System.out.println("No book is within these limits.");
+            return -1;
+        }
+
+        System.out.println();
+        System.out.println(total + " books match" + (total > results.size() ? ", showing the first " + results.size() : "") + ".");
+        for (int i = 0; i < results.size(); i++) {
+            int[] result = results.get(i);
+            RangeIndex index = indexes[result[0]];
+            Book book = bookArray[result[0]].get(result[1]);
+            System.out.println((i + 1) + "  " + book.getTitle() + ", " + index.getYear(result[1]) + ", $"
+                    + index.getPrice(result[1]) + "  (" + files[result[0]] + ", record " + (result[1] + 1) + ")");
+        }
+
+        while (true) {
+            System.out.println();
+            System.out.print("Enter a result number to view it, or 0 to go back: ");
+            String choice = kb.nextLine().trim();
+            int number;
+            try {
+                number = Integer.parseInt(choice);
+            } catch (NumberFormatException e) {
+                number = -1;
+            }
+
+            if (number == 0) {
+                return -1;
+            } else if (number > 0 && number <= results.size()) {
+                int[] result = results.get(number - 1);
+                BookSource bookFile = bookArray[result[0]];
+                viewFile(bookFile, files[result[0]] + " (" + bookFile.size() + " records)", kb, result[1]);
+                return result[0];
+            }
+            System.out.println("Invalid choice. Please enter a number between 0 and " + results.size());
+        }
+    }
+
+    /**
+     * Asks for one limit of a range until a number or nothing is entered.
+     *
+     * @param prompt       the question asked
+     * @param defaultValue the limit returned when nothing is entered
+     * @param kb           scanner object for user input
+     * @return the limit entered, or the default value
+     */
+    private static double readLimit(String prompt, double defaultValue, Scanner kb) {
+        while (true) {
+            System.out.print(prompt + ", or leave it blank for no limit: ");
+            String value = kb.nextLine().trim();
+            if (value.isEmpty()) {
+                return defaultValue;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number: " + value);
+            }
+        }
+    }
+
+    /**
+     * Allows users to view the contents of a file interactively.
+     *
+     * @param bookFile   source of the book data from the selected file
+     * @param fileString string representation of the file being viewed
+     * @param kb         scanner object for user input
+     */
+    public static void viewFile(BookSource bookFile, String fileString, Scanner kb){
+        viewFile(bookFile, fileString, kb, 0);
+    }
+
+    /**
+     * Allows users to view the contents of a file interactively, starting at a given book.
+     *
+     * @param bookFile   source of the book data from the selected file
+     * @param fileString string representation of the file being viewed
+     * @param kb         scanner object for user input
+     * @param startIndex the index of the book shown first
+     */
+    public static void viewFile(BookSource bookFile, String fileString, Scanner kb, int startIndex){
+        System.out.println("\nviewing: " + fileString);
+        int size = bookFile.size();
+        int currentBookIndex = startIndex;
+        int lastBookIndex = startIndex;
+        int topBookIndex = startIndex;
+        boolean eof = false;
+        boolean bof = false;
+
+        while (true){
+
+            System.out.println();
+
+            if(bof){
+                System.out.println("BOF has been reached\n");
+            }
+
+            for(int i = topBookIndex; i < lastBookIndex+1; i++){
+                Book bk = bookFile.get(i);
+                System.out.println(bk.toString());
+            }
+
+            if(eof){
+                System.out.println("EOF has been reached");
+            }
+
+            int n;
+
+            while (true) {
+                System.out.print("Enter n ");
+                String userInput = kb.nextLine();
+
+                try {
+                    n = Integer.parseInt(userInput);
+                    break;
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid input. Please enter a valid integer.");
+                }
+            }
+
+            if(n == 0){
+                break;
+            }
+            else if (n > 0) {
+                if (n == 1) {
+                    topBookIndex = currentBookIndex;
+                    lastBookIndex = currentBookIndex;
+                    eof = false;
+                    bof = false;
+                }
+                else{
+                    if((currentBookIndex + n - 1) > size-1){
+                        topBookIndex = currentBookIndex;
+                        lastBookIndex = (size - 1);
+                        currentBookIndex = lastBookIndex;
+                        eof = true;
+                        bof = false;
+                    }
+                    else{
+                        topBookIndex = currentBookIndex;
+                        lastBookIndex = currentBookIndex + n - 1;
+                        currentBookIndex = lastBookIndex;
+                        eof = false;
+                        bof = false;
+                    }
+                }
+
+            } else {
+                if (n == -1) {
+                    topBookIndex = currentBookIndex;
+                    lastBookIndex = currentBookIndex;
+                    eof = false;
+                    bof = false;
+                }
+                else{
+                    if (currentBookIndex + n + 1 < 0){
+                        lastBookIndex = currentBookIndex;
+                        topBookIndex = 0;
+                        currentBookIndex = topBookIndex;
+                        bof = true;
+                        eof = false;
+                    }
+                    else{
+                        lastBookIndex = currentBookIndex;
+                        topBookIndex = currentBookIndex + n + 1;
+                        currentBookIndex = topBookIndex;
+                        bof = false;
+                        eof = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Main method to execute the book processing functionalities.
+     *
+     * @param args command-line arguments, see {@link RunOptions}
+     * @throws IOException if an I/O error occurs
+     */
+    public static void main(String[] args) throws IOException {
+        RunOptions options;
+        try {
+            options = RunOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.print("Program will terminate.");
+            System.exit(0);
+            return;
+        }
+
+        RunMetrics metrics = new RunMetrics(options.getReportFile() != null || options.isJmx());
+        if (options.isJmx()) {
+            try {
+                metrics.register();
+            } catch (JMException e) {
+                System.out.println("Could not publish the run metrics through JMX: " + e.getMessage());
+            }
+        }
+
+        if (options.isWatch()) {
+            do_watch(options, metrics);
+            return;
+        }
+        if (options.isIncremental()) {
+            do_incremental(options, metrics);
+        } else if (options.isFused()) {
+            do_fused(options, metrics);
+        } else if (options.isPipeline()) {
+            do_pipeline(options, metrics);
+        } else if (options.isCheckpointed()) {
+            do_checkpointed(options, metrics);
+        } else {
+            do_part1(options, metrics);
+            do_part2(options, metrics);
+        }
+        do_part3(options, metrics);
+    }
+}
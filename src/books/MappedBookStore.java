@@ -0,0 +1,199 @@
+package books;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A book source that memory-maps a genre store and decodes books only when they are asked for.
+ * <p>
+ * Opening a store only reads its header and authors dictionary, never its records. The offset of every
+ * {@value #STRIDE}th record is remembered the first time the records before it are passed over, so
+ * reaching any record means skipping at most {@value #STRIDE} records from the nearest remembered offset,
+ * and reading the books in order moves straight from one record to the next. Files larger than 2 GB are
+ * mapped as several segments. The strings of the dictionary are shared by the books returned.
+ */
+class MappedBookStore implements BookSource {
+
+    /** The number of records between two remembered offsets. */
+    static final int STRIDE = 256;
+
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final MappedByteBuffer[] segments;
+    private final long fileSize;
+    private final int size;
+    private final String[] authors;
+
+    private long[] checkpoints;
+    private int checkpointCount;
+
+    private int lastIndex = -1;
+    private long lastOffset;
+
+    private byte[] record = new byte[256];
+
+    /**
+     * Checks whether the given file starts with the header of a binary book store.
+     *
+     * @param fileName the name of the file
+     * @return true if the file is a binary book store
+     * @throws IOException if the file could not be read
+     */
+    static boolean isBookStore(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // keep reading until the magic number is complete or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == BookStoreFormat.MAGIC;
+        }
+    }
+
+    /**
+     * Maps a genre store into memory, and reads its dictionary if it has one.
+     *
+     * @param fileName the name of the store file
+     * @throws IOException if the file could not be mapped or is not a supported book store
+     */
+    public MappedBookStore(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            if (fileSize < BookStoreFormat.HEADER_SIZE) {
+                throw new IOException(fileName + " is not a book store");
+            }
+
+            segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, fileSize - position));
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(read(0, BookStoreFormat.HEADER_SIZE), 0, BookStoreFormat.HEADER_SIZE);
+        if (header.getInt() != BookStoreFormat.MAGIC) {
+            throw new IOException(fileName + " is not a book store");
+        }
+        short version = header.getShort();
+        if (version != BookStoreFormat.VERSION && version != BookStoreFormat.DICTIONARY_VERSION) {
+            throw new IOException(fileName + " has unsupported book store version " + version);
+        }
+        header.getShort();
+        long recordCount = header.getLong();
+        if (recordCount > Integer.MAX_VALUE) {
+            throw new IOException(fileName + " has too many books to view: " + recordCount);
+        }
+
+        int headerSize = BookStoreFormat.headerSize(version);
+        if (version == BookStoreFormat.DICTIONARY_VERSION) {
+            long dictionaryOffset = ByteBuffer.wrap(read(BookStoreFormat.DICTIONARY_OFFSET_OFFSET, Long.BYTES), 0, Long.BYTES).getLong();
+            long dictionarySize = fileSize - dictionaryOffset;
+            if (dictionaryOffset < headerSize || dictionarySize < Integer.BYTES || dictionarySize > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " has no valid dictionary");
+            }
+            try {
+                authors = BookStoreFormat.readDictionary(ByteBuffer.wrap(read(dictionaryOffset, (int) dictionarySize), 0, (int) dictionarySize));
+            } catch (RuntimeException e) {
+                throw new IOException(fileName + " has no valid dictionary", e);
+            }
+            // The dictionary is only needed once, so the buffer it was copied into is not kept
+            record = new byte[256];
+        } else {
+            authors = null;
+        }
+
+        size = (int) recordCount;
+        checkpoints = new long[16];
+        checkpoints[0] = headerSize;
+        checkpointCount = 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Book get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " books");
+        }
+
+        long offset = offsetOf(index);
+        int length = readInt(offset);
+        ByteBuffer buffer = ByteBuffer.wrap(read(offset + Integer.BYTES, length), 0, length);
+        return authors == null ? BookStoreFormat.decode(buffer) : BookStoreFormat.decode(buffer, authors);
+    }
+
+    /**
+     * Returns the offset in the file of the record at the given index.
+     *
+     * @param index the index of the record
+     * @return the offset of the record's length prefix
+     */
+    long offsetOf(int index) {
+        if (index == lastIndex + 1 && lastIndex >= 0) {
+            lastOffset = skip(lastOffset, 1);
+            lastIndex = index;
+            return lastOffset;
+        }
+
+        int checkpoint = index / STRIDE;
+
+        // Extend the remembered offsets up to the checkpoint at or before the index
+        while (checkpointCount <= checkpoint) {
+            long offset = skip(checkpoints[checkpointCount - 1], STRIDE);
+            if (checkpointCount == checkpoints.length) {
+                long[] temp = new long[checkpoints.length * 2];
+                System.arraycopy(checkpoints, 0, temp, 0, checkpoints.length);
+                checkpoints = temp;
+            }
+            checkpoints[checkpointCount++] = offset;
+        }
+
+        lastOffset = skip(checkpoints[checkpoint], index % STRIDE);
+        lastIndex = index;
+        return lastOffset;
+    }
+
+    private long skip(long offset, int records) {
+        for (int i = 0; i < records; i++) {
+            offset += Integer.BYTES + readInt(offset);
+        }
+        return offset;
+    }
+
+    private int readInt(long position) {
+        int segment = (int) (position / SEGMENT_SIZE);
+        int offset = (int) (position % SEGMENT_SIZE);
+        if (offset + Integer.BYTES <= segments[segment].limit()) {
+            return segments[segment].getInt(offset);
+        }
+        return ByteBuffer.wrap(read(position, Integer.BYTES), 0, Integer.BYTES).getInt();
+    }
+
+    /**
+     * Copies bytes from the mapped file into the record buffer, crossing segment boundaries if needed.
+     */
+    private byte[] read(long position, int length) {
+        if (position + length > fileSize) {
+            throw new IllegalStateException("Book store is truncated at offset " + position);
+        }
+        if (length > record.length) {
+            record = new byte[Math.max(length, record.length * 2)];
+        }
+
+        int copied = 0;
+        while (copied < length) {
+            int segment = (int) ((position + copied) / SEGMENT_SIZE);
+            int offset = (int) ((position + copied) % SEGMENT_SIZE);
+            int chunk = Math.min(length - copied, segments[segment].limit() - offset);
+            segments[segment].get(offset, record, copied, chunk);
+            copied += chunk;
+        }
+        return record;
+    }
+}
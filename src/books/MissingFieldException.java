@@ -0,0 +1,18 @@
+package books;
+
+/**
+ * Exception thrown when a required field is missing in a record.
+ */
+class MissingFieldException extends RecordException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new MissingFieldException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public MissingFieldException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,432 @@
+package books;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs Parts 1 and 2 as a pipeline of stages on their own threads, connected by {@link BoundedQueue}s.
+ * <p>
+ * A reader thread reads the input files in order and cuts their lines into numbered batches. Parser threads
+ * take batches as they come and check, route and validate their records exactly as the fused mode does,
+ * buffering the outcome of each batch. A collector, on the calling thread, puts the batches back in order,
+ * writes their error messages and hands the records and books of each genre to that genre's writer thread,
+ * which writes the genre store and, with {@code --debug-csv}, the genre CSV file. The outputs are therefore
+ * the same as those of the fused mode, whatever the number of parsers.
+ * <p>
+ * Memory stays bounded: the reader waits while {@value #BATCHES_PER_PARSER} batches per parser are between
+ * it and the collector, and the collector waits when a writer falls {@value #CHUNKS_PER_WRITER} batches
+ * behind. Lines are split at line feeds, carriage returns or both, as Part 1 splits the usual input files.
+ */
+class PipelineBuild {
+
+    /** The number of lines in a batch. */
+    static final int BATCH_SIZE = 1024;
+
+    private static final int BATCHES_PER_PARSER = 8;
+    private static final int CHUNKS_PER_WRITER = 16;
+
+    /** Tells a parser or writer that no more work will follow. */
+    private static final Batch STOP_BATCH = new Batch(-1, null, null, 0);
+    private static final Chunk STOP_CHUNK = new Chunk();
+
+    private final String[][] genreToFileMapping;
+    private final int parsers;
+    private final RunMetrics metrics;
+    private final PrintWriter[] recordWriters;
+    private final BookStoreWriter[] bookWriters;
+    private final ErrorSink syntaxErrors;
+    private final ErrorSink semanticErrors;
+    private final PrintStream console;
+
+    private final int maxInFlight;
+    private final BoundedQueue<Batch> parseQueue;
+    private final BoundedQueue<Batch> doneQueue;
+    private final List<BoundedQueue<Chunk>> writeQueues = new ArrayList<>();
+    private final AtomicLong collected = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile Thread collector;
+    private final long[] bookCounts = new long[8];
+
+    /**
+     * Constructs a new PipelineBuild writing to the given outputs.
+     *
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @param parsers            the number of parser threads
+     * @param metrics            the metrics of the run
+     * @param recordWriters      the writers of the genre CSV files, or null
+     * @param bookWriters        the stores the validated books of each genre are written to
+     * @param syntaxErrors       the sink of the syntax error file, or null
+     * @param semanticErrors     the sink of the semantic error file
+     * @param console            the stream used for console messages
+     */
+    PipelineBuild(String[][] genreToFileMapping, int parsers, RunMetrics metrics, PrintWriter[] recordWriters,
+                  BookStoreWriter[] bookWriters, ErrorSink syntaxErrors, ErrorSink semanticErrors, PrintStream console) {
+        this.genreToFileMapping = genreToFileMapping;
+        this.parsers = parsers;
+        this.metrics = metrics;
+        this.recordWriters = recordWriters;
+        this.bookWriters = bookWriters;
+        this.syntaxErrors = syntaxErrors;
+        this.semanticErrors = semanticErrors;
+        this.console = console;
+
+        maxInFlight = parsers * BATCHES_PER_PARSER;
+        parseQueue = new BoundedQueue<>(maxInFlight + parsers);
+        doneQueue = new BoundedQueue<>(maxInFlight + 1);
+        for (int i = 0; i < 8; i++) {
+            writeQueues.add(new BoundedQueue<>(CHUNKS_PER_WRITER));
+        }
+    }
+
+    /**
+     * Processes the input files through the pipeline and waits until every output has been handed to its
+     * writer. The outputs are not closed.
+     *
+     * @param fileNames the input file names, in the order they are listed
+     * @throws IOException if an I/O error occurs in any stage
+     */
+    void run(List<String> fileNames) throws IOException {
+        collector = Thread.currentThread();
+        start("pipeline-reader", () -> read(fileNames));
+        for (int i = 0; i < parsers; i++) {
+            start("pipeline-parser-" + (i + 1), this::parse);
+        }
+        for (int i = 0; i < 8; i++) {
+            int genre = i;
+            start("pipeline-writer-" + genreToFileMapping[1][i], () -> write(genre));
+        }
+
+        try {
+            collect();
+            for (BoundedQueue<Chunk> queue : writeQueues) {
+                queue.put(STOP_CHUNK);
+            }
+        } catch (InterruptedException e) {
+            // Another stage failed and stopped the pipeline; its failure is reported below
+        } catch (IOException | RuntimeException | Error e) {
+            fail(e);
+        }
+
+        boolean interrupted = Thread.interrupted();
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted && failure.get() == null) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable cause = failure.get();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause != null) {
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Returns the number of validated books written to a genre store.
+     *
+     * @param genreIndex the index of the genre in the genre-to-file mapping
+     * @return the number of books
+     */
+    long getBookCount(int genreIndex) {
+        return bookCounts[genreIndex];
+    }
+
+    /**
+     * Reads the input files into batches of lines. The last batch of each file carries the metrics of
+     * reading it, and a batch with no lines and a message stands for a file that could not be opened.
+     */
+    private void read(List<String> fileNames) throws IOException, InterruptedException {
+        long sequence = 0;
+        for (String fileName : fileNames) {
+            FileMetrics readMetrics = new FileMetrics(fileName, metrics);
+            BufferedReader in;
+            try {
+                in = new BufferedReader(new InputStreamReader(new FileInputStream(fileName.trim())), 64 * 1024);
+            } catch (FileNotFoundException e) {
+                Batch batch = new Batch(sequence, fileName, new String[0], 0);
+                batch.message = "Could not find file " + fileName + ", moving on to the next input file.\n";
+                submit(batch);
+                sequence++;
+                continue;
+            }
+
+            try (in) {
+                long mark = readMetrics.start();
+                String[] lines = new String[BATCH_SIZE];
+                int size = 0;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lines[size++] = line;
+                    mark = readMetrics.read(mark, line.length() + 1);
+                    if (size == BATCH_SIZE) {
+                        submit(new Batch(sequence++, fileName, lines, size));
+                        lines = new String[BATCH_SIZE];
+                        size = 0;
+                        mark = readMetrics.mark();
+                    }
+                }
+                readMetrics.finish();
+
+                Batch last = new Batch(sequence++, fileName, lines, size);
+                last.readMetrics = readMetrics;
+                submit(last);
+            }
+        }
+
+        // The end of the input goes straight to the collector, numbered after the last batch
+        doneQueue.put(new Batch(sequence, null, null, 0));
+        for (int i = 0; i < parsers; i++) {
+            parseQueue.put(STOP_BATCH);
+        }
+    }
+
+    /**
+     * Hands a batch to the parsers once fewer than the most batches allowed in flight are still to be
+     * collected.
+     */
+    private void submit(Batch batch) throws InterruptedException {
+        for (int attempt = 0; batch.sequence - collected.get() >= maxInFlight; attempt++) {
+            BoundedQueue.backOff(attempt);
+        }
+        parseQueue.put(batch);
+    }
+
+    /**
+     * Classifies the records of batches until told to stop.
+     */
+    private void parse() throws IOException, InterruptedException {
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        while (true) {
+            Batch batch = parseQueue.take();
+            if (batch == STOP_BATCH) {
+                return;
+            }
+            FileMetrics batchMetrics = new FileMetrics(batch.fileName, metrics);
+            BufferedRecordSink output = new BufferedRecordSink(8);
+            long mark = batchMetrics.start();
+            for (int i = 0; i < batch.size; i++) {
+                long recordStart = mark;
+                mark = Main.classifyRecord(batch.fileName, batch.lines[i], genreToFileMapping, tokenizer, true,
+                        output, batchMetrics, mark);
+                batchMetrics.recordDone(recordStart, mark);
+            }
+            batchMetrics.finish();
+
+            batch.output = output;
+            batch.metrics = batchMetrics;
+            doneQueue.put(batch);
+        }
+    }
+
+    /**
+     * Takes the parsed batches, puts them back in input order and passes on their outputs, until the end of
+     * the input.
+     */
+    private void collect() throws IOException, InterruptedException {
+        Map<Long, Batch> early = new HashMap<>();
+        FileMetrics fileMetrics = null;
+
+        while (true) {
+            Batch batch = early.remove(collected.get());
+            if (batch == null) {
+                Batch next = doneQueue.take();
+                if (next.sequence != collected.get()) {
+                    early.put(next.sequence, next);
+                    continue;
+                }
+                batch = next;
+            }
+            if (batch.fileName == null) {
+                return;
+            }
+
+            if (batch.message != null) {
+                console.println(batch.message);
+                metrics.add(new FileMetrics(batch.fileName, metrics));
+            } else {
+                if (fileMetrics == null) {
+                    fileMetrics = new FileMetrics(batch.fileName, metrics);
+                }
+                fileMetrics.add(batch.metrics);
+
+                long mark = fileMetrics.mark();
+                long cpuStart = fileMetrics.cpuTime();
+                Dispatch dispatch = new Dispatch();
+                batch.output.replayTo(dispatch);
+                for (int i = 0; i < 8; i++) {
+                    if (dispatch.chunks[i] != null) {
+                        writeQueues.get(i).put(dispatch.chunks[i]);
+                    }
+                }
+                fileMetrics.addMeasured(Stage.SERIALIZE, 0, 0, mark, cpuStart);
+
+                if (batch.readMetrics != null) {
+                    fileMetrics.add(batch.readMetrics);
+                    metrics.add(fileMetrics);
+                    fileMetrics = null;
+                }
+            }
+            // Lets the reader hand out one more batch
+            collected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes the records and books of one genre until told to stop.
+     */
+    private void write(int genre) throws IOException, InterruptedException {
+        BoundedQueue<Chunk> queue = writeQueues.get(genre);
+        while (true) {
+            Chunk chunk = queue.take();
+            if (chunk == STOP_CHUNK) {
+                return;
+            }
+            if (recordWriters != null) {
+                for (String record : chunk.records) {
+                    recordWriters[genre].println(record);
+                }
+            }
+            for (Book book : chunk.books) {
+                bookWriters[genre].write(book);
+            }
+        }
+    }
+
+    private void start(String name, Step step) {
+        Thread thread = new Thread(() -> {
+            try {
+                step.run();
+            } catch (InterruptedException e) {
+                // Stopped because another stage failed
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }, name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Records the first failure of a stage and stops every stage, so that none waits forever on a queue.
+     */
+    private void fail(Throwable cause) {
+        if (failure.compareAndSet(null, cause)) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            collector.interrupt();
+        }
+    }
+
+    /**
+     * The work of one stage thread.
+     */
+    @FunctionalInterface
+    private interface Step {
+        void run() throws IOException, InterruptedException;
+    }
+
+    /**
+     * A run of consecutive lines of one input file, and once parsed their outputs.
+     */
+    private static final class Batch {
+
+        final long sequence;
+        final String fileName;
+        final String[] lines;
+        final int size;
+        String message;
+        FileMetrics readMetrics;
+        BufferedRecordSink output;
+        FileMetrics metrics;
+
+        Batch(long sequence, String fileName, String[] lines, int size) {
+            this.sequence = sequence;
+            this.fileName = fileName;
+            this.lines = lines;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The records and books of one genre from one batch.
+     */
+    private static final class Chunk {
+
+        final List<String> records = new ArrayList<>();
+        final List<Book> books = new ArrayList<>();
+    }
+
+    /**
+     * Sorts the replayed outputs of a batch: records and books into chunks per genre, errors to the error
+     * files and messages to the console.
+     */
+    private final class Dispatch implements RecordSink {
+
+        final Chunk[] chunks = new Chunk[8];
+
+        @Override
+        public void record(int genreIndex, String record) {
+            chunk(genreIndex).records.add(record);
+        }
+
+        @Override
+        public void book(int genreIndex, Book book) {
+            chunk(genreIndex).books.add(book);
+            bookCounts[genreIndex]++;
+        }
+
+        @Override
+        public void syntaxError(String message) {
+            if (syntaxErrors != null) {
+                syntaxErrors.log(message);
+            }
+        }
+
+        @Override
+        public void semanticError(String message) {
+            semanticErrors.log(message);
+        }
+
+        @Override
+        public void message(String message) {
+            console.println(message);
+        }
+
+        private Chunk chunk(int genreIndex) {
+            if (chunks[genreIndex] == null) {
+                chunks[genreIndex] = new Chunk();
+            }
+            return chunks[genreIndex];
+        }
+    }
+}
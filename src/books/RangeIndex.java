@@ -0,0 +1,638 @@
+package books;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Secondary indexes over the price and year of the books of a genre store, for range queries such as
+ * "from 2003 to 2007 and under $20".
+ * <p>
+ * The price and year of every record are kept as primitive columns indexed by record number, and for each
+ * of the two attributes the record numbers are also kept sorted by that attribute. A range is then two
+ * binary searches in the sorted record numbers. Several ranges are intersected by taking the records of the
+ * most selective range and checking the other ranges against the columns, so a selective query only
+ * touches the records it returns.
+ * <p>
+ * The indexes are built while Part 2 writes the store (see {@link BookStoreWriter}) and saved next to it as
+ * {@code <store>.ranges}, together with the size and modification time of the store. A store written some
+ * other way, such as by an incremental run, is indexed the first time it is queried.
+ */
+final class RangeIndex {
+
+    /** The extension added to the name of a store to name its saved indexes. */
+    static final String EXTENSION = ".ranges";
+
+    private static final int MAGIC = 0x524E4745; // "RNGE"
+    private static final short VERSION = 1;
+
+    /**
+     * The attributes that can be queried.
+     */
+    enum Attribute {
+        PRICE,
+        YEAR
+    }
+
+    /**
+     * An inclusive range of values of one attribute.
+     */
+    static final class Range {
+
+        private final Attribute attribute;
+        private final double min;
+        private final double max;
+
+        /**
+         * Constructs a range.
+         *
+         * @param attribute the attribute
+         * @param min       the smallest value in the range
+         * @param max       the largest value in the range
+         */
+        Range(Attribute attribute, double min, double max) {
+            this.attribute = attribute;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * Returns the attribute of the range.
+         *
+         * @return the attribute
+         */
+        Attribute getAttribute() {
+            return attribute;
+        }
+
+        /**
+         * Returns the smallest value in the range.
+         *
+         * @return the lower bound, inclusive
+         */
+        double getMin() {
+            return min;
+        }
+
+        /**
+         * Returns the largest value in the range.
+         *
+         * @return the upper bound, inclusive
+         */
+        double getMax() {
+            return max;
+        }
+    }
+
+    private final double[] prices;
+    private final short[] years;
+    private final int[] byPrice;
+    private final int[] byYear;
+
+    private RangeIndex(double[] prices, short[] years, int[] byPrice, int[] byYear) {
+        this.prices = prices;
+        this.years = years;
+        this.byPrice = byPrice;
+        this.byYear = byYear;
+    }
+
+    /**
+     * Returns the indexes of a store, loading the saved indexes if they match the store and otherwise
+     * building them from the books of the store and saving them.
+     *
+     * @param source    the opened store
+     * @param storeFile the name of the store file
+     * @return the indexes of the store
+     * @throws IOException if the store could not be read
+     */
+    static RangeIndex open(BookSource source, String storeFile) throws IOException {
+        Path store = Path.of(storeFile);
+        RangeIndex index = load(Path.of(storeFile + EXTENSION), Files.size(store),
+                Files.getLastModifiedTime(store).toMillis(), source.size());
+        if (index != null) {
+            return index;
+        }
+
+        double[] prices = new double[source.size()];
+        short[] years = new short[source.size()];
+        for (int i = 0; i < prices.length; i++) {
+            Book book = source.get(i);
+            prices[i] = book.getPrice();
+            years[i] = (short) book.getYear();
+        }
+        index = new RangeIndex(prices, years, sortByPrice(prices), sortByYear(years));
+        try {
+            index.save(store);
+        } catch (IOException e) {
+            // The indexes still work for this run; they are just built again next time
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of records in a range, without touching the records.
+     *
+     * @param range the range
+     * @return the number of records whose attribute is in the range
+     */
+    int count(Range range) {
+        int[] sorted = sorted(range.getAttribute());
+        return Math.max(0, upperBound(sorted, range) - lowerBound(sorted, range));
+    }
+
+    /**
+     * Finds the records in every one of the given ranges.
+     *
+     * @param ranges the ranges, which all have to hold; an empty list matches every record
+     * @return the matching records, in store order
+     */
+    int[] find(List<Range> ranges) {
+        if (ranges.isEmpty()) {
+            int[] all = new int[prices.length];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+
+        // Start from the range with the fewest records and check the others against the columns
+        Range driver = ranges.get(0);
+        for (Range range : ranges) {
+            if (count(range) < count(driver)) {
+                driver = range;
+            }
+        }
+
+        int[] sorted = sorted(driver.getAttribute());
+        int from = lowerBound(sorted, driver);
+        int to = Math.max(from, upperBound(sorted, driver));
+        int[] matches = new int[to - from];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int record = sorted[i];
+            boolean inAll = true;
+            for (Range range : ranges) {
+                if (range != driver) {
+                    double value = value(range.getAttribute(), record);
+                    if (value < range.getMin() || value > range.getMax()) {
+                        inAll = false;
+                        break;
+                    }
+                }
+            }
+            if (inAll) {
+                matches[count++] = record;
+            }
+        }
+
+        int[] result = Arrays.copyOf(matches, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the price of a record.
+     *
+     * @param record the index of the record in the store
+     * @return the price
+     */
+    double getPrice(int record) {
+        return prices[record];
+    }
+
+    /**
+     * Returns the year of a record.
+     *
+     * @param record the index of the record in the store
+     * @return the year
+     */
+    int getYear(int record) {
+        return years[record];
+    }
+
+    private int[] sorted(Attribute attribute) {
+        return attribute == Attribute.PRICE ? byPrice : byYear;
+    }
+
+    private double value(Attribute attribute, int record) {
+        return attribute == Attribute.PRICE ? prices[record] : years[record];
+    }
+
+    /**
+     * Returns the first position in the sorted records whose value is not below the range.
+     */
+    private int lowerBound(int[] sorted, Range range) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (value(range.getAttribute(), sorted[middle]) < range.getMin()) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the first position in the sorted records whose value is above the range.
+     */
+    private int upperBound(int[] sorted, Range range) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (value(range.getAttribute(), sorted[middle]) <= range.getMax()) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static RangeIndex load(Path file, long storeSize, long storeModified, int recordCount) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return null;
+            }
+            in.readShort();
+            if (in.readLong() != storeSize || in.readLong() != storeModified || in.readInt() != recordCount) {
+                return null;
+            }
+
+            double[] prices = new double[recordCount];
+            short[] years = new short[recordCount];
+            int[] byPrice = new int[recordCount];
+            int[] byYear = new int[recordCount];
+            for (int i = 0; i < recordCount; i++) {
+                prices[i] = in.readDouble();
+            }
+            for (int i = 0; i < recordCount; i++) {
+                years[i] = in.readShort();
+            }
+            for (int i = 0; i < recordCount; i++) {
+                byPrice[i] = in.readInt();
+            }
+            for (int i = 0; i < recordCount; i++) {
+                byYear[i] = in.readInt();
+            }
+            return new RangeIndex(prices, years, byPrice, byYear);
+        } catch (IOException | RuntimeException e) {
+            // Damaged indexes are simply built again
+            return null;
+        }
+    }
+
+    /**
+     * Saves the indexes next to a store that has been completely written and closed.
+     */
+    private void save(Path store) throws IOException {
+        Path file = store.resolveSibling(store.getFileName() + EXTENSION);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (OutputStream stream = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+            writeHeader(out, store, prices.length);
+            for (double price : prices) {
+                out.writeDouble(price);
+            }
+            for (short year : years) {
+                out.writeShort(year);
+            }
+            for (int record : byPrice) {
+                out.writeInt(record);
+            }
+            for (int record : byYear) {
+                out.writeInt(record);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeHeader(DataOutputStream out, Path store, int recordCount) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+        out.writeLong(Files.size(store));
+        out.writeLong(Files.getLastModifiedTime(store).toMillis());
+        out.writeInt(recordCount);
+    }
+
+    private static int[] sortByYear(short[] years) {
+        // The year and record number fit in one long, so a primitive sort orders the records by year
+        long[] keys = new long[years.length];
+        for (int i = 0; i < years.length; i++) {
+            keys[i] = ((long) years[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] sorted = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = (int) keys[i];
+        }
+        return sorted;
+    }
+
+    private static int[] sortByPrice(double[] prices) {
+        // Sort on the price rounded to a float, which fits in one long with the record number, then put
+        // the few prices that are equal as floats but not as doubles in order
+        long[] keys = new long[prices.length];
+        for (int i = 0; i < prices.length; i++) {
+            int bits = Float.floatToIntBits((float) prices[i]);
+            int sortable = bits ^ ((bits >> 31) & 0x7FFFFFFF);
+            keys[i] = ((long) sortable << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] sorted = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = (int) keys[i];
+        }
+
+        for (int i = 1; i < sorted.length; i++) {
+            int record = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && prices[sorted[j]] > prices[record]) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = record;
+        }
+        return sorted;
+    }
+
+    /**
+     * Collects the price and year of books as they are written to a store, in record order, and saves the
+     * indexes of the store once it is closed, in memory that does not grow with the store.
+     * <p>
+     * The price and year of each book are appended to a column file next to the store, named after it,
+     * rather than kept in memory. Saving copies the two columns into the indexes and sorts the record
+     * numbers by each attribute on the way: a store of up to {@value #RUN_RECORDS} books is sorted in memory,
+     * and a larger one is sorted in runs of that many records, which are spilled to disk and merged at most
+     * {@value #MAX_FAN_IN} at a time. Records with the same value stay in record order, as they are in
+     * indexes built in memory.
+     */
+    static final class Builder {
+
+        private static final int RUN_RECORDS = 1 << 18;
+        private static final int MAX_FAN_IN = 64;
+        private static final int BUFFER_SIZE = 16 * 1024;
+
+        private final Path store;
+        private final List<Path> files = new ArrayList<>();
+        private int runCount;
+        private Path columns;
+        private DataOutputStream out;
+        private int size;
+
+        /**
+         * Constructs a new Builder.
+         *
+         * @param store the store file, which the column and run files are created next to
+         */
+        Builder(Path store) {
+            this.store = store;
+        }
+
+        /**
+         * Adds the next book of the store.
+         *
+         * @param book the book
+         * @throws IOException if the column file could not be written
+         */
+        void add(Book book) throws IOException {
+            if (out == null) {
+                columns = createFile(".col");
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(columns), BUFFER_SIZE));
+            }
+            out.writeDouble(book.getPrice());
+            out.writeShort(book.getYear());
+            size++;
+        }
+
+        /**
+         * Saves the indexes next to the store once it has been completely written and closed, and deletes
+         * the files used to build them.
+         *
+         * @throws IOException if the indexes could not be written
+         */
+        void save() throws IOException {
+            Path file = store.resolveSibling(store.getFileName() + EXTENSION);
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                try (OutputStream stream = Files.newOutputStream(temp);
+                     DataOutputStream index = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+                    writeHeader(index, store, size);
+                    List<Path> priceRuns = new ArrayList<>();
+                    int[] byPrice = copyColumn(Attribute.PRICE, index, priceRuns);
+                    List<Path> yearRuns = new ArrayList<>();
+                    int[] byYear = copyColumn(Attribute.YEAR, index, yearRuns);
+                    writeSorted(byPrice, priceRuns, index);
+                    writeSorted(byYear, yearRuns, index);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+                discard();
+            }
+        }
+
+        /**
+         * Deletes the files used to build the indexes, which are not saved.
+         *
+         * @throws IOException if a file could not be deleted
+         */
+        void discard() throws IOException {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+            for (Path path : files) {
+                Files.deleteIfExists(path);
+            }
+            files.clear();
+        }
+
+        /**
+         * Names a file next to the store. The names only depend on the store, so a run that stops part way
+         * leaves files that the next run writing the store replaces.
+         */
+        private Path createFile(String suffix) {
+            Path path = store.resolveSibling(store.getFileName() + EXTENSION + suffix);
+            files.add(path);
+            return path;
+        }
+
+        /**
+         * Copies the column of an attribute into the indexes, and sorts the records by it: in memory if the
+         * store holds a single run of records, and otherwise into spilled runs.
+         *
+         * @return the sorted records, or null if they were spilled to the given runs
+         */
+        private int[] copyColumn(Attribute attribute, DataOutputStream index, List<Path> runs) throws IOException {
+            if (size == 0) {
+                return new int[0];
+            }
+
+            int chunk = Math.min(size, RUN_RECORDS);
+            double[] prices = attribute == Attribute.PRICE ? new double[chunk] : null;
+            short[] years = attribute == Attribute.YEAR ? new short[chunk] : null;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(columns), 64 * 1024))) {
+                int first = 0;
+                while (first < size) {
+                    int count = Math.min(chunk, size - first);
+                    for (int i = 0; i < count; i++) {
+                        double price = in.readDouble();
+                        short year = in.readShort();
+                        if (prices != null) {
+                            prices[i] = price;
+                            index.writeDouble(price);
+                        } else {
+                            years[i] = year;
+                            index.writeShort(year);
+                        }
+                    }
+                    int[] sorted = prices != null ? sortByPrice(count == chunk ? prices : Arrays.copyOf(prices, count))
+                            : sortByYear(count == chunk ? years : Arrays.copyOf(years, count));
+                    if (count == size) {
+                        return sorted;
+                    }
+
+                    Path run = createFile("." + runCount++ + ".run");
+                    runs.add(run);
+                    try (DataOutputStream runOut = openRun(run)) {
+                        runOut.writeInt(sorted.length);
+                        for (int record : sorted) {
+                            runOut.writeDouble(prices != null ? prices[record] : years[record]);
+                            runOut.writeInt(first + record);
+                        }
+                    }
+                    first += count;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Writes the sorted records of an attribute to the indexes, merging its runs if they were spilled.
+         */
+        private void writeSorted(int[] sorted, List<Path> runs, DataOutputStream index) throws IOException {
+            if (sorted != null) {
+                for (int record : sorted) {
+                    index.writeInt(record);
+                }
+                return;
+            }
+
+            while (runs.size() > MAX_FAN_IN) {
+                // Merge consecutive runs into longer runs until they can all be read at once
+                List<Path> merged = new ArrayList<>();
+                for (int start = 0; start < runs.size(); start += MAX_FAN_IN) {
+                    List<Path> group = runs.subList(start, Math.min(start + MAX_FAN_IN, runs.size()));
+                    Path run = createFile("." + runCount++ + ".run");
+                    merged.add(run);
+                    try (DataOutputStream runOut = openRun(run)) {
+                        merge(group, runOut, true);
+                    }
+                    for (Path done : group) {
+                        Files.delete(done);
+                    }
+                }
+                runs.clear();
+                runs.addAll(merged);
+            }
+            merge(runs, index, false);
+        }
+
+        private static DataOutputStream openRun(Path run) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE));
+        }
+
+        /**
+         * Merges runs of values and record numbers sorted by value and then record, writing the record
+         * numbers in that order, and the number of entries and the values too if the output is another run.
+         */
+        private static void merge(List<Path> runs, DataOutputStream out, boolean withValues) throws IOException {
+            PriorityQueue<RunReader> heads = new PriorityQueue<>((a, b) -> {
+                int order = Double.compare(a.value, b.value);
+                return order != 0 ? order : Integer.compare(a.record, b.record);
+            });
+            List<RunReader> readers = new ArrayList<>();
+            try {
+                int entries = 0;
+                for (Path run : runs) {
+                    RunReader reader = new RunReader(run);
+                    readers.add(reader);
+                    entries += reader.remaining;
+                    if (reader.next()) {
+                        heads.add(reader);
+                    }
+                }
+                if (withValues) {
+                    out.writeInt(entries);
+                }
+                while (!heads.isEmpty()) {
+                    RunReader reader = heads.poll();
+                    if (withValues) {
+                        out.writeDouble(reader.value);
+                    }
+                    out.writeInt(reader.record);
+                    if (reader.next()) {
+                        heads.add(reader);
+                    }
+                }
+            } finally {
+                for (RunReader reader : readers) {
+                    reader.in.close();
+                }
+            }
+        }
+
+        /**
+         * Reads the values and record numbers of a run one at a time. A run is read for exactly the number of
+         * entries it starts with, so a run cut short is an error rather than a shorter run.
+         */
+        private static final class RunReader {
+            final DataInputStream in;
+            int remaining;
+            double value;
+            int record;
+
+            RunReader(Path run) throws IOException {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+                try {
+                    remaining = in.readInt();
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+            }
+
+            boolean next() throws IOException {
+                if (remaining == 0) {
+                    return false;
+                }
+                remaining--;
+                value = in.readDouble();
+                record = in.readInt();
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package books;
+
+/**
+ * The outcome of checking a book record for syntax and semantic errors.
+ * <p>
+ * Validation returns one of these constants instead of throwing an exception, so rejecting a record costs
+ * no more than accepting one. The error message is only built, once, when the caller asks for it, and the
+ * matching exception can still be created for callers that want one.
+ */
+enum RecordError {
+
+    /** The record has no error. */
+    NONE(false, null, -1),
+
+    /** The record has more than six fields. */
+    TOO_MANY_FIELDS(false, "Too many fields ", -1),
+
+    /** The record has fewer than six fields. */
+    TOO_FEW_FIELDS(false, "Too few fields ", -1),
+
+    /** The title field is empty. */
+    MISSING_NAME(false, "missing name", 0),
+
+    /** The authors field is empty. */
+    MISSING_AUTHORS(false, "missing authors", 1),
+
+    /** The price field is empty. */
+    MISSING_PRICE(false, "missing price", 2),
+
+    /** The ISBN field is empty. */
+    MISSING_ISBN(false, "missing isbn", 3),
+
+    /** The genre field is empty. */
+    MISSING_GENRE(false, "missing genre", 4),
+
+    /** The year field is empty. */
+    MISSING_YEAR(false, "missing year", 5),
+
+    /** The genre is not one of the known genre codes. */
+    UNKNOWN_GENRE(false, "invalid genre ", 4),
+
+    /** The price is negative. */
+    BAD_PRICE(true, "Wrong Price", 2),
+
+    /** The ISBN-10 checksum is wrong. */
+    BAD_ISBN10(true, "Invalid ISBN-10", 3),
+
+    /** The ISBN-13 checksum is wrong. */
+    BAD_ISBN13(true, "Invalid ISBN-13", 3),
+
+    /** The year is outside the accepted range. */
+    BAD_YEAR(true, "Invalid year", 5);
+
+    private static final RecordError[] MISSING_FIELDS = {
+            MISSING_NAME, MISSING_AUTHORS, MISSING_PRICE, MISSING_ISBN, MISSING_GENRE, MISSING_YEAR
+    };
+
+    private final boolean semantic;
+    private final String description;
+    private final int fieldIndex;
+
+    RecordError(boolean semantic, String description, int fieldIndex) {
+        this.semantic = semantic;
+        this.description = description;
+        this.fieldIndex = fieldIndex;
+    }
+
+    /**
+     * Returns the error for an empty field.
+     *
+     * @param fieldIndex the index of the empty field
+     * @return the matching missing-field error
+     */
+    public static RecordError missingField(int fieldIndex) {
+        return MISSING_FIELDS[fieldIndex];
+    }
+
+    /**
+     * Returns whether this is a semantic error found in Part 2, rather than a syntax error found in Part 1.
+     *
+     * @return true for a semantic error
+     */
+    public boolean isSemantic() {
+        return semantic;
+    }
+
+    /**
+     * Returns the index of the field the error is about.
+     *
+     * @return the field index, or -1 if the error is about the record as a whole
+     */
+    public int getFieldIndex() {
+        return fieldIndex;
+    }
+
+    /**
+     * Formats the message reported for a record with this error.
+     *
+     * @param fileName the name of the file the record comes from
+     * @param record   the record
+     * @return the error message
+     */
+    public String message(String fileName, String record) {
+        if (this == UNKNOWN_GENRE) {
+            return "Error: " + description + "\nRecord: " + record + "\n";
+        }
+        return (semantic ? "semantic" : "syntax") + " error in file: " + fileName + "\n==================== \nError: "
+                + description + "\nRecord: " + record + "\n";
+    }
+
+    /**
+     * Creates the exception matching this error.
+     *
+     * @param message the detail message, usually from {@link #message(String, String)}
+     * @return the exception
+     * @throws IllegalStateException if this is {@link #NONE}
+     */
+    public RecordException toException(String message) {
+        switch (this) {
+            case TOO_MANY_FIELDS:
+                return new TooManyFieldsException(message);
+            case TOO_FEW_FIELDS:
+                return new TooFewFieldsException(message);
+            case MISSING_NAME:
+            case MISSING_AUTHORS:
+            case MISSING_PRICE:
+            case MISSING_ISBN:
+            case MISSING_GENRE:
+            case MISSING_YEAR:
+                return new MissingFieldException(message);
+            case UNKNOWN_GENRE:
+                return new UnknownGenreException(message);
+            case BAD_PRICE:
+                return new BadPriceException(message);
+            case BAD_ISBN10:
+                return new BadIsbn10Exception(message);
+            case BAD_ISBN13:
+                return new BadIsbn13Exception(message);
+            case BAD_YEAR:
+                return new BadYearException(message);
+            default:
+                throw new IllegalStateException("A valid record has no exception");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package books;
+
+/**
+ * Base class of the exceptions describing an invalid record. The message of a record exception is all a
+ * caller needs, so it is created without a stack trace, which makes it cheap to construct.
+ */
+abstract class RecordException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new RecordException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    protected RecordException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,49 @@
+package books;
+
+import java.io.IOException;
+
+/**
+ * Receives the output produced while processing the records of one input file.
+ */
+interface RecordSink {
+
+    /**
+     * Accepts a syntactically valid record routed to a genre.
+     *
+     * @param genreIndex the index of the genre in the genre-to-file mapping
+     * @param record     the record as read from the input file
+     */
+    void record(int genreIndex, String record);
+
+    /**
+     * Accepts a book that passed semantic validation.
+     *
+     * @param genreIndex the index of the genre in the genre-to-file mapping
+     * @param book       the validated book
+     * @throws IOException if the book could not be written
+     */
+    void book(int genreIndex, Book book) throws IOException;
+
+    /**
+     * Accepts the message describing a record with a syntax error. Depending on the console mode, the
+     * message is also shown on the console.
+     *
+     * @param message the error message
+     */
+    void syntaxError(String message);
+
+    /**
+     * Accepts the message describing a record with a semantic error. Depending on the console mode, the
+     * message is also shown on the console.
+     *
+     * @param message the error message
+     */
+    void semanticError(String message);
+
+    /**
+     * Accepts a message meant for the console.
+     *
+     * @param message the message to display
+     */
+    void message(String message);
+}
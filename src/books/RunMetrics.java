@@ -0,0 +1,496 @@
+package books;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects the metrics of a whole run from the {@link FileMetrics} of its files, and writes them as a JSON
+ * report at the end of the run.
+ * <p>
+ * The files are added once they are complete, possibly from several threads. The number of records and
+ * bytes read is also updated while a file is read, so the progress of a long file can be followed through
+ * JMX.
+ */
+final class RunMetrics implements RunMetricsMXBean {
+
+    /** The name under which the metrics are registered with the platform MBean server. */
+    static final String OBJECT_NAME = "books:type=RunMetrics";
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final RecordError[] ERRORS = RecordError.values();
+
+    private final boolean timed;
+    private final Instant startTime = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final LongAdder liveRecords = new LongAdder();
+    private final LongAdder liveBytes = new LongAdder();
+    private volatile String currentFile = "";
+    private long endNanos = -1;
+
+    private final long[] stageCounts = new long[STAGES.length];
+    private final long[] stageNanos = new long[STAGES.length];
+    private final long[] stageCpuNanos = new long[STAGES.length];
+    private final long[] stageBytes = new long[STAGES.length];
+    private final long[] errorCounts = new long[ERRORS.length];
+    private final long[] recordCounts = new long[8];
+    private final long[] bookCounts = new long[8];
+    private final long[] duplicateCounts = new long[8];
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final List<FileMetrics> files = new ArrayList<>();
+    private long cpuNanos;
+    private IsbnDeduplicator deduplicator;
+
+    /**
+     * Constructs the metrics of a run that starts now.
+     *
+     * @param timed whether the stages are timed; without timing only the counts are collected, and reading
+     *              the clock costs nothing
+     */
+    RunMetrics(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * Returns whether the stages of this run are timed.
+     *
+     * @return true if the stages are timed
+     */
+    boolean isTimed() {
+        return timed;
+    }
+
+    /**
+     * Publishes these metrics through JMX under {@value #OBJECT_NAME}, replacing the metrics of an earlier
+     * run in the same JVM.
+     *
+     * @throws JMException if the metrics could not be registered
+     */
+    void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    /**
+     * Records the file whose processing just started.
+     *
+     * @param fileName the name of the file
+     */
+    void setCurrentFile(String fileName) {
+        currentFile = fileName;
+    }
+
+    /**
+     * Adds records read from a file that is still being processed.
+     *
+     * @param records the number of records
+     * @param bytes   the number of bytes they took up
+     */
+    void addProgress(long records, long bytes) {
+        liveRecords.add(records);
+        liveBytes.add(bytes);
+    }
+
+    /**
+     * Adds the metrics of a completed file.
+     *
+     * @param file the metrics of the file
+     */
+    synchronized void add(FileMetrics file) {
+        add(stageCounts, file.getStageCounts());
+        add(stageNanos, file.getStageNanos());
+        add(stageCpuNanos, file.getStageCpuNanos());
+        add(stageBytes, file.getStageBytes());
+        add(errorCounts, file.getErrorCounts());
+        add(recordCounts, file.getRecordCounts());
+        add(bookCounts, file.getBookCounts());
+        add(duplicateCounts, file.getDuplicateCounts());
+        latency.add(file.getLatency());
+        cpuNanos += file.getCpuNanos();
+        files.add(file);
+
+        if (!timed) {
+            // Without timing the progress is only published once a file is complete
+            addProgress(file.getStageCounts()[Stage.READ.ordinal()], file.getStageBytes()[Stage.READ.ordinal()]);
+        }
+    }
+
+    /**
+     * Records the deduplicator of the run, whose policy and untracked books are reported.
+     *
+     * @param deduplicator the deduplicator
+     */
+    synchronized void setDeduplicator(IsbnDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    private static void add(long[] total, long[] values) {
+        for (int i = 0; i < total.length; i++) {
+            total[i] += values[i];
+        }
+    }
+
+    /**
+     * Ends the run, fixing its elapsed time.
+     */
+    synchronized void finish() {
+        if (endNanos < 0) {
+            endNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Writes the report of the run as JSON. The report replaces the file atomically, so a reader never sees
+     * half a report.
+     *
+     * @param file the file to write
+     * @throws IOException if the report could not be written
+     */
+    synchronized void writeReport(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        Files.write(temp, toJson().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the report of the run as JSON.
+     *
+     * @return the report
+     */
+    synchronized String toJson() {
+        long elapsed = elapsedNanos();
+        String[] genres = Main.initializeGenreMappings()[0];
+        Json json = new Json();
+
+        json.beginObject();
+        json.field("startTime", startTime.toString());
+        json.field("elapsedMillis", millis(elapsed));
+        json.field("cpuMillis", millis(cpuNanos));
+        json.field("timed", timed);
+        json.field("files", files.size());
+        long records = stageCounts[Stage.READ.ordinal()];
+        long bytes = stageBytes[Stage.READ.ordinal()];
+        json.field("records", records);
+        json.field("bytes", bytes);
+        json.field("recordsPerSecond", perSecond(records, elapsed));
+        json.field("bytesPerSecond", perSecond(bytes, elapsed));
+
+        json.beginObject("stages");
+        for (Stage stage : STAGES) {
+            int i = stage.ordinal();
+            json.beginObject(stage.getReportName());
+            json.field("count", stageCounts[i]);
+            json.field("bytes", stageBytes[i]);
+            json.field("wallMillis", millis(stageNanos[i]));
+            json.field("cpuMillis", millis(stageCpuNanos[i]));
+            json.field("countPerSecond", perSecond(stageCounts[i], stageNanos[i]));
+            json.field("bytesPerSecond", perSecond(stageBytes[i], stageNanos[i]));
+            json.endObject();
+        }
+        json.endObject();
+
+        json.beginObject("syntaxErrors");
+        json.field("total", errorCount(false));
+        for (RecordError error : ERRORS) {
+            if (error != RecordError.NONE && !error.isSemantic()) {
+                json.field(errorName(error), errorCounts[error.ordinal()]);
+            }
+        }
+        json.endObject();
+
+        json.beginObject("semanticErrors");
+        json.field("total", errorCount(true));
+        for (RecordError error : ERRORS) {
+            if (error.isSemantic()) {
+                json.field(errorName(error), errorCounts[error.ordinal()]);
+            }
+        }
+        json.endObject();
+
+        json.beginObject("genres");
+        for (int i = 0; i < genres.length; i++) {
+            json.beginObject(genres[i]);
+            json.field("records", recordCounts[i]);
+            json.field("books", bookCounts[i]);
+            json.field("duplicates", duplicateCounts[i]);
+            json.endObject();
+        }
+        json.endObject();
+
+        if (deduplicator != null) {
+            json.beginObject("deduplication");
+            json.field("policy", deduplicator.getPolicy().getOptionName());
+            json.field("dropped", sum(duplicateCounts));
+            json.field("untracked", deduplicator.getUntracked());
+            json.endObject();
+        }
+
+        json.beginObject("latencyMicros");
+        latency(json, latency);
+        json.endObject();
+
+        json.beginArray("fileReports");
+        for (FileMetrics file : files) {
+            json.beginObject();
+            json.field("name", file.getFileName());
+            json.field("records", file.getRecords());
+            json.field("bytes", file.getBytes());
+            json.field("wallMillis", millis(file.getWallNanos()));
+            json.field("cpuMillis", millis(file.getCpuNanos()));
+            json.field("recordsPerSecond", perSecond(file.getRecords(), file.getWallNanos()));
+            json.field("bytesPerSecond", perSecond(file.getBytes(), file.getWallNanos()));
+            json.beginObject("latencyMicros");
+            latency(json, file.getLatency());
+            json.endObject();
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+
+        return json.toString();
+    }
+
+    private static void latency(Json json, LatencyHistogram histogram) {
+        json.field("count", histogram.getCount());
+        json.field("mean", histogram.getMean() / 1000);
+        json.field("p50", histogram.getPercentile(0.5) / 1000.0);
+        json.field("p90", histogram.getPercentile(0.9) / 1000.0);
+        json.field("p99", histogram.getPercentile(0.99) / 1000.0);
+        json.field("p999", histogram.getPercentile(0.999) / 1000.0);
+        json.field("max", histogram.getMax() / 1000.0);
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static String errorName(RecordError error) {
+        return error.name().toLowerCase(Locale.ROOT);
+    }
+
+    private long errorCount(boolean semantic) {
+        long count = 0;
+        for (RecordError error : ERRORS) {
+            if (error != RecordError.NONE && error.isSemantic() == semantic) {
+                count += errorCounts[error.ordinal()];
+            }
+        }
+        return count;
+    }
+
+    private synchronized long elapsedNanos() {
+        return (endNanos < 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos <= 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return millis(elapsedNanos());
+    }
+
+    @Override
+    public String getCurrentFile() {
+        return currentFile;
+    }
+
+    @Override
+    public synchronized int getFilesCompleted() {
+        return files.size();
+    }
+
+    @Override
+    public long getRecords() {
+        return liveRecords.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return liveBytes.sum();
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        return perSecond(getRecords(), elapsedNanos());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytes(), elapsedNanos());
+    }
+
+    @Override
+    public synchronized long getSyntaxErrors() {
+        return errorCount(false);
+    }
+
+    @Override
+    public synchronized long getSemanticErrors() {
+        return errorCount(true);
+    }
+
+    @Override
+    public synchronized long getDuplicatesDropped() {
+        return sum(duplicateCounts);
+    }
+
+    @Override
+    public synchronized Map<String, Long> getStageWallMillis() {
+        return stageMillis(stageNanos);
+    }
+
+    @Override
+    public synchronized Map<String, Long> getStageCpuMillis() {
+        return stageMillis(stageCpuNanos);
+    }
+
+    private static Map<String, Long> stageMillis(long[] nanos) {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (Stage stage : STAGES) {
+            millis.put(stage.getReportName(), millis(nanos[stage.ordinal()]));
+        }
+        return millis;
+    }
+
+    /**
+     * Writes JSON text with indentation, one field per line.
+     */
+    private static final class Json {
+
+        private final StringBuilder out = new StringBuilder(4096);
+        private int depth;
+        private boolean first = true;
+
+        void beginObject() {
+            open(null, '{');
+        }
+
+        void beginObject(String name) {
+            open(name, '{');
+        }
+
+        void beginArray(String name) {
+            open(name, '[');
+        }
+
+        void endObject() {
+            close('}');
+        }
+
+        void endArray() {
+            close(']');
+        }
+
+        void field(String name, String value) {
+            name(name);
+            string(value);
+        }
+
+        void field(String name, long value) {
+            name(name);
+            out.append(value);
+        }
+
+        void field(String name, double value) {
+            name(name);
+            out.append(Double.isFinite(value) ? String.format(Locale.ROOT, "%.3f", value) : "null");
+        }
+
+        void field(String name, boolean value) {
+            name(name);
+            out.append(value);
+        }
+
+        private void open(String name, char bracket) {
+            if (name == null) {
+                separate();
+            } else {
+                name(name);
+            }
+            out.append(bracket);
+            depth++;
+            first = true;
+        }
+
+        private void close(char bracket) {
+            depth--;
+            if (!first) {
+                newLine();
+            }
+            out.append(bracket);
+            first = false;
+        }
+
+        private void name(String name) {
+            separate();
+            string(name);
+            out.append(": ");
+        }
+
+        private void separate() {
+            if (!first) {
+                out.append(',');
+            }
+            if (depth > 0) {
+                newLine();
+            }
+            first = false;
+        }
+
+        private void newLine() {
+            out.append('\n');
+            for (int i = 0; i < depth; i++) {
+                out.append("  ");
+            }
+        }
+
+        private void string(String value) {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\').append(c);
+                } else if (c < 0x20) {
+                    out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+
+        @Override
+        public String toString() {
+            return out.toString() + '\n';
+        }
+    }
+}
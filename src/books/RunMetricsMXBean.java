@@ -0,0 +1,94 @@
+package books;
+
+import java.util.Map;
+
+/**
+ * The view of a run's {@link RunMetrics} published through JMX while the run is in progress, under the name
+ * {@value RunMetrics#OBJECT_NAME}.
+ */
+public interface RunMetricsMXBean {
+
+    /**
+     * Returns the time since the run started.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    long getElapsedMillis();
+
+    /**
+     * Returns the file being processed.
+     *
+     * @return the name of the file most recently started, or an empty string before the first one
+     */
+    String getCurrentFile();
+
+    /**
+     * Returns the number of files completely processed.
+     *
+     * @return the number of files
+     */
+    int getFilesCompleted();
+
+    /**
+     * Returns the number of records read so far.
+     *
+     * @return the number of records
+     */
+    long getRecords();
+
+    /**
+     * Returns the number of bytes read so far.
+     *
+     * @return the number of bytes
+     */
+    long getBytes();
+
+    /**
+     * Returns the average number of records read per second since the run started.
+     *
+     * @return the records per second
+     */
+    double getRecordsPerSecond();
+
+    /**
+     * Returns the average number of bytes read per second since the run started.
+     *
+     * @return the bytes per second
+     */
+    double getBytesPerSecond();
+
+    /**
+     * Returns the number of records with a syntax error in the completed files.
+     *
+     * @return the number of syntax errors
+     */
+    long getSyntaxErrors();
+
+    /**
+     * Returns the number of records with a semantic error in the completed files.
+     *
+     * @return the number of semantic errors
+     */
+    long getSemanticErrors();
+
+    /**
+     * Returns the number of books dropped as duplicates in the completed files.
+     *
+     * @return the number of duplicates
+     */
+    long getDuplicatesDropped();
+
+    /**
+     * Returns the wall time of each stage in the completed files.
+     *
+     * @return the wall time in milliseconds, keyed by stage name
+     */
+    Map<String, Long> getStageWallMillis();
+
+    /**
+     * Returns the CPU time of each stage in the completed files.
+     *
+     * @return the CPU time in milliseconds, keyed by stage name
+     */
+    Map<String, Long> getStageCpuMillis();
+}
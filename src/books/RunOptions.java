@@ -0,0 +1,311 @@
+package books;
+
+/**
+ * Holds the command-line options that control how the book processing is run.
+ */
+class RunOptions {
+
+    private int parallelism = 1;
+    private int chunkSizeKb = 8 * 1024;
+    private boolean fused;
+    private boolean pipeline;
+    private boolean debugCsv;
+    private boolean incremental;
+    private boolean watch;
+    private boolean compressed;
+    private boolean checkpointed;
+    private boolean resume;
+    private int checkpointInterval = 30;
+    private SortKey sortKey;
+    private int sortMemoryMb = 64;
+    private ConsoleMode consoleMode = ConsoleMode.FULL;
+    private int consoleSampleRate = 100;
+    private String reportFile;
+    private boolean jmx;
+    private DedupPolicy dedupPolicy;
+    private int dedupCapacity = 1 << 24;
+    private CatalogMode catalogMode = CatalogMode.MAPPED;
+
+    /**
+     * Parses the command-line arguments passed to the program.
+     *
+     * @param args the command-line arguments
+     * @return the parsed options
+     * @throws IllegalArgumentException if an argument is not recognised or has an invalid value
+     */
+    public static RunOptions parse(String[] args) {
+        RunOptions options = new RunOptions();
+
+        for (String arg : args) {
+            if (arg.startsWith("--parallelism=")) {
+                options.parallelism = parsePositiveInt(arg, "--parallelism=".length());
+            } else if (arg.startsWith("--chunk-size=")) {
+                options.chunkSizeKb = parsePositiveInt(arg, "--chunk-size=".length());
+            } else if (arg.equals("--fused")) {
+                options.fused = true;
+            } else if (arg.equals("--pipeline")) {
+                options.pipeline = true;
+            } else if (arg.equals("--debug-csv")) {
+                options.debugCsv = true;
+            } else if (arg.equals("--incremental")) {
+                options.incremental = true;
+            } else if (arg.equals("--compress")) {
+                options.compressed = true;
+            } else if (arg.equals("--watch")) {
+                options.watch = true;
+            } else if (arg.equals("--checkpoint")) {
+                options.checkpointed = true;
+            } else if (arg.equals("--resume")) {
+                options.checkpointed = true;
+                options.resume = true;
+            } else if (arg.startsWith("--checkpoint-interval=")) {
+                options.checkpointInterval = parsePositiveInt(arg, "--checkpoint-interval=".length());
+            } else if (arg.startsWith("--sort-by=")) {
+                options.sortKey = SortKey.fromName(arg.substring("--sort-by=".length()));
+            } else if (arg.startsWith("--sort-memory=")) {
+                options.sortMemoryMb = parsePositiveInt(arg, "--sort-memory=".length());
+            } else if (arg.startsWith("--console=")) {
+                options.consoleMode = ConsoleMode.fromName(arg.substring("--console=".length()));
+            } else if (arg.startsWith("--console-sample=")) {
+                options.consoleSampleRate = parsePositiveInt(arg, "--console-sample=".length());
+            } else if (arg.startsWith("--report=") && arg.length() > "--report=".length()) {
+                options.reportFile = arg.substring("--report=".length());
+            } else if (arg.equals("--jmx")) {
+                options.jmx = true;
+            } else if (arg.startsWith("--dedup=")) {
+                options.dedupPolicy = DedupPolicy.fromName(arg.substring("--dedup=".length()));
+            } else if (arg.startsWith("--dedup-capacity=")) {
+                options.dedupCapacity = parsePositiveInt(arg, "--dedup-capacity=".length());
+            } else if (arg.startsWith("--catalog=")) {
+                options.catalogMode = CatalogMode.fromName(arg.substring("--catalog=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (options.dedupPolicy != null && (options.fused || options.pipeline || options.incremental)) {
+            throw new IllegalArgumentException("The --dedup option cannot be combined with --fused, --pipeline or --incremental.");
+        }
+        if (options.watch && (options.fused || options.pipeline || options.dedupPolicy != null)) {
+            throw new IllegalArgumentException("The --watch option cannot be combined with --fused, --pipeline or --dedup.");
+        }
+        if (options.compressed && (options.incremental || options.watch)) {
+            throw new IllegalArgumentException("The --compress option cannot be combined with --incremental or --watch.");
+        }
+        if (options.pipeline && (options.fused || options.incremental)) {
+            throw new IllegalArgumentException("The --pipeline option cannot be combined with --fused or --incremental.");
+        }
+        if (options.checkpointed && (options.fused || options.pipeline || options.incremental || options.watch
+                || options.dedupPolicy != null || options.compressed || options.parallelism > 1)) {
+            throw new IllegalArgumentException("The --checkpoint and --resume options cannot be combined with --fused,"
+                    + " --pipeline, --incremental, --watch, --dedup, --compress or --parallelism.");
+        }
+        if (options.sortKey != null && (options.fused || options.pipeline || options.incremental || options.watch
+                || options.checkpointed)) {
+            throw new IllegalArgumentException("The --sort-by option cannot be combined with --fused, --pipeline,"
+                    + " --incremental, --watch, --checkpoint or --resume.");
+        }
+        if (options.dedupCapacity > 1 << 29) {
+            throw new IllegalArgumentException("Invalid value in option: --dedup-capacity=" + options.dedupCapacity
+                    + ". Please enter at most " + (1 << 29) + ".");
+        }
+        return options;
+    }
+
+    private static int parsePositiveInt(String arg, int valueStart) {
+        try {
+            int value = Integer.parseInt(arg.substring(valueStart));
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Invalid value in option: " + arg + ". Please enter a positive integer.");
+    }
+
+    /**
+     * Returns the number of input files, or chunks of large input files, that Part 1 may process at the same
+     * time.
+     *
+     * @return the parallelism level, 1 for sequential processing
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the size of the chunks an input file is split into when files are processed in parallel, so
+     * that the records of one large file are also processed in parallel.
+     *
+     * @return the chunk size in bytes, 8 MB by default
+     */
+    public long getChunkSize() {
+        return chunkSizeKb * 1024L;
+    }
+
+    /**
+     * Returns whether Parts 1 and 2 run as a single pass that writes the binary files directly.
+     *
+     * @return true for the fused single-pass mode, false to run Part 1 and Part 2 separately
+     */
+    public boolean isFused() {
+        return fused;
+    }
+
+    /**
+     * Returns whether Parts 1 and 2 run as a pipeline of reader, parser and writer threads that writes the
+     * binary files directly. The number of parser threads is the parallelism level.
+     *
+     * @return true for the pipelined mode
+     */
+    public boolean isPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Returns whether the fused or pipelined mode also writes the genre CSV files of Part 1 for debugging.
+     *
+     * @return true if the genre CSV files are written in fused or pipelined mode
+     */
+    public boolean isDebugCsv() {
+        return debugCsv;
+    }
+
+    /**
+     * Returns whether Parts 1 and 2 only reprocess the input files that changed since the last run.
+     *
+     * @return true for an incremental run
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Returns whether the genre stores are written compressed in blocks.
+     *
+     * @return true if the genre stores are compressed
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Returns whether Parts 1 and 2 take checkpoints as they run, so that a run that stops part way can be
+     * resumed. Their outputs are then written under temporary names and renamed once complete.
+     *
+     * @return true if checkpoints are taken
+     */
+    public boolean isCheckpointed() {
+        return checkpointed;
+    }
+
+    /**
+     * Returns whether Parts 1 and 2 carry on from the last checkpoint instead of starting over.
+     *
+     * @return true to resume from the last checkpoint
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Returns how long a checkpointed run goes between two checkpoints.
+     *
+     * @return the interval in seconds, 30 by default
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Returns whether the program keeps running and processes the input files that land in the input
+     * directory, instead of opening the viewer. The outputs are kept up to date as in an incremental run.
+     *
+     * @return true for the watch mode
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Returns how much of the error output is echoed to the console.
+     *
+     * @return the console mode, {@link ConsoleMode#FULL} by default
+     */
+    public ConsoleMode getConsoleMode() {
+        return consoleMode;
+    }
+
+    /**
+     * Returns how often an error is echoed in {@link ConsoleMode#SAMPLED} mode.
+     *
+     * @return one error in this many is echoed
+     */
+    public int getConsoleSampleRate() {
+        return consoleSampleRate;
+    }
+
+    /**
+     * Returns the file the JSON report of the run is written to.
+     *
+     * @return the report file, or null if no report is written
+     */
+    public String getReportFile() {
+        return reportFile;
+    }
+
+    /**
+     * Returns whether the metrics of the run are published through JMX while it is in progress.
+     *
+     * @return true if the metrics are published through JMX
+     */
+    public boolean isJmx() {
+        return jmx;
+    }
+
+    /**
+     * Returns the policy used to drop books whose ISBN occurs more than once.
+     *
+     * @return the policy, or null if duplicates are kept
+     */
+    public DedupPolicy getDedupPolicy() {
+        return dedupPolicy;
+    }
+
+    /**
+     * Returns the largest number of distinct ISBNs tracked to drop duplicates, which bounds the memory used.
+     *
+     * @return the capacity, 16777216 by default
+     */
+    public int getDedupCapacity() {
+        return dedupCapacity;
+    }
+
+    /**
+     * Returns the key the books of each genre store are sorted by in Part 2.
+     *
+     * @return the sort key, or null if the books are written in the order they are validated
+     */
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * Returns how much memory the books of a genre may take while they are sorted, before they are spilled
+     * to sorted runs on disk.
+     *
+     * @return the memory budget in bytes, 64 MB by default
+     */
+    public long getSortMemory() {
+        return sortMemoryMb * 1024L * 1024L;
+    }
+
+    /**
+     * Returns how Part 3 holds the books of the genre stores in memory.
+     *
+     * @return the catalog mode, {@link CatalogMode#MAPPED} by default
+     */
+    public CatalogMode getCatalogMode() {
+        return catalogMode;
+    }
+}
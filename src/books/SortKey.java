@@ -0,0 +1,66 @@
+package books;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * The key the books of each genre store are sorted by, so that the store can be scanned or merged in that
+ * order. Books with the same key keep the order they were validated in.
+ */
+enum SortKey {
+
+    /**
+     * Books are sorted by the number given by {@link IsbnIndex#key}, so the ISBN-10 and ISBN-13 of a book sort
+     * together, and then by ISBN as written in the record.
+     */
+    ISBN(Comparator.<Book>comparingLong(book -> IsbnIndex.key(book.getIsbn())).thenComparing(Book::getIsbn)),
+
+    /** Books are sorted by publication year. */
+    YEAR(Comparator.comparingInt(Book::getYear)),
+
+    /** Books are sorted by price. */
+    PRICE(Comparator.comparingDouble(Book::getPrice)),
+
+    /** Books are sorted by title, as written in the record. */
+    TITLE(Comparator.comparing(Book::getTitle));
+
+    private final Comparator<Book> comparator;
+
+    SortKey(Comparator<Book> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns the key with the given name, ignoring case.
+     *
+     * @param name the name of the key, such as {@code isbn}
+     * @return the key
+     * @throws IllegalArgumentException if there is no key with that name
+     */
+    public static SortKey fromName(String name) {
+        for (SortKey key : values()) {
+            if (key.name().equalsIgnoreCase(name)) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort key: " + name + ". Please enter isbn, year, price or title.");
+    }
+
+    /**
+     * Returns the name of the key as given on the command line.
+     *
+     * @return the option name, such as {@code isbn}
+     */
+    String getOptionName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the order of the books by this key.
+     *
+     * @return the comparator
+     */
+    Comparator<Book> comparator() {
+        return comparator;
+    }
+}
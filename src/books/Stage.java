@@ -0,0 +1,46 @@
+package books;
+
+/**
+ * The stages a record goes through, as measured by {@link FileMetrics}.
+ */
+enum Stage {
+
+    /** Reading a line from an input file. */
+    READ("read"),
+
+    /** Splitting a line into fields. */
+    SPLIT("split"),
+
+    /** Checking the number of fields and looking for empty fields. */
+    SYNTAX_CHECK("syntaxCheck"),
+
+    /** Finding the genre of a record. */
+    ROUTE("route"),
+
+    /** Parsing the price and year, validating the record, and building its book or reporting its error. */
+    VALIDATE("validate"),
+
+    /** Looking up the ISBN of a valid book to drop duplicates, including the first pass over the books. */
+    DEDUPLICATE("deduplicate"),
+
+    /** Writing the outputs of a record: its genre file line, its book or its syntax error. */
+    SERIALIZE("serialize"),
+
+    /** Opening the genre stores for viewing, which decodes legacy stores, and every store in a columnar catalog, in full. */
+    DESERIALIZE("deserialize");
+
+    private final String reportName;
+
+    Stage(String reportName) {
+        this.reportName = reportName;
+    }
+
+    /**
+     * Returns the name of the stage in the run report.
+     *
+     * @return the report name
+     */
+    String getReportName() {
+        return reportName;
+    }
+}
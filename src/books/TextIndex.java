@@ -0,0 +1,760 @@
+package books;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * An inverted index over the titles and authors of the books of a genre store.
+ * <p>
+ * Titles and authors are split into lower-case words of letters and digits. Each word maps to the sorted
+ * list of the records it occurs in, stored as the gaps between successive record numbers in variable-length
+ * bytes, so a word that occurs in most records takes about one byte per record. The words are kept sorted
+ * and found by binary search, and all posting lists share one byte array.
+ * <p>
+ * The index is built while Part 2 writes the store (see {@link BookStoreWriter}) and saved next to it as
+ * {@code <store>.terms}, together with the size and modification time of the store. A store written some
+ * other way, such as by an incremental run, is indexed the first time it is searched.
+ */
+final class TextIndex {
+
+    /** The extension added to the name of a store to name its saved index. */
+    static final String EXTENSION = ".terms";
+
+    /** The most postings an index holds, which bounds the memory used to build it. */
+    static final long MAX_POSTINGS = 1L << 27;
+
+    private static final int MAGIC = 0x5445524D; // "TERM"
+    private static final short VERSION = 1;
+
+    /** The offset in the saved index of the number of words and of posting bytes. */
+    private static final int SIZES_OFFSET = 28;
+
+    /**
+     * The most characters a word keeps; longer words are cut to it, so that every word fits in the 65,535
+     * bytes of modified UTF-8 that {@link DataOutputStream#writeUTF} writes, at up to three bytes a character.
+     */
+    static final int MAX_WORD_LENGTH = 65_535 / 3;
+
+    private final String[] terms;
+    private final int[] counts;
+    private final int[] offsets;
+    private final byte[] postings;
+
+    private TextIndex(String[] terms, int[] counts, int[] offsets, byte[] postings) {
+        this.terms = terms;
+        this.counts = counts;
+        this.offsets = offsets;
+        this.postings = postings;
+    }
+
+    /**
+     * A match of a search: a record and the number of search words it contains.
+     */
+    static final class Match {
+
+        private final int record;
+        private final int hits;
+
+        Match(int record, int hits) {
+            this.record = record;
+            this.hits = hits;
+        }
+
+        /**
+         * Returns the index of the record in its store.
+         *
+         * @return the record index
+         */
+        int getRecord() {
+            return record;
+        }
+
+        /**
+         * Returns the number of distinct search words found in the record.
+         *
+         * @return the number of hits
+         */
+        int getHits() {
+            return hits;
+        }
+    }
+
+    /**
+     * Returns the index of a store, loading the saved index if it matches the store and otherwise building
+     * it from the books of the store and saving it.
+     *
+     * @param source    the opened store
+     * @param storeFile the name of the store file
+     * @return the index, or null if the store has too many words to index
+     * @throws IOException if the store could not be read
+     */
+    static TextIndex open(BookSource source, String storeFile) throws IOException {
+        Path store = Path.of(storeFile);
+        TextIndex index = load(Path.of(storeFile + EXTENSION), Files.size(store),
+                Files.getLastModifiedTime(store).toMillis(), source.size());
+        if (index != null) {
+            return index;
+        }
+
+        Builder builder = new Builder();
+        for (int i = 0; i < source.size() && builder.isWithinLimit(); i++) {
+            builder.add(i, source.get(i));
+        }
+        if (!builder.isWithinLimit()) {
+            return null;
+        }
+        index = builder.build();
+        try {
+            index.save(store, source.size());
+        } catch (IOException e) {
+            // The index still works for this run; it is just built again next time
+        }
+        return index;
+    }
+
+    /**
+     * Finds the records that contain any of the words of a search, the records containing the most words
+     * first and records with as many words in store order.
+     *
+     * @param query the words to search for
+     * @param limit the largest number of matches returned
+     * @return the best matches
+     */
+    List<Match> search(String query, int limit) {
+        List<String> words = new ArrayList<>();
+        tokenize(query, words);
+
+        List<Integer> found = new ArrayList<>();
+        for (String word : new LinkedHashSet<>(words)) {
+            int term = Arrays.binarySearch(terms, word);
+            if (term >= 0) {
+                found.add(term);
+            }
+        }
+
+        if (found.size() == 1) {
+            // A single word needs no merging or ranking: the first records in store order are the answer,
+            // so only the start of its posting list is decoded
+            int[] records = decode(found.get(0), limit);
+            List<Match> matches = new ArrayList<>();
+            for (int record : records) {
+                matches.add(new Match(record, 1));
+            }
+            return matches;
+        }
+
+        // Decode the posting list of every word, then merge them in record order counting the hits
+        int[][] lists = new int[found.size()][];
+        int total = 0;
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = decode(found.get(i), counts[found.get(i)]);
+            total += lists[i].length;
+        }
+
+        int[] records = new int[total];
+        int[] hits = new int[total];
+        int[] positions = new int[lists.length];
+        int merged = 0;
+        while (true) {
+            int record = Integer.MAX_VALUE;
+            for (int i = 0; i < lists.length; i++) {
+                if (positions[i] < lists[i].length && lists[i][positions[i]] < record) {
+                    record = lists[i][positions[i]];
+                }
+            }
+            if (record == Integer.MAX_VALUE) {
+                break;
+            }
+            int recordHits = 0;
+            for (int i = 0; i < lists.length; i++) {
+                if (positions[i] < lists[i].length && lists[i][positions[i]] == record) {
+                    recordHits++;
+                    positions[i]++;
+                }
+            }
+            records[merged] = record;
+            hits[merged] = recordHits;
+            merged++;
+        }
+
+        // Take the records with the most hits first, each group in store order
+        List<Match> matches = new ArrayList<>();
+        for (int wanted = lists.length; wanted > 0 && matches.size() < limit; wanted--) {
+            for (int i = 0; i < merged && matches.size() < limit; i++) {
+                if (hits[i] == wanted) {
+                    matches.add(new Match(records[i], wanted));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the number of records containing a word.
+     *
+     * @param word the word
+     * @return the number of records containing the word
+     */
+    int count(String word) {
+        int term = Arrays.binarySearch(terms, word.toLowerCase(Locale.ROOT));
+        return term >= 0 ? counts[term] : 0;
+    }
+
+    /**
+     * Returns the number of distinct words in the index.
+     *
+     * @return the number of words
+     */
+    int size() {
+        return terms.length;
+    }
+
+    private int[] decode(int term, int limit) {
+        int[] records = new int[Math.min(counts[term], limit)];
+        int position = offsets[term];
+        int record = -1;
+        for (int i = 0; i < records.length; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            record += gap;
+            records[i] = record;
+        }
+        return records;
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits, cut to {@value #MAX_WORD_LENGTH} characters.
+     *
+     * @param text  the text to split
+     * @param words the list the words are added to
+     */
+    static void tokenize(String text, List<String> words) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                // Lower-casing can lengthen a word, so it is cut afterwards
+                words.add(word.length() > MAX_WORD_LENGTH ? word.substring(0, MAX_WORD_LENGTH) : word);
+                start = -1;
+            }
+        }
+    }
+
+    private static TextIndex load(Path file, long storeSize, long storeModified, int recordCount) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return null;
+            }
+            in.readShort();
+            if (in.readLong() != storeSize || in.readLong() != storeModified || in.readInt() != recordCount) {
+                return null;
+            }
+
+            int termCount = in.readInt();
+            int postingBytes = in.readInt();
+            String[] terms = new String[termCount];
+            int[] counts = new int[termCount];
+            int[] offsets = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                terms[i] = in.readUTF();
+                counts[i] = in.readInt();
+                offsets[i] = in.readInt();
+            }
+            byte[] postings = new byte[postingBytes];
+            in.readFully(postings);
+            return new TextIndex(terms, counts, offsets, postings);
+        } catch (IOException | RuntimeException e) {
+            // A damaged index is simply built again
+            return null;
+        }
+    }
+
+    /**
+     * Saves the index next to a store that has been completely written and closed.
+     */
+    private void save(Path store, long recordCount) throws IOException {
+        Path file = store.resolveSibling(store.getFileName() + EXTENSION);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (OutputStream stream = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+            writeHeader(out, store, recordCount, terms.length, postings.length);
+            for (int i = 0; i < terms.length; i++) {
+                out.writeUTF(terms[i]);
+                out.writeInt(counts[i]);
+                out.writeInt(offsets[i]);
+            }
+            out.write(postings);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeHeader(DataOutputStream out, Path store, long recordCount, int termCount,
+                                    int postingBytes) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+        out.writeLong(Files.size(store));
+        out.writeLong(Files.getLastModifiedTime(store).toMillis());
+        out.writeInt((int) recordCount);
+        out.writeInt(termCount);
+        out.writeInt(postingBytes);
+    }
+
+    /**
+     * Collects the words of books as they are written to a store, in record order.
+     * <p>
+     * A builder given a store keeps at most {@value #RUN_POSTINGS} postings or {@value #RUN_TERMS} words in
+     * memory. When either fills up, the posting lists collected are written to a run file next to the store
+     * in word order and collecting starts over, so each run covers the records after those of the run
+     * before. Saving merges the runs at most {@value #MAX_FAN_IN} at a time, joining the lists of each word
+     * in run order, and writes the index without holding it in memory. A builder without a store keeps every
+     * list in memory for {@link #build()}.
+     */
+    static final class Builder {
+
+        private static final int RUN_POSTINGS = 1 << 20;
+        private static final int RUN_TERMS = 1 << 16;
+        private static final int MAX_FAN_IN = 64;
+        private static final int BUFFER_SIZE = 16 * 1024;
+
+        private final Path store;
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final List<String> words = new ArrayList<>();
+        private final List<Path> runs = new ArrayList<>();
+        private final List<Path> files = new ArrayList<>();
+        private int runCount;
+        private long postingCount;
+        private long bufferedPostings;
+
+        /**
+         * Constructs a new Builder that keeps the index in memory.
+         */
+        Builder() {
+            this(null);
+        }
+
+        /**
+         * Constructs a new Builder that spills the index to run files next to a store.
+         *
+         * @param store the store file, or null to keep the index in memory
+         */
+        Builder(Path store) {
+            this.store = store;
+        }
+
+        /**
+         * Adds the words of the title and authors of a book.
+         *
+         * @param record the index of the book's record in the store, greater than that of any earlier book
+         * @param book   the book
+         * @throws IOException if a run could not be written
+         */
+        void add(int record, Book book) throws IOException {
+            if (!isWithinLimit()) {
+                return;
+            }
+            words.clear();
+            tokenize(book.getTitle(), words);
+            tokenize(book.getAuthors(), words);
+            for (String word : words) {
+                Postings list = postings.computeIfAbsent(word, w -> new Postings());
+                if (list.add(record)) {
+                    postingCount++;
+                    bufferedPostings++;
+                }
+            }
+            if (!isWithinLimit()) {
+                // The index is dropped, so nothing collected for it is worth keeping until the store is closed
+                discard();
+            } else if (store != null && (bufferedPostings >= RUN_POSTINGS || postings.size() >= RUN_TERMS)) {
+                spill();
+            }
+        }
+
+        /**
+         * Returns whether the index is still small enough to be kept. Once it grows past
+         * {@link TextIndex#MAX_POSTINGS} it is dropped, and the store is not indexed.
+         *
+         * @return true if the index can still be built
+         */
+        boolean isWithinLimit() {
+            return postingCount <= MAX_POSTINGS;
+        }
+
+        /**
+         * Returns the index of the books added so far, for a builder that keeps the index in memory.
+         *
+         * @return the index
+         */
+        TextIndex build() {
+            String[] terms = postings.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            int[] counts = new int[terms.length];
+            int[] offsets = new int[terms.length];
+            int size = 0;
+            for (Postings list : postings.values()) {
+                size += list.length;
+            }
+            byte[] bytes = new byte[size];
+            int position = 0;
+            for (int i = 0; i < terms.length; i++) {
+                Postings list = postings.get(terms[i]);
+                counts[i] = list.count;
+                offsets[i] = position;
+                System.arraycopy(list.bytes, 0, bytes, position, list.length);
+                position += list.length;
+            }
+            return new TextIndex(terms, counts, offsets, bytes);
+        }
+
+        /**
+         * Saves the index next to the store once it has been completely written and closed, and deletes the
+         * runs used to build it.
+         *
+         * @param recordCount the number of records in the store
+         * @throws IOException if the index could not be written
+         */
+        void save(long recordCount) throws IOException {
+            try {
+                if (runs.isEmpty()) {
+                    build().save(store, recordCount);
+                    return;
+                }
+                spill();
+                while (runs.size() > MAX_FAN_IN) {
+                    // Merge consecutive runs into longer runs until they can all be read at once
+                    List<Path> merged = new ArrayList<>();
+                    for (int start = 0; start < runs.size(); start += MAX_FAN_IN) {
+                        List<Path> group = runs.subList(start, Math.min(start + MAX_FAN_IN, runs.size()));
+                        Path run = createRun();
+                        merged.add(run);
+                        try (DataOutputStream out = openRun(run)) {
+                            mergeRuns(group, out);
+                        }
+                        for (Path done : group) {
+                            Files.delete(done);
+                        }
+                    }
+                    runs.clear();
+                    runs.addAll(merged);
+                }
+                writeMerged(recordCount);
+            } finally {
+                discard();
+            }
+        }
+
+        /**
+         * Drops the postings collected and deletes the runs written.
+         *
+         * @throws IOException if a run could not be deleted
+         */
+        void discard() throws IOException {
+            postings.clear();
+            bufferedPostings = 0;
+            runs.clear();
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            files.clear();
+        }
+
+        /**
+         * Names a run file next to the store. The names only depend on the store, so a run that stops part
+         * way leaves files that the next run writing the store replaces.
+         */
+        private Path createRun() {
+            Path run = store.resolveSibling(store.getFileName() + EXTENSION + "." + runCount++ + ".run");
+            files.add(run);
+            return run;
+        }
+
+        private static DataOutputStream openRun(Path run) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE));
+        }
+
+        /**
+         * Writes the posting lists collected to a new run in word order, after the number of lists, each as its
+         * word, its number of records, its last record and its bytes.
+         */
+        private void spill() throws IOException {
+            if (postings.isEmpty()) {
+                return;
+            }
+            String[] terms = postings.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            Path run = createRun();
+            runs.add(run);
+            try (DataOutputStream out = openRun(run)) {
+                out.writeInt(terms.length);
+                for (String term : terms) {
+                    Postings list = postings.get(term);
+                    out.writeUTF(term);
+                    out.writeInt(list.count);
+                    out.writeInt(list.last);
+                    out.writeInt(list.length);
+                    out.write(list.bytes, 0, list.length);
+                }
+            }
+            postings.clear();
+            bufferedPostings = 0;
+        }
+
+        /**
+         * Merges runs into one run, keeping the lists of a word that several runs hold apart, in run order.
+         */
+        private static void mergeRuns(List<Path> sources, DataOutputStream out) throws IOException {
+            List<RunReader> readers = new ArrayList<>();
+            try {
+                PriorityQueue<RunReader> heads = openReaders(sources, readers);
+                long lists = 0;
+                for (RunReader reader : readers) {
+                    lists += reader.lists;
+                }
+                // Every list holds at least one posting, and an index holds at most MAX_POSTINGS of them
+                out.writeInt((int) lists);
+                while (!heads.isEmpty()) {
+                    RunReader reader = heads.poll();
+                    out.writeUTF(reader.term);
+                    out.writeInt(reader.count);
+                    out.writeInt(reader.last);
+                    out.writeInt(reader.length);
+                    reader.copyBytes(out);
+                    if (reader.next()) {
+                        heads.add(reader);
+                    }
+                }
+            } finally {
+                for (RunReader reader : readers) {
+                    reader.in.close();
+                }
+            }
+        }
+
+        /**
+         * Merges the runs into the saved index. The words and their offsets are written after the header as
+         * the merge goes, and the joined posting lists to a run of their own, which is copied after them.
+         */
+        private void writeMerged(long recordCount) throws IOException {
+            Path file = store.resolveSibling(store.getFileName() + EXTENSION);
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Path postingsRun = createRun();
+            int termCount = 0;
+            long postingBytes = 0;
+
+            try {
+                List<RunReader> readers = new ArrayList<>();
+                try (OutputStream stream = Files.newOutputStream(temp);
+                     DataOutputStream index = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+                    writeHeader(index, store, recordCount, 0, 0);
+                    try (DataOutputStream lists = openRun(postingsRun)) {
+                        PriorityQueue<RunReader> heads = openReaders(runs, readers);
+                        while (!heads.isEmpty()) {
+                            String term = heads.peek().term;
+                            long offset = postingBytes;
+                            int count = 0;
+                            int last = -1;
+                            while (!heads.isEmpty() && heads.peek().term.equals(term)) {
+                                RunReader reader = heads.poll();
+                                postingBytes += reader.copyPostings(lists, last);
+                                count += reader.count;
+                                last = reader.last;
+                                if (reader.next()) {
+                                    heads.add(reader);
+                                }
+                            }
+                            index.writeUTF(term);
+                            index.writeInt(count);
+                            index.writeInt((int) offset);
+                            termCount++;
+                        }
+                    } finally {
+                        for (RunReader reader : readers) {
+                            reader.in.close();
+                        }
+                    }
+                    Files.copy(postingsRun, index);
+                }
+
+                // The number of words and of posting bytes are only known now
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer sizes = ByteBuffer.allocate(2 * Integer.BYTES);
+                    sizes.putInt(termCount).putInt((int) postingBytes).flip();
+                    channel.write(sizes, SIZES_OFFSET);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private static PriorityQueue<RunReader> openReaders(List<Path> sources, List<RunReader> readers)
+                throws IOException {
+            PriorityQueue<RunReader> heads = new PriorityQueue<>((a, b) -> {
+                int order = a.term.compareTo(b.term);
+                return order != 0 ? order : Integer.compare(a.index, b.index);
+            });
+            for (int i = 0; i < sources.size(); i++) {
+                RunReader reader = new RunReader(sources.get(i), i);
+                readers.add(reader);
+                if (reader.next()) {
+                    heads.add(reader);
+                }
+            }
+            return heads;
+        }
+    }
+
+    /**
+     * Reads the posting lists of a run one at a time. The bytes of each list have to be copied before the
+     * next list is read. A run is read for exactly the number of lists it starts with, so a run cut short is
+     * an error rather than a shorter run.
+     */
+    private static final class RunReader {
+        final DataInputStream in;
+        final int index;
+        final int lists;
+        private int remaining;
+        String term;
+        int count;
+        int last;
+        int length;
+        private final byte[] buffer = new byte[4096];
+
+        RunReader(Path run, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), Builder.BUFFER_SIZE));
+            this.index = index;
+            try {
+                this.lists = in.readInt();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+            this.remaining = lists;
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            term = in.readUTF();
+            count = in.readInt();
+            last = in.readInt();
+            length = in.readInt();
+            return true;
+        }
+
+        /**
+         * Copies the bytes of the list as they are.
+         */
+        void copyBytes(DataOutputStream out) throws IOException {
+            transfer(out, length);
+        }
+
+        /**
+         * Copies the list after the list of the same word in an earlier run, whose last record is given.
+         * Each run starts its lists from record -1, so only the first gap changes.
+         *
+         * @return the number of bytes written
+         */
+        int copyPostings(DataOutputStream out, int previous) throws IOException {
+            int first = -1;
+            int read = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                read++;
+                first += (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            int written = 0;
+            int gap = first - previous;
+            while (gap >= 0x80) {
+                out.write(gap | 0x80);
+                gap >>>= 7;
+                written++;
+            }
+            out.write(gap);
+            written++;
+            transfer(out, length - read);
+            return written + length - read;
+        }
+
+        private void transfer(DataOutputStream out, int bytes) throws IOException {
+            while (bytes > 0) {
+                int chunk = Math.min(bytes, buffer.length);
+                in.readFully(buffer, 0, chunk);
+                out.write(buffer, 0, chunk);
+                bytes -= chunk;
+            }
+        }
+    }
+
+    /**
+     * The posting list of one word while the index is built.
+     */
+    private static final class Postings {
+
+        private byte[] bytes = new byte[4];
+        private int length;
+        private int count;
+        private int last = -1;
+
+        /**
+         * Adds a record, unless it is the record added last.
+         *
+         * @return true if the record was added
+         */
+        boolean add(int record) {
+            if (record == last) {
+                return false;
+            }
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int gap = record - last;
+            while (gap >= 0x80) {
+                bytes[length++] = (byte) (gap | 0x80);
+                gap >>>= 7;
+            }
+            bytes[length++] = (byte) gap;
+            last = record;
+            count++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package books;
+
+/**
+ * Exception thrown when there are too few fields in a record.
+ */
+class TooFewFieldsException extends RecordException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new TooFewFieldsException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public TooFewFieldsException(String message) {
+        super(message);
+    }
+}
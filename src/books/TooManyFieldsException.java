@@ -0,0 +1,18 @@
+package books;
+
+/**
+ * Exception thrown when there are too many fields in a record.
+ */
+class TooManyFieldsException extends RecordException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new TooManyFieldsException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public TooManyFieldsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package books;
+
+/**
+ * Exception thrown when the genre of a book is unknown.
+ */
+class UnknownGenreException extends RecordException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new UnknownGenreException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public UnknownGenreException(String message) {
+        super(message);
+    }
+}
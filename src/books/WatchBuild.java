@@ -0,0 +1,191 @@
+package books;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the genre files and stores up to date with the input directory for as long as the program runs.
+ * <p>
+ * The outputs are first brought up to date with an {@link IncrementalBuild}. A {@link WatchService} then
+ * reports every {@code books*.csv.txt} file created or modified in the directory. Once such a file has
+ * stopped changing for {@value #QUIET_MILLIS} milliseconds, a file that is not listed yet is added to the
+ * end of part1_input_file_names.txt and the incremental build runs again. A new file only has its own
+ * records parsed, validated and appended to the existing outputs; an updated file is parsed again and the
+ * outputs are put back together from the cached results of the other files.
+ */
+class WatchBuild {
+
+    /** How long a file has to stay unchanged before it is processed. */
+    static final long QUIET_MILLIS = 1000;
+
+    private static final String INPUT_LIST_FILE = "part1_input_file_names.txt";
+    private static final long POLL_MILLIS = 250;
+
+    private final RunOptions options;
+    private final String[][] genreToFileMapping;
+    private final RunMetrics metrics;
+    private final PrintStream console;
+    private final Path directory;
+    private final PathMatcher inputFiles;
+
+    /**
+     * Constructs a new WatchBuild watching the current directory.
+     *
+     * @param options            the options controlling how errors are reported
+     * @param genreToFileMapping a 2D array mapping genre names to corresponding file names
+     * @param metrics            the metrics of the run, which cover every input file processed while watching
+     * @param console            the stream used for console messages
+     */
+    WatchBuild(RunOptions options, String[][] genreToFileMapping, RunMetrics metrics, PrintStream console) {
+        this.options = options;
+        this.genreToFileMapping = genreToFileMapping;
+        this.metrics = metrics;
+        this.console = console;
+        this.directory = Path.of("").toAbsolutePath();
+        this.inputFiles = FileSystems.getDefault().getPathMatcher("glob:books*.csv.txt");
+    }
+
+    /**
+     * Brings the outputs up to date, then keeps them up to date until the directory can no longer be watched
+     * or the thread is interrupted.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void run() throws IOException {
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            // Register before the first build, so a file that lands while it runs is not missed
+            WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+
+            ingest(unlistedInputFiles());
+
+            console.println("Watching " + directory + " for new or updated books*.csv.txt files. Stop with Ctrl-C.");
+
+            Map<String, Long> pending = new LinkedHashMap<>();
+            while (key.isValid()) {
+                WatchKey signalled = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (signalled != null) {
+                    for (WatchEvent<?> event : signalled.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // Events were lost, so look at every input file; unchanged ones cost one stat each
+                            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                                for (Path file : files) {
+                                    if (inputFiles.matches(file.getFileName())) {
+                                        pending.put(file.getFileName().toString(), System.currentTimeMillis());
+                                    }
+                                }
+                            }
+                        } else {
+                            Path file = (Path) event.context();
+                            if (inputFiles.matches(file)) {
+                                pending.put(file.toString(), System.currentTimeMillis());
+                            }
+                        }
+                    }
+                    signalled.reset();
+                }
+
+                List<String> ready = new ArrayList<>();
+                long now = System.currentTimeMillis();
+                pending.entrySet().removeIf(entry -> {
+                    boolean quiet = now - entry.getValue() >= QUIET_MILLIS;
+                    if (quiet && Files.isRegularFile(directory.resolve(entry.getKey()))) {
+                        ready.add(entry.getKey());
+                    }
+                    return quiet;
+                });
+                if (!ready.isEmpty()) {
+                    ingest(ready);
+                }
+            }
+            console.println("The directory " + directory + " can no longer be watched.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lists the files that are not in the input list yet and runs the incremental build.
+     */
+    private void ingest(List<String> fileNames) throws IOException {
+        long start = System.nanoTime();
+        List<String> listed = Main.readInputFileNames();
+        List<String> added = new ArrayList<>();
+        for (String fileName : fileNames) {
+            if (!isListed(listed, fileName)) {
+                added.add(fileName);
+            }
+        }
+        if (!added.isEmpty()) {
+            listed.addAll(added);
+            writeInputList(listed);
+        }
+
+        new IncrementalBuild(options, genreToFileMapping, metrics, console).run(listed);
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (!fileNames.isEmpty()) {
+            console.println("Ingested " + String.join(", ", fileNames) + " in " + millis + " ms.");
+        }
+    }
+
+    private List<String> unlistedInputFiles() throws IOException {
+        List<String> listed = Main.readInputFileNames();
+        List<String> unlisted = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (inputFiles.matches(file.getFileName()) && Files.isRegularFile(file) && !isListed(listed, fileName)) {
+                    unlisted.add(fileName);
+                }
+            }
+        }
+        unlisted.sort(null);
+        return unlisted;
+    }
+
+    private boolean isListed(List<String> listed, String fileName) {
+        for (String name : listed) {
+            if (directory.resolve(name.trim()).normalize().equals(directory.resolve(fileName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rewrites the input list with a new set of file names, keeping its line endings, and replaces the old
+     * list in one step so that a reader never sees half of it.
+     */
+    private static void writeInputList(List<String> fileNames) throws IOException {
+        Path file = Path.of(INPUT_LIST_FILE);
+        String old = Files.readString(file, Charset.defaultCharset());
+        String lineSeparator = old.contains("\r\n") ? "\r\n" : "\n";
+
+        StringBuilder content = new StringBuilder();
+        content.append(fileNames.size()).append(lineSeparator);
+        for (String fileName : fileNames) {
+            content.append(fileName).append(lineSeparator);
+        }
+
+        Path temp = file.resolveSibling(INPUT_LIST_FILE + ".tmp");
+        Files.writeString(temp, content, Charset.defaultCharset());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,130 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round-trip tests of the book store formats measured by the benchmarks module.
+ */
+class BookStoreTest {
+
+    private static final Book[] BOOKS = {
+            new Book("Watchmen", "Alan Moore, Dave Gibbons", 19.99, "0930289234", Genre.CCB, 1987),
+            new Book("Maus", "Art Spiegelman", 0.0, "9780394747231", Genre.CCB, 1986),
+            new Book("Ünïcödé \"quoted\", title", "", 1234567.5, "030640615X", Genre.CCB, 2024),
+            new Book("Watchmen", "Alan Moore, Dave Gibbons", 24.5, "9780930289232", Genre.CCB, 2005),
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void plainStoreRoundTrips() throws Exception {
+        assertRoundTrip(false, false);
+    }
+
+    @Test
+    void dictionaryStoreRoundTrips() throws Exception {
+        assertRoundTrip(true, false);
+    }
+
+    @Test
+    void compressedStoreRoundTrips() throws Exception {
+        assertRoundTrip(true, true);
+    }
+
+    @Test
+    void emptyStoreRoundTrips() throws Exception {
+        String store = dir.resolve("empty.ser").toString();
+        new BookStoreWriter(store).close();
+
+        try (BookStoreReader reader = new BookStoreReader(store)) {
+            assertEquals(0, reader.getRecordCount());
+            assertEquals(0, reader.readAll().length);
+        }
+        assertEquals(0, BookSource.open(store).size());
+    }
+
+    @Test
+    void legacySerializedFileIsRead() throws Exception {
+        // Earlier versions wrote Book from the default package with ObjectOutputStream, its genre a string
+        assertEquals(String.class, ObjectStreamClass.lookup(Book.class).getField("genre").getType());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            for (Book book : BOOKS) {
+                out.writeObject(book);
+            }
+        }
+        Path store = dir.resolve("legacy.ser");
+        Files.write(store, renameClass(bytes.toByteArray(), "books.Book", "Book"));
+
+        try (BookStoreReader reader = new BookStoreReader(store.toString())) {
+            assertTrue(reader.isLegacy());
+            assertArrayEquals(BOOKS, reader.readAll());
+        }
+        BookSource source = BookSource.open(store.toString());
+        assertEquals(BOOKS.length, source.size());
+        assertEquals(BOOKS[2], source.get(2));
+    }
+
+    private void assertRoundTrip(boolean dictionaryEncoded, boolean compressed) throws IOException, ClassNotFoundException {
+        String store = dir.resolve("store.ser").toString();
+        try (BookStoreWriter writer = new BookStoreWriter(store, dictionaryEncoded, compressed)) {
+            for (Book book : BOOKS) {
+                writer.write(book);
+            }
+            assertEquals(BOOKS.length, writer.getRecordCount());
+        }
+
+        try (BookStoreReader reader = new BookStoreReader(store)) {
+            assertEquals(BOOKS.length, reader.getRecordCount());
+            assertArrayEquals(BOOKS, reader.readAll());
+        }
+        for (CatalogMode mode : CatalogMode.values()) {
+            BookSource source = BookSource.open(store, mode);
+            Book[] books = new Book[source.size()];
+            Arrays.setAll(books, source::get);
+            assertArrayEquals(BOOKS, books, mode.name());
+        }
+    }
+
+    /**
+     * Replaces a class name in a serialization stream, where it is written with writeUTF.
+     */
+    private static byte[] renameClass(byte[] stream, String from, String to) {
+        byte[] target = utf(from);
+        byte[] replacement = utf(to);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < stream.length; i++) {
+            if (i + target.length <= stream.length
+                    && Arrays.equals(stream, i, i + target.length, target, 0, target.length)) {
+                out.writeBytes(replacement);
+                i += target.length - 1;
+            } else {
+                out.write(stream[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] utf(String name) {
+        byte[] chars = name.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[chars.length + 2];
+        bytes[1] = (byte) chars.length;
+        System.arraycopy(chars, 0, bytes, 2, chars.length);
+        return bytes;
+    }
+}
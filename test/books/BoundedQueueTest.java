@@ -0,0 +1,130 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link BoundedQueue} on its own and under many producers and consumers.
+ */
+class BoundedQueueTest {
+
+    @Test
+    void roundsTheCapacityUpToAPowerOfTwo() {
+        assertEquals(1, new BoundedQueue<Integer>(1).capacity());
+        assertEquals(8, new BoundedQueue<Integer>(5).capacity());
+        assertEquals(64, new BoundedQueue<Integer>(64).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new BoundedQueue<Integer>(0));
+        assertThrows(IllegalArgumentException.class, () -> new BoundedQueue<Integer>((1 << 30) + 1));
+    }
+
+    @Test
+    void offersUntilFullAndPollsInOrderUntilEmpty() {
+        BoundedQueue<Integer> queue = new BoundedQueue<>(4);
+        // Several laps of the ring
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.offer(lap * 4 + i));
+            }
+            assertFalse(queue.offer(-1));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(lap * 4 + i, queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    void takeWaitsForAnElementAndCanBeInterrupted() throws Exception {
+        BoundedQueue<Integer> queue = new BoundedQueue<>(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> taken = executor.submit(queue::take);
+            Thread.sleep(50);
+            assertFalse(taken.isDone());
+            queue.put(7);
+            assertEquals(7, taken.get(10, TimeUnit.SECONDS));
+
+            CountDownLatch waiting = new CountDownLatch(1);
+            Future<Integer> interrupted = executor.submit(() -> {
+                waiting.countDown();
+                return queue.take();
+            });
+            waiting.await();
+            interrupted.cancel(true);
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void deliversEveryElementOnceInOrderPerProducerUnderContention() throws Exception {
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 200_000;
+        // A small ring, so that producers and consumers keep lapping each other and waiting
+        BoundedQueue<Long> queue = new BoundedQueue<>(8);
+        AtomicIntegerArray received = new AtomicIntegerArray(producers * perProducer);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        try {
+            List<Future<?>> producing = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                long first = (long) p * perProducer;
+                producing.add(executor.submit(() -> {
+                    for (long i = 0; i < perProducer; i++) {
+                        queue.put(first + i);
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> consuming = new ArrayList<>();
+            for (int c = 0; c < consumers; c++) {
+                consuming.add(executor.submit(() -> {
+                    long[] last = new long[producers];
+                    java.util.Arrays.fill(last, -1);
+                    for (long element; (element = queue.take()) >= 0; ) {
+                        int producer = (int) (element / perProducer);
+                        // A consumer sees the elements of each producer in the order they were put
+                        assertTrue(element > last[producer], "out of order: " + element + " after " + last[producer]);
+                        last[producer] = element;
+                        received.incrementAndGet((int) element);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : producing) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+            for (int c = 0; c < consumers; c++) {
+                queue.put(-1L);
+            }
+            for (Future<?> future : consuming) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < received.length(); i++) {
+            assertEquals(1, received.get(i), "element " + i);
+        }
+        assertNull(queue.poll());
+    }
+}
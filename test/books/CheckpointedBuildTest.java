@@ -0,0 +1,140 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Stops checkpointed runs part way and checks that resuming them gives the same files as a run that was
+ * never stopped. Each run is a {@link ChildRuns child JVM}, stopped by halting it when a given console
+ * message is printed.
+ */
+class CheckpointedBuildTest {
+
+    /** The exit code of a run halted on purpose. */
+    private static final int STOPPED = 3;
+
+    @TempDir
+    Path dir;
+
+    private Path reference;
+    private Path resumed;
+
+    @BeforeEach
+    void buildReference() throws Exception {
+        reference = ChildRuns.generate(dir.resolve("reference"));
+        resumed = ChildRuns.generate(dir.resolve("resumed"));
+        assertEquals(0, run(reference, false, null, 0).exitCode);
+    }
+
+    @Test
+    void resumesInPart1() throws Exception {
+        assertEquals(STOPPED, run(resumed, false, "syntax error in file: books1996.csv.txt", 30).exitCode);
+        assertTrue(Files.exists(resumed.resolve(Checkpoint.FILE_NAME)));
+
+        ChildRuns.Result result = run(resumed, true, null, 0);
+        assertEquals(0, result.exitCode, result.output);
+        assertTrue(result.output.contains("Resuming Part 1 at byte"), result.output);
+        ChildRuns.assertSameFiles(reference, resumed);
+    }
+
+    @Test
+    void resumesInPart2() throws Exception {
+        assertEquals(STOPPED, run(resumed, false, "semantic error in file: Movies_TV.csv", 40).exitCode);
+
+        ChildRuns.Result result = run(resumed, true, null, 0);
+        assertEquals(0, result.exitCode, result.output);
+        assertTrue(result.output.contains("Resuming Part 2 at byte"), result.output);
+        ChildRuns.assertSameFiles(reference, resumed);
+    }
+
+    @Test
+    void resumesARunThatWasResumedAndStoppedAgain() throws Exception {
+        assertEquals(STOPPED, run(resumed, false, "syntax error in file: books1995.csv.txt", 50).exitCode);
+        assertEquals(STOPPED, run(resumed, true, "semantic error in file: Old_Time_Radio.csv", 20).exitCode);
+
+        ChildRuns.Result result = run(resumed, true, null, 0);
+        assertEquals(0, result.exitCode, result.output);
+        assertTrue(result.output.contains("Resuming Part 2 at byte"), result.output);
+        ChildRuns.assertSameFiles(reference, resumed);
+    }
+
+    @Test
+    void resumesWhilePart1IsCommitting() throws Exception {
+        assertResumesCommit("Movies_TV.csv.txt", 1);
+    }
+
+    @Test
+    void resumesWhilePart2IsCommitting() throws Exception {
+        assertResumesCommit("Movies_TV.csv.ser", 2);
+    }
+
+    /**
+     * Stops a run by making the rename of one of its outputs fail, with a directory in the way, and resumes it
+     * once the directory is gone.
+     */
+    private void assertResumesCommit(String output, int part) throws Exception {
+        Path blocker = resumed.resolve(output);
+        Files.createDirectories(blocker.resolve("blocker"));
+        ChildRuns.Result stopped = run(resumed, false, null, 0);
+        assertNotEquals(0, stopped.exitCode, stopped.output);
+        assertNotEquals(STOPPED, stopped.exitCode, stopped.output);
+        Files.delete(blocker.resolve("blocker"));
+        Files.delete(blocker);
+
+        ChildRuns.Result result = run(resumed, true, null, 0);
+        assertEquals(0, result.exitCode, result.output);
+        assertTrue(result.output.contains("Resuming Part " + part + " where it was renaming its output files."),
+                result.output);
+        ChildRuns.assertSameFiles(reference, resumed);
+    }
+
+    /**
+     * Runs Parts 1 and 2 with a checkpoint every few records, halting the run when the given message has been
+     * printed the given number of times.
+     */
+    private static ChildRuns.Result run(Path directory, boolean resume, String stopMessage, int stopCount)
+            throws IOException, InterruptedException {
+        if (stopMessage == null) {
+            return ChildRuns.run(directory, Child.class, Boolean.toString(resume));
+        }
+        return ChildRuns.run(directory, Child.class, Boolean.toString(resume), stopMessage, Integer.toString(stopCount));
+    }
+
+    /**
+     * Runs Parts 1 and 2 in the working directory: {@code java Child RESUME [MESSAGE COUNT]}.
+     */
+    static final class Child {
+
+        private static int seen;
+
+        public static void main(String[] args) throws IOException {
+            boolean resume = Boolean.parseBoolean(args[0]);
+            String stopMessage = args.length > 1 ? args[1] : null;
+            int stopCount = args.length > 1 ? Integer.parseInt(args[2]) : 0;
+
+            PrintStream console = new PrintStream(System.out, true) {
+                @Override
+                public void println(String message) {
+                    if (stopMessage != null && message.contains(stopMessage) && ++seen == stopCount) {
+                        // As abrupt as a kill: no shutdown hooks, and nothing buffered is flushed
+                        Runtime.getRuntime().halt(STOPPED);
+                    }
+                    super.println(message);
+                }
+            };
+            RunOptions options = RunOptions.parse(new String[] {"--checkpoint"});
+            new CheckpointedBuild(options, Main.initializeGenreMappings(), new RunMetrics(false), console, 0)
+                    .run(resume);
+        }
+    }
+}
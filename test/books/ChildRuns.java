@@ -0,0 +1,134 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs the program in a JVM of its own, for the tests of the builds that read and write the working
+ * directory, and compares the files that the runs leave.
+ */
+final class ChildRuns {
+
+    /** Where the index headers hold the modification time of their store. */
+    private static final int STAMP_OFFSET = 16;
+
+    private ChildRuns() {
+    }
+
+    /**
+     * The exit code and console output of a run.
+     */
+    static final class Result {
+        final int exitCode;
+        final String output;
+
+        Result(int exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+    }
+
+    /**
+     * Writes a generated data set of three year files, with their list of input files, to a new directory.
+     *
+     * @param directory the directory to create
+     * @param options   more options of {@link DatasetGenerator}, such as the share of quoted titles
+     * @return the directory
+     * @throws IOException if the files could not be written
+     */
+    static Path generate(Path directory, String... options) throws IOException {
+        List<String> args = new ArrayList<>(List.of("--output=" + directory, "--files=3", "--records=6000", "--seed=5"));
+        args.addAll(Arrays.asList(options));
+        PrintStream out = System.out;
+        try {
+            System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+            DatasetGenerator.main(args.toArray(new String[0]));
+        } finally {
+            System.setOut(out);
+        }
+        return directory;
+    }
+
+    /**
+     * Runs the main method of a class in another JVM, in the given working directory.
+     *
+     * @param directory the working directory
+     * @param mainClass the class to run, from the main or the test classes
+     * @param args      the arguments of the main method
+     * @return the exit code and output of the run
+     * @throws IOException          if the JVM could not be started
+     * @throws InterruptedException if the thread was interrupted while waiting for the run
+     */
+    static Result run(Path directory, Class<?> mainClass, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(location(Main.class) + File.pathSeparator + location(ChildRuns.class));
+        command.add(mainClass.getName());
+        command.addAll(Arrays.asList(args));
+
+        Process process = new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).start();
+        // Part 3 reads its menu choices from the keyboard; x leaves the main menu
+        try (OutputStream input = process.getOutputStream()) {
+            input.write(("x" + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] output = process.getInputStream().readAllBytes();
+        assertTrue(process.waitFor(2, TimeUnit.MINUTES));
+        return new Result(process.exitValue(), new String(output, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks that two directories hold the same files with the same contents. The index headers are compared
+     * apart from the time stamp of their store, which has to be that of the store next to them.
+     *
+     * @param expected the directory of the reference run
+     * @param actual   the directory of the run checked
+     * @throws IOException if a file could not be read
+     */
+    static void assertSameFiles(Path expected, Path actual) throws IOException {
+        List<String> names = list(expected);
+        assertEquals(names, list(actual));
+        for (String name : names) {
+            byte[] expectedBytes = Files.readAllBytes(expected.resolve(name));
+            byte[] actualBytes = Files.readAllBytes(actual.resolve(name));
+            if (name.endsWith(TextIndex.EXTENSION) || name.endsWith(RangeIndex.EXTENSION)) {
+                Path store = actual.resolve(name.substring(0, name.lastIndexOf('.')));
+                assertEquals(Files.getLastModifiedTime(store).toMillis(),
+                        ByteBuffer.wrap(actualBytes).getLong(STAMP_OFFSET), name);
+                Arrays.fill(expectedBytes, STAMP_OFFSET, STAMP_OFFSET + Long.BYTES, (byte) 0);
+                Arrays.fill(actualBytes, STAMP_OFFSET, STAMP_OFFSET + Long.BYTES, (byte) 0);
+            }
+            assertArrayEquals(expectedBytes, actualBytes, name);
+        }
+    }
+
+    private static List<String> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static String location(Class<?> type) {
+        try {
+            return Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
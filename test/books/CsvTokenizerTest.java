@@ -0,0 +1,106 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks {@link CsvTokenizer} against the quote-aware {@code String.split} it replaced.
+ */
+class CsvTokenizerTest {
+
+    /** The regular expression the records were split with before the tokenizer. */
+    private static final String SPLIT_REGEX = ",(?=([^\"]*\"[^\"]*\")*[^\"]*$)";
+
+    private final CsvTokenizer tokenizer = new CsvTokenizer();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "a",
+            "Watchmen,Alan Moore,19.99,0930289234,CCB,1987",
+            // Quoted commas
+            "\"Batman, Year One\",Frank Miller,9.99,0930289331,CCB,1988",
+            "\"a,b\",\"c,d,e\",\",\"",
+            "\"He said \"\"stop, now\"\"\",x",
+            // Trailing and leading empty fields
+            "a,b,,,",
+            ",,,",
+            ",",
+            ",a",
+            "a,,b",
+            "\"\",\"\"",
+            "a,\"\",",
+            // Unbalanced quotes
+            "\"a,b",
+            "a,\"b,c",
+            "a\",b,c",
+            "\"\"\",a,b",
+            "a,b\",\"c,d\"",
+    })
+    void matchesRegexSplit(String line) {
+        assertSameFields(line);
+    }
+
+    @Test
+    void matchesRegexSplitOnRandomLines() {
+        Random random = new Random(42);
+        char[] alphabet = {'a', 'b', ',', ',', '"', ' '};
+        for (int n = 0; n < 20_000; n++) {
+            char[] line = new char[random.nextInt(16)];
+            for (int i = 0; i < line.length; i++) {
+                line[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            assertSameFields(new String(line));
+        }
+    }
+
+    @Test
+    void growsBeyondInitialCapacityAndReusesBuffers() {
+        String wide = "0,1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17";
+        assertEquals(18, tokenizer.tokenize(wide));
+        assertEquals("17", tokenizer.field(17));
+
+        assertEquals(2, tokenizer.tokenize("x,y"));
+        assertEquals("x,y", tokenizer.line());
+        assertEquals("y", tokenizer.field(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> tokenizer.field(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> tokenizer.start(-1));
+    }
+
+    @Test
+    void fieldAccessors() {
+        tokenizer.tokenize("\"Batman, Year One\",,CCB,\"\"");
+
+        assertEquals(4, tokenizer.fieldCount());
+        assertEquals("\"Batman, Year One\"", tokenizer.field(0));
+        assertEquals("Batman, Year One", tokenizer.unquotedField(0));
+        assertEquals(0, tokenizer.start(0));
+        assertEquals(18, tokenizer.end(0));
+        assertTrue(tokenizer.isEmpty(1));
+        assertFalse(tokenizer.isEmpty(2));
+        assertTrue(tokenizer.fieldEquals(2, "CCB"));
+        assertFalse(tokenizer.fieldEquals(2, "CC"));
+        assertFalse(tokenizer.isEmpty(3));
+        assertEquals("", tokenizer.unquotedField(3));
+    }
+
+    private void assertSameFields(String line) {
+        String[] expected = line.split(SPLIT_REGEX);
+        int count = tokenizer.tokenize(line);
+
+        String[] actual = new String[count];
+        for (int i = 0; i < count; i++) {
+            actual[i] = tokenizer.field(i);
+        }
+        assertArrayEquals(expected, actual, () -> "fields of [" + line + "]");
+    }
+}
@@ -0,0 +1,112 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link ErrorSink}, including a writer that fails on its background thread.
+ */
+class ErrorSinkTest {
+
+    /** Enough messages to fill every pending batch several times over. */
+    private static final int MESSAGES = 200_000;
+
+    private static final String MESSAGE = "syntax error in file: books.csv: a message long enough to fill batches";
+
+    @Test
+    void writesEveryMessageAndCountsThem() throws IOException {
+        StringWriter file = new StringWriter();
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        ErrorSink sink = new ErrorSink("errors", file, ConsoleMode.SUMMARY, 1, new PrintStream(console, true));
+        for (int i = 0; i < MESSAGES; i++) {
+            sink.log(MESSAGE);
+        }
+        sink.flush();
+        assertEquals(MESSAGES * (MESSAGE.length() + System.lineSeparator().length()), file.getBuffer().length());
+        sink.close();
+        assertEquals("errors: " + MESSAGES + " records with errors" + System.lineSeparator(), console.toString());
+    }
+
+    @Test
+    void runtimeExceptionOfTheWriterIsReportedWithoutBlocking() {
+        IllegalStateException cause = new IllegalStateException("disk gone");
+        assertSame(cause, failureReported(cause).getCause());
+    }
+
+    @Test
+    void errorOfTheWriterIsReportedWithoutBlocking() {
+        AssertionError cause = new AssertionError("writer broken");
+        assertSame(cause, failureReported(cause).getCause());
+    }
+
+    @Test
+    void ioExceptionOfTheWriterIsReportedAsIs() {
+        IOException cause = new IOException("disk full");
+        assertSame(cause, failureReported(cause));
+    }
+
+    /**
+     * Logs more messages than the queue holds to a writer that throws, and checks that flush and close
+     * return with the same failure instead of waiting for the writer thread.
+     */
+    private static IOException failureReported(Throwable cause) {
+        return assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            ErrorSink sink = new ErrorSink("errors", new FailingWriter(cause), ConsoleMode.OFF, 1,
+                    new PrintStream(OutputStream.nullOutputStream()));
+            for (int i = 0; i < MESSAGES; i++) {
+                sink.log(MESSAGE);
+            }
+            IOException failure = assertThrows(IOException.class, sink::flush);
+            assertSame(failure, assertThrows(IOException.class, sink::close));
+            return failure;
+        });
+    }
+
+    /**
+     * A writer that throws from every write, flush and close.
+     */
+    private static final class FailingWriter extends Writer {
+        private final Throwable failure;
+
+        FailingWriter(Throwable failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            fail();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            fail();
+        }
+
+        @Override
+        public void close() throws IOException {
+            fail();
+        }
+
+        private void fail() throws IOException {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw (Error) failure;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that {@link ExternalBookSorter} gives the order of a stable in-memory sort, whether or not it spills.
+ */
+class ExternalBookSorterTest {
+
+    /** The smallest budget: a run every few books, and two runs merged at a time. */
+    private static final long TINY_BUDGET = 1_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sortsInMemoryWithinBudget() throws Exception {
+        List<Book> books = randomBooks(500, 7);
+        assertEquals(0, sortAndCheck(books, SortKey.YEAR, 64L << 20));
+    }
+
+    @Test
+    void mergesManyRunsInSeveralPassesStably() throws Exception {
+        List<Book> books = randomBooks(2_000, 11);
+        for (SortKey key : SortKey.values()) {
+            int runs = sortAndCheck(books, key, TINY_BUDGET);
+            // With two runs merged at a time, more than four runs take at least two passes before the last
+            assertTrue(runs > 4, key + " spilled " + runs + " runs");
+        }
+    }
+
+    @Test
+    void keepsTheOrderOfEqualKeysAcrossRuns() throws Exception {
+        // Every book has the same year, so the output has to be the input order
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            books.add(new Book("Book " + i, "Author", 1.0, "0306406152", Genre.CCB, 2000));
+        }
+        assertTrue(sortAndCheck(books, SortKey.YEAR, TINY_BUDGET) > 4);
+    }
+
+    @Test
+    void sortsTheIsbn10AndIsbn13OfABookTogether() throws Exception {
+        List<Book> books = List.of(
+                new Book("B", "", 1.0, "9780930289232", Genre.CCB, 2000),
+                new Book("C", "", 1.0, "0306406152", Genre.CCB, 2000),
+                new Book("A", "", 1.0, "0930289234", Genre.CCB, 2000));
+        List<Book> sorted = read(sort(books, SortKey.ISBN, TINY_BUDGET));
+
+        // 978-0-306-40615-7 comes before 978-0-930289-23-2, whose ISBN-10 sorts first as written
+        assertEquals(List.of("C", "A", "B"), sorted.stream().map(Book::getTitle).toList());
+    }
+
+    @Test
+    void sortsAnEmptyGenre() throws Exception {
+        assertEquals(0, sortAndCheck(List.of(), SortKey.PRICE, TINY_BUDGET));
+    }
+
+    /**
+     * Sorts the books with the sorter and with List.sort, checks that both give the same order and that no run
+     * file is left, and returns the number of runs spilled.
+     */
+    private int sortAndCheck(List<Book> books, SortKey key, long budget) throws IOException, ClassNotFoundException {
+        Path store = dir.resolve(key + ".ser");
+        ExternalBookSorter sorter = new ExternalBookSorter(key, budget, dir);
+        for (Book book : books) {
+            sorter.add(book);
+        }
+        int runs;
+        try (BookStoreWriter writer = new BookStoreWriter(store.toString())) {
+            runs = sorter.writeTo(writer);
+        }
+
+        List<Book> expected = new ArrayList<>(books);
+        expected.sort(key.comparator());
+        assertArrayEquals(expected.toArray(), read(store).toArray(), key.name());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.filter(file -> file.toString().endsWith(".run")).count());
+        }
+        return runs;
+    }
+
+    private Path sort(List<Book> books, SortKey key, long budget) throws IOException {
+        Path store = dir.resolve("sorted.ser");
+        try (ExternalBookSorter sorter = new ExternalBookSorter(key, budget, dir);
+             BookStoreWriter writer = new BookStoreWriter(store.toString())) {
+            for (Book book : books) {
+                sorter.add(book);
+            }
+            sorter.writeTo(writer);
+        }
+        return store;
+    }
+
+    private static List<Book> read(Path store) throws IOException, ClassNotFoundException {
+        try (BookStoreReader reader = new BookStoreReader(store.toString())) {
+            return List.of(reader.readAll());
+        }
+    }
+
+    /**
+     * Returns books with few distinct years, prices, titles and ISBNs, so that every key has many ties.
+     */
+    private static List<Book> randomBooks(int count, long seed) {
+        Random random = new Random(seed);
+        String[] isbns = {"0306406152", "9780306406157", "0930289234", "9780930289232", "080442957X"};
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            books.add(new Book("Title " + random.nextInt(20), "Author " + i, random.nextInt(10) / 2.0,
+                    isbns[random.nextInt(isbns.length)], Genre.CCB, 1990 + random.nextInt(5)));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,145 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that {@link FileChunk} only cuts a file between records, wherever the split points fall.
+ */
+class FileChunkTest {
+
+    private static final String RECORDS = String.join("\r\n",
+            "\"Batman, Year One\",Frank Miller,9.99,0930289331,CCB,1988",
+            "Watchmen,\"Moore, Gibbons\",19.99,0930289234,CCB,1987",
+            "\"He said \"\"stop, now\"\"\",x,1.0,0306406152,MTV,1995",
+            "",
+            "Maus,Art Spiegelman,0.0,9780394747231,CCB,1986",
+            "\"a,b\",\"c,d\",\",\",\",\",\",\",\",\"") + "\r\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everySplitOfACrlfFileKeepsItsRecords() throws IOException {
+        Path file = write("crlf.txt", RECORDS);
+        assertEverySplitKeepsTheRecords(file);
+    }
+
+    @Test
+    void everySplitOfAFileWithoutAFinalLineBreakKeepsItsRecords() throws IOException {
+        Path file = write("unterminated.txt", RECORDS.substring(0, RECORDS.length() - 2).replace("\r\n", "\n"));
+        assertEverySplitKeepsTheRecords(file);
+    }
+
+    @Test
+    void aFileNoLargerThanAChunkIsKeptWhole() throws IOException {
+        Path file = write("small.txt", RECORDS);
+        List<FileChunk> chunks = FileChunk.split(file.toString(), Files.size(file));
+
+        assertEquals(1, chunks.size());
+        assertTrue(chunks.get(0).isWholeFile());
+        assertTrue(chunks.get(0).isFirst());
+        assertTrue(chunks.get(0).isLast());
+    }
+
+    @Test
+    void aMissingFileIsOneWholeChunk() {
+        List<FileChunk> chunks = FileChunk.split(dir.resolve("missing.txt") + " ", 1);
+
+        assertEquals(1, chunks.size());
+        assertTrue(chunks.get(0).isWholeFile());
+    }
+
+    @Test
+    void fusedRunWithSmallChunksWritesTheSameFilesAsWholeFiles() throws Exception {
+        Path whole = crlf(ChildRuns.generate(dir.resolve("whole"), "--quoted-titles=0.5"));
+        Path chunked = crlf(ChildRuns.generate(dir.resolve("chunked"), "--quoted-titles=0.5"));
+
+        ChildRuns.Result wholeRun = ChildRuns.run(whole, Main.class, "--fused", "--debug-csv");
+        assertEquals(0, wholeRun.exitCode, wholeRun.output);
+        // Chunks of 1 KB, so that every year file is cut a few hundred times
+        ChildRuns.Result chunkedRun = ChildRuns.run(chunked, Main.class, "--fused", "--debug-csv", "--parallelism=4",
+                "--chunk-size=1");
+        assertEquals(0, chunkedRun.exitCode, chunkedRun.output);
+
+        ChildRuns.assertSameFiles(whole, chunked);
+    }
+
+    /**
+     * Splits the file at every chunk size up to its length and checks that the chunks cover it in order, that
+     * every chunk but the last ends with a line feed, and that the lines read from the chunks are the lines of
+     * the whole file.
+     */
+    private static void assertEverySplitKeepsTheRecords(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        List<String> lines = lines(bytes);
+
+        for (int chunkSize = 1; chunkSize < bytes.length; chunkSize++) {
+            List<FileChunk> chunks = FileChunk.split(file.toString(), chunkSize);
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            List<String> chunkLines = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                FileChunk chunk = chunks.get(i);
+                assertFalse(chunk.isWholeFile());
+                assertEquals(i == 0, chunk.isFirst());
+                assertEquals(i == chunks.size() - 1, chunk.isLast());
+
+                byte[] read = chunk.read();
+                assertTrue(read.length > 0);
+                if (!chunk.isLast()) {
+                    assertEquals('\n', read[read.length - 1], "chunk " + i + " of size " + chunkSize);
+                }
+                joined.writeBytes(read);
+                chunkLines.addAll(lines(read));
+            }
+            assertArrayEquals(bytes, joined.toByteArray(), "chunk size " + chunkSize);
+            assertEquals(lines, chunkLines, "chunk size " + chunkSize);
+        }
+    }
+
+    /**
+     * Reads lines as {@link Main#classifyChunk} does.
+     */
+    private static List<String> lines(byte[] bytes) {
+        List<String> lines = new ArrayList<>();
+        try (Scanner scanner = new Scanner(new ByteArrayInputStream(bytes))) {
+            while (scanner.hasNextLine()) {
+                lines.add(scanner.nextLine());
+            }
+        }
+        return lines;
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rewrites the year files of a data set with CRLF line breaks.
+     */
+    private static Path crlf(Path directory) throws IOException {
+        List<String> names = Files.readAllLines(directory.resolve("part1_input_file_names.txt"));
+        // The first line is the number of files
+        for (String name : names.subList(1, names.size())) {
+            Path file = directory.resolve(name.trim());
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            Files.writeString(file, String.join("\r\n", lines) + "\r\n", StandardCharsets.UTF_8);
+        }
+        return directory;
+    }
+}
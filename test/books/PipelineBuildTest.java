@@ -0,0 +1,39 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that the pipeline mode writes the same files as the fused mode, whatever the number of parser
+ * threads. Each mode runs in a {@link ChildRuns child JVM} and a directory of its own.
+ */
+class PipelineBuildTest {
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4})
+    void writesTheSameFilesAsTheFusedMode(int parallelism) throws Exception {
+        Path fused = ChildRuns.generate(dir.resolve("fused"));
+        Path pipeline = ChildRuns.generate(dir.resolve("pipeline"));
+
+        ChildRuns.Result fusedRun = ChildRuns.run(fused, Main.class, "--fused", "--debug-csv",
+                "--parallelism=" + parallelism);
+        assertEquals(0, fusedRun.exitCode, fusedRun.output);
+        ChildRuns.Result pipelineRun = ChildRuns.run(pipeline, Main.class, "--pipeline", "--debug-csv",
+                "--parallelism=" + parallelism);
+        assertEquals(0, pipelineRun.exitCode, pipelineRun.output);
+
+        ChildRuns.assertSameFiles(fused, pipeline);
+        try (BookStoreReader reader = new BookStoreReader(pipeline.resolve("Movies_TV.csv.ser").toString())) {
+            assertTrue(reader.getRecordCount() > 1_000);
+        }
+    }
+}
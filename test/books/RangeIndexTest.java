@@ -0,0 +1,65 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the range indexes built while a store is written, whose records are sorted in runs on disk once
+ * the store is large enough.
+ */
+class RangeIndexTest {
+
+    /** Enough books for three sorted runs. */
+    private static final int SPILLING_BOOKS = 600_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void spilledIndexIsTheIndexBuiltInMemory() throws IOException {
+        Random random = new Random(3);
+        Book[] books = new Book[SPILLING_BOOKS];
+        double[] prices = {-0.0, 0.0, 0.1, 0.30000000000000004, 0.3, 9.99, 1e6};
+        for (int i = 0; i < books.length; i++) {
+            // Few distinct values, so that most records tie with records of other runs
+            double price = random.nextInt(4) == 0 ? prices[random.nextInt(prices.length)] : random.nextInt(5000) / 100.0;
+            books[i] = new Book("Title", "Author", price, "0306406152", Genre.CCB, 1990 + random.nextInt(30));
+        }
+
+        Path spilled = store("spilled.ser");
+        RangeIndex.Builder builder = new RangeIndex.Builder(spilled);
+        for (Book book : books) {
+            builder.add(book);
+        }
+        builder.save();
+
+        // Opening a store without saved indexes builds them in memory and saves them
+        Path inMemory = store("memory.ser");
+        RangeIndex.open(new ArrayBookSource(books), inMemory.toString());
+
+        assertArrayEquals(Files.readAllBytes(Path.of(inMemory + RangeIndex.EXTENSION)),
+                Files.readAllBytes(Path.of(spilled + RangeIndex.EXTENSION)));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(4, files.count(), "the stores and their indexes, and no column or run file");
+        }
+    }
+
+    /**
+     * Creates a stand-in store file; the indexes only look at its size and modification time.
+     */
+    private Path store(String name) throws IOException {
+        Path store = Files.write(dir.resolve(name), new byte[SPILLING_BOOKS]);
+        Files.setLastModifiedTime(store, FileTime.fromMillis(1_000_000));
+        return store;
+    }
+}
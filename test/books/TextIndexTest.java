@@ -0,0 +1,136 @@
+package books;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the text index built while a store is written, spilled to runs or not.
+ */
+class TextIndexTest {
+
+    /** Where the saved index holds the modification time of its store. */
+    private static final int STAMP_OFFSET = 16;
+
+    /** Enough books with a word of their own to spill the words to three runs. */
+    private static final int SPILLING_BOOKS = 150_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void spilledIndexIsTheIndexBuiltInMemory() throws IOException {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < SPILLING_BOOKS; i++) {
+            books.add(book("Word" + i + " common " + (i % 7 == 0 ? "seventh" : "other"), "Author " + (i % 100)));
+        }
+        Path spilled = store("spilled.ser", books.size());
+        TextIndex.Builder builder = new TextIndex.Builder(spilled);
+        for (int i = 0; i < books.size(); i++) {
+            builder.add(i, books.get(i));
+        }
+        assertTrue(runs(spilled).size() >= 2);
+        builder.save(books.size());
+        assertEquals(List.of(), runs(spilled));
+
+        // Opening a store without a saved index builds it in memory and saves it
+        Path inMemory = store("memory.ser", books.size());
+        TextIndex index = TextIndex.open(new ArrayBookSource(books.toArray(new Book[0])), inMemory.toString());
+        assertNotNull(index);
+
+        byte[] expected = Files.readAllBytes(Path.of(inMemory + TextIndex.EXTENSION));
+        byte[] actual = Files.readAllBytes(Path.of(spilled + TextIndex.EXTENSION));
+        java.util.Arrays.fill(expected, STAMP_OFFSET, STAMP_OFFSET + Long.BYTES, (byte) 0);
+        java.util.Arrays.fill(actual, STAMP_OFFSET, STAMP_OFFSET + Long.BYTES, (byte) 0);
+        assertArrayEquals(expected, actual);
+
+        assertEquals(List.of(12_345), records(index.search("word12345", 10)));
+        assertEquals(SPILLING_BOOKS / 7 + 1, index.search("seventh", SPILLING_BOOKS).size());
+    }
+
+    @Test
+    void runCutShortBetweenListsFailsTheSave() throws IOException {
+        Path store = store("cut.ser", SPILLING_BOOKS);
+        TextIndex.Builder builder = new TextIndex.Builder(store);
+        for (int i = 0; i < SPILLING_BOOKS; i++) {
+            builder.add(i, book("Word" + i, ""));
+        }
+        List<Path> runs = runs(store);
+        assertFalse(runs.isEmpty());
+        // Only the number of lists is left, which used to read as a run that ends cleanly
+        try (FileChannel channel = FileChannel.open(runs.get(0), StandardOpenOption.WRITE)) {
+            channel.truncate(Integer.BYTES);
+        }
+
+        assertThrows(IOException.class, () -> builder.save(SPILLING_BOOKS));
+        assertFalse(Files.exists(Path.of(store + TextIndex.EXTENSION)));
+        assertEquals(List.of(), runs(store));
+    }
+
+    @Test
+    void wordsLongerThanWriteUtfAllowsAreCutAndFound() throws IOException {
+        String longWord = "a".repeat(70_000);
+        List<String> words = new ArrayList<>();
+        TextIndex.tokenize("x " + longWord + " y", words);
+        assertEquals(List.of("x", "a".repeat(TextIndex.MAX_WORD_LENGTH), "y"), words);
+
+        // Both the saved index and the runs write words with writeUTF
+        for (boolean spill : new boolean[] {false, true}) {
+            Path store = store("long" + spill + ".ser", SPILLING_BOOKS);
+            TextIndex.Builder builder = new TextIndex.Builder(store);
+            builder.add(0, book(longWord, "İ".repeat(40_000)));
+            for (int i = 1; spill && i < SPILLING_BOOKS; i++) {
+                builder.add(i, book("Word" + i, ""));
+            }
+            builder.save(spill ? SPILLING_BOOKS : 1);
+
+            TextIndex index = TextIndex.open(new ArrayBookSource(new Book[spill ? SPILLING_BOOKS : 1]) {
+                @Override
+                public Book get(int index) {
+                    throw new AssertionError("The saved index should have been loaded");
+                }
+            }, store.toString());
+            assertEquals(List.of(0), records(index.search(longWord, 10)));
+        }
+    }
+
+    private static Book book(String title, String authors) {
+        return new Book(title, authors, 1.0, "0306406152", Genre.CCB, 2000);
+    }
+
+    /**
+     * Creates a stand-in store file; the index only looks at its size and modification time.
+     */
+    private Path store(String name, int records) throws IOException {
+        Path store = Files.write(dir.resolve(name), new byte[records]);
+        Files.setLastModifiedTime(store, FileTime.fromMillis(1_000_000));
+        return store;
+    }
+
+    private List<Path> runs(Path store) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(store.getFileName() + TextIndex.EXTENSION)
+                    && file.toString().endsWith(".run")).sorted().toList();
+        }
+    }
+
+    private static List<Integer> records(List<TextIndex.Match> matches) {
+        return matches.stream().map(TextIndex.Match::getRecord).toList();
+    }
+}